@@ -0,0 +1,275 @@
+package io.mycat;
+
+/**
+ * 由 MatchMethodGenerator.GenerateBasicTokenTable() 根据 sql_tokens.txt 生成，不要手工修改
+ * BASIC_PARSER 用 FIRST_BYTE[第一个字节] 分派：小于 FAMILY 的是符号类别，大于等于 FAMILY 的是关键字族（首字母，忽略大小写），
+ * 关键字族再用 SECOND[(族 - FAMILY) << 5 | (第二个字节 & 0x1F)] 取出候选关键字，由 SQLReader.basicToken() 逐个比较
+ * 候选关键字按 basic_tokens_profile.txt 中的出现次数排列
+ */
+final class BasicTokenTable {
+    static final byte OTHER = 0;
+    static final byte BLANK = 1;
+    static final byte LPAREN = 2;
+    static final byte RPAREN = 3;
+    static final byte COMMA = 4;
+    static final byte SHARP = 5;
+    static final byte MINUS = 6;
+    static final byte SLASH = 7;
+    static final byte QUOTE = 8;
+    static final byte AT = 9;
+    static final byte FAMILY = 16;
+
+    //关键字之后的字符
+    static final byte TERM_BLANK = 0; //空白或结尾
+    static final byte TERM_FUNC = 1; //( 或空白
+    static final byte TERM_END = 2; //空白、; 或结尾
+
+    static final int NOT_FOUND = -1;
+    static final int FOUND_ROWS = 0;
+    static final int FOR = 1;
+    static final int FROM = 2;
+    static final int JOIN = 3;
+    static final int UNION = 4;
+    static final int UPDATE = 5;
+    static final int USE = 6;
+    static final int USING = 7;
+    static final int DELETE = 8;
+    static final int DISTINCT = 9;
+    static final int DROP = 10;
+    static final int SELECT = 11;
+    static final int SET = 12;
+    static final int SHOW = 13;
+    static final int START = 14;
+    static final int SUM = 15;
+    static final int INSERT = 16;
+    static final int INTO = 17;
+    static final int LAST_INSERT_ID = 18;
+    static final int LEFT = 19;
+    static final int LIMIT = 20;
+    static final int LOCK = 21;
+    static final int ALTER = 22;
+    static final int AVG = 23;
+    static final int COUNT = 24;
+    static final int CREATE = 25;
+    static final int MAX = 26;
+    static final int MIN = 27;
+    static final int HAVING = 28;
+    static final int ON = 29;
+    static final int ORDER = 30;
+    static final int OVER = 31;
+    static final int WHERE = 32;
+    static final int WINDOW = 33;
+    static final int REPLACE = 34;
+    static final int RELEASE_LOCK = 35;
+    static final int RELEASE_ALL_LOCKS = 36;
+    static final int RIGHT = 37;
+    static final int TABLE = 38;
+    static final int TEMPORARY = 39;
+    static final int TRUNCATE = 40;
+    static final int TRANSACTION = 41;
+    static final int GET_LOCK = 42;
+    static final int GROUP = 43;
+    static final int GROUP_CONCAT = 44;
+    static final int PREPARE = 45;
+    static final int BEGIN = 46;
+    static final int VALUES = 47;
+
+    static final String[] NAMES = {
+            "FOUND_ROWS", "FOR", "FROM", "JOIN", "UNION", "UPDATE", "USE", "USING",
+            "DELETE", "DISTINCT", "DROP", "SELECT", "SET", "SHOW", "START", "SUM",
+            "INSERT", "INTO", "LAST_INSERT_ID", "LEFT", "LIMIT", "LOCK", "ALTER", "AVG",
+            "COUNT", "CREATE", "MAX", "MIN", "HAVING", "ON", "ORDER", "OVER",
+            "WHERE", "WINDOW", "REPLACE", "RELEASE_LOCK", "RELEASE_ALL_LOCKS", "RIGHT", "TABLE", "TEMPORARY",
+            "TRUNCATE", "TRANSACTION", "GET_LOCK", "GROUP", "GROUP_CONCAT", "PREPARE", "BEGIN", "VALUES",
+    };
+
+    static final byte[] FIRST_BYTE = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 0, 8, 5, 0, 0, 0, 8, 2, 3, 0, 0, 4, 6, 0, 7, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            9, 23, 33, 24, 19, 0, 16, 31, 26, 21, 17, 0, 22, 25, 0, 27, 32, 0, 29, 20, 30, 18, 34, 28, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 23, 33, 24, 19, 0, 16, 31, 26, 21, 17, 0, 22, 25, 0, 27, 32, 0, 29, 20, 30, 18, 34, 28, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+
+    //记录格式：[{第一个候选关键字的下标 << 8 | 候选个数}]，不是关键字开头的为0
+    static final short[] SECOND = {
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2, 0x0, 0x0, 0x201, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x301, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x401, 0x0, 0x501, 0x0, 0x0, 0x602, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x801, 0x0, 0x0, 0x0, 0x901, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0xa01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0xb02, 0x0, 0x0, 0xd01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0xe01, 0xf01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1002, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x1201, 0x0, 0x0, 0x0, 0x1301, 0x0, 0x0, 0x0, 0x1401, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1501, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1601, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1701, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1801, 0x0, 0x0, 0x1901, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x1a01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1b01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x1c01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x1d01, 0x0, 0x0, 0x0, 0x1e01, 0x0, 0x0, 0x0, 0x1f01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2001, 0x2101, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x2203, 0x0, 0x0, 0x0, 0x2501, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x2601, 0x0, 0x0, 0x0, 0x2701, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2802, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x2a01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2b02, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x2d01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x0, 0x0, 0x0, 0x0, 0x2e01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+            0x0, 0x2f01, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0,
+    };
+
+    //记录格式：[{关键字长度, 结束条件}]
+    static final byte[] INFO = {
+            10, TERM_FUNC, //FOUND_ROWS
+            3, TERM_BLANK, //FOR
+            4, TERM_BLANK, //FROM
+            4, TERM_BLANK, //JOIN
+            5, TERM_BLANK, //UNION
+            6, TERM_BLANK, //UPDATE
+            3, TERM_BLANK, //USE
+            5, TERM_FUNC, //USING
+            6, TERM_BLANK, //DELETE
+            8, TERM_BLANK, //DISTINCT
+            4, TERM_BLANK, //DROP
+            6, TERM_BLANK, //SELECT
+            3, TERM_BLANK, //SET
+            4, TERM_BLANK, //SHOW
+            5, TERM_BLANK, //START
+            3, TERM_FUNC, //SUM
+            6, TERM_BLANK, //INSERT
+            4, TERM_BLANK, //INTO
+            14, TERM_FUNC, //LAST_INSERT_ID
+            4, TERM_BLANK, //LEFT
+            5, TERM_BLANK, //LIMIT
+            4, TERM_BLANK, //LOCK
+            5, TERM_BLANK, //ALTER
+            3, TERM_FUNC, //AVG
+            5, TERM_FUNC, //COUNT
+            6, TERM_BLANK, //CREATE
+            3, TERM_FUNC, //MAX
+            3, TERM_FUNC, //MIN
+            6, TERM_BLANK, //HAVING
+            2, TERM_BLANK, //ON
+            5, TERM_BLANK, //ORDER
+            4, TERM_FUNC, //OVER
+            5, TERM_BLANK, //WHERE
+            6, TERM_BLANK, //WINDOW
+            7, TERM_BLANK, //REPLACE
+            12, TERM_FUNC, //RELEASE_LOCK
+            17, TERM_FUNC, //RELEASE_ALL_LOCKS
+            5, TERM_BLANK, //RIGHT
+            5, TERM_BLANK, //TABLE
+            9, TERM_BLANK, //TEMPORARY
+            8, TERM_BLANK, //TRUNCATE
+            11, TERM_END, //TRANSACTION
+            8, TERM_FUNC, //GET_LOCK
+            5, TERM_BLANK, //GROUP
+            12, TERM_FUNC, //GROUP_CONCAT
+            7, TERM_BLANK, //PREPARE
+            5, TERM_END, //BEGIN
+            6, TERM_FUNC, //VALUES
+    };
+
+    //记录格式：[{字符0~7, 字符8~15, 字符16~23}]，按 SQLReader.getLong() 的字节序打包，不足的补0
+    static final long[] CHARS = {
+            0x4f525f444e554f46L, 0x0000000000005357L, 0x0000000000000000L,
+            0x0000000000524f46L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000004d4f5246L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000004e494f4aL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000004e4f494e55L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000455441445055L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000455355L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000474e495355L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00004554454c4544L, 0x0000000000000000L, 0x0000000000000000L,
+            0x54434e4954534944L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000504f5244L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00005443454c4553L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000544553L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000574f4853L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000005452415453L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000004d5553L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000545245534e49L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000004f544e49L, 0x0000000000000000L, 0x0000000000000000L,
+            0x534e495f5453414cL, 0x000044495f545245L, 0x0000000000000000L,
+            0x000000005446454cL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000054494d494cL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000004b434f4cL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000005245544c41L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000475641L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000544e554f43L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000455441455243L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000000058414dL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000004e494dL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000474e49564148L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000004e4fL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000524544524fL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000005245564fL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000004552454857L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000574f444e4957L, 0x0000000000000000L, 0x0000000000000000L,
+            0x004543414c504552L, 0x0000000000000000L, 0x0000000000000000L,
+            0x5f455341454c4552L, 0x000000004b434f4cL, 0x0000000000000000L,
+            0x5f455341454c4552L, 0x4b434f4c5f4c4c41L, 0x0000000000000053L,
+            0x0000005448474952L, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000454c424154L, 0x0000000000000000L, 0x0000000000000000L,
+            0x5241524f504d4554L, 0x0000000000000059L, 0x0000000000000000L,
+            0x455441434e555254L, 0x0000000000000000L, 0x0000000000000000L,
+            0x544341534e415254L, 0x00000000004e4f49L, 0x0000000000000000L,
+            0x4b434f4c5f544547L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000050554f5247L, 0x0000000000000000L, 0x0000000000000000L,
+            0x4f435f50554f5247L, 0x000000005441434eL, 0x0000000000000000L,
+            0x0045524150455250L, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000004e49474542L, 0x0000000000000000L, 0x0000000000000000L,
+            0x00005345554c4156L, 0x0000000000000000L, 0x0000000000000000L,
+    };
+
+    //记录格式：[{掩码0~7, 掩码8~15, 掩码16~23}]，字母为 0xDF（忽略大小写），其他字符为 0xFF，超出长度的为0
+    static final long[] MASKS = {
+            0xdfdfffdfdfdfdfdfL, 0x000000000000dfdfL, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xdfdfdfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xdfdfdfffdfdfdfdfL, 0x0000dfdfffdfdfdfL, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000000000dfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000000000dfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00000000dfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x00dfdfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xffdfdfdfdfdfdfdfL, 0x00000000dfdfdfdfL, 0x0000000000000000L,
+            0xffdfdfdfdfdfdfdfL, 0xdfdfdfdfffdfdfdfL, 0x00000000000000dfL,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xdfdfdfdfdfdfdfdfL, 0x00000000000000dfL, 0x0000000000000000L,
+            0xdfdfdfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xdfdfdfdfdfdfdfdfL, 0x0000000000dfdfdfL, 0x0000000000000000L,
+            0xdfdfdfdfffdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0xdfdfffdfdfdfdfdfL, 0x00000000dfdfdfdfL, 0x0000000000000000L,
+            0x00dfdfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x000000dfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+            0x0000dfdfdfdfdfdfL, 0x0000000000000000L, 0x0000000000000000L,
+    };
+}
@@ -0,0 +1,400 @@
+package io.mycat;
+
+import java.util.Arrays;
+
+import static io.mycat.NewSQLParser.*;
+
+/**
+ * 用数组装载的简单ast，由 NewSQLParser 的 token 数组一遍生成，不为节点创建任何对象
+ * 每个节点在 nodes 数组中占 NODE_SIZE 个int，记录格式：
+ *   [{type, parent, first child, last child, next sibling, start pos, end pos, token idx}]
+ * 节点之间通过下标关联，-1 表示不存在；start/end 是节点在sql中的字节范围（end不包含）
+ * 节点类型只覆盖路由和结果集合并需要的结构：
+ *   STATEMENT  : 以 ; 分隔的每条语句，多条语句的根节点互为兄弟
+ *   SELECT_LIST: SELECT 与 FROM 之间的内容
+ *   FROM_ITEM  : 表名（含库名和别名），派生表时以 SUBQUERY 为子节点
+ *   JOIN       : JOIN 关键字（含 LEFT/INNER 等修饰），子节点为被连接的 FROM_ITEM 和 ON/USING 条件
+ *   PREDICATE  : WHERE/HAVING/ON/USING 之后的条件
+ *   LITERAL    : 字符串和数值，字符串的范围不包含引号
+ *   SUBQUERY   : (SELECT ...)，范围包含括号，子节点结构与 STATEMENT 相同
+ * 遍历使用 Cursor，例如：
+ *   CompactAST.Cursor cursor = ast.cursor();
+ *   if (cursor.toFirstChild()) do { ... } while (cursor.toNextSibling());
+ */
+public class CompactAST {
+    public static final int NODE_STATEMENT = 1;
+    public static final int NODE_SELECT_LIST = 2;
+    public static final int NODE_FROM_ITEM = 3;
+    public static final int NODE_JOIN = 4;
+    public static final int NODE_PREDICATE = 5;
+    public static final int NODE_LITERAL = 6;
+    public static final int NODE_SUBQUERY = 7;
+
+    static final int NODE_SIZE = 8;
+    static final int TYPE = 0;
+    static final int PARENT = 1;
+    static final int FIRST_CHILD = 2;
+    static final int LAST_CHILD = 3;
+    static final int NEXT_SIBLING = 4;
+    static final int START = 5;
+    static final int END = 6;
+    static final int TOKEN = 7;
+
+    //构建过程中当前作用域对表名的期待状态
+    static final int MODE_NONE = 0;
+    static final int MODE_TABLE = 1; //下一个标识符是表名
+    static final int MODE_ALIAS = 2; //刚读完表名，后面可能是 .tbl、AS alias 或 alias
+    static final int MODE_FROM = 3;  //表名和别名都读完了，逗号表示下一个表
+
+    //作用域栈，每层记录格式：[{scope node, clause node, from parent, last item, mode, paren depth, join start}]
+    static final int SCOPE_SIZE = 7;
+
+    private int[] nodes = new int[NODE_SIZE<<8];
+    private int nodeCount;
+    private int[] scopes = new int[SCOPE_SIZE<<4];
+
+    public int getNodeCount() { return nodeCount; }
+    public int getType(int node) { return nodes[node*NODE_SIZE+TYPE]; }
+    public int getParent(int node) { return nodes[node*NODE_SIZE+PARENT]; }
+    public int getFirstChild(int node) { return nodes[node*NODE_SIZE+FIRST_CHILD]; }
+    public int getNextSibling(int node) { return nodes[node*NODE_SIZE+NEXT_SIBLING]; }
+    public int getStart(int node) { return nodes[node*NODE_SIZE+START]; }
+    public int getEnd(int node) { return nodes[node*NODE_SIZE+END]; }
+    public int getSize(int node) { return nodes[node*NODE_SIZE+END]-nodes[node*NODE_SIZE+START]; }
+    public int getToken(int node) { return nodes[node*NODE_SIZE+TOKEN]; }
+
+    public Cursor cursor() { return new Cursor(); }
+
+    int addNode(int type, int parent, int start, int end, int token) {
+        int idx = nodeCount*NODE_SIZE;
+        if (idx == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length<<1);
+        }
+        nodes[idx+TYPE] = type;
+        nodes[idx+PARENT] = parent;
+        nodes[idx+FIRST_CHILD] = -1;
+        nodes[idx+LAST_CHILD] = -1;
+        nodes[idx+NEXT_SIBLING] = -1;
+        nodes[idx+START] = start;
+        nodes[idx+END] = end;
+        nodes[idx+TOKEN] = token;
+        if (parent >= 0) {
+            int parentIdx = parent*NODE_SIZE;
+            int last = nodes[parentIdx+LAST_CHILD];
+            if (last < 0)
+                nodes[parentIdx+FIRST_CHILD] = nodeCount;
+            else
+                nodes[last*NODE_SIZE+NEXT_SIBLING] = nodeCount;
+            nodes[parentIdx+LAST_CHILD] = nodeCount;
+        }
+        return nodeCount++;
+    }
+
+    void setEnd(int node, int end) {
+        if (node >= 0)
+            nodes[node*NODE_SIZE+END] = end;
+    }
+
+    /*
+    * 根据 parser 最近一次 tokenize 的结果生成ast，之前的结果会被覆盖
+    */
+    public void build(NewSQLParser parser) {
+        NewSQLParser.HashArray tokens = parser.hashArray;
+        int count = tokens.getCount();
+        int sp = -SCOPE_SIZE;
+        int lastRoot = -1;
+        int parenDepth = 0;
+        int prevType = 0;
+        int prevEnd = 0;
+        nodeCount = 0;
+        //当前作用域状态，进入子查询时压栈
+        int scope = -1, clause = -1, fromParent = -1, lastItem = -1, mode = MODE_NONE, scopeParen = 0, joinStart = -1;
+        for (int i = 0; i < count; i++) {
+            int type = tokens.getType(i);
+            int start = tokens.getPos(i);
+            int end = start + tokens.getSize(i);
+            if (type == COMMENTS) {
+                continue;
+            }
+            if (scope < 0) {
+                if (type == SEMICOLON) {
+                    prevType = type;
+                    continue;
+                }
+                scope = addNode(NODE_STATEMENT, -1, start, end, i);
+                if (lastRoot >= 0)
+                    nodes[lastRoot*NODE_SIZE+NEXT_SIBLING] = scope;
+                lastRoot = scope;
+                clause = fromParent = lastItem = joinStart = -1;
+                mode = MODE_NONE;
+                scopeParen = parenDepth = 0;
+            }
+            switch (type) {
+                case LEFT_PARENTHESES:
+                    parenDepth++;
+                    if (mode == MODE_ALIAS && !isKeyword(tokens, i+1, IntTokenHash.SELECT, TokenHash.SELECT)) {
+                        mode = MODE_NONE; //INSERT INTO tbl(a, b)
+                    }
+                    break;
+                case RIGHT_PARENTHESES:
+                    if (parenDepth == scopeParen && sp >= 0) {
+                        setEnd(clause, prevEnd);
+                        setEnd(scope, end);
+                        int parent = getParent(scope);
+                        scope = scopes[sp];
+                        clause = scopes[sp+1];
+                        fromParent = scopes[sp+2];
+                        lastItem = scopes[sp+3];
+                        mode = scopes[sp+4];
+                        scopeParen = scopes[sp+5];
+                        joinStart = scopes[sp+6];
+                        sp -= SCOPE_SIZE;
+                        if (getType(parent) == NODE_FROM_ITEM) { //派生表，后面可能还有别名
+                            setEnd(parent, end);
+                            lastItem = parent;
+                            mode = MODE_ALIAS;
+                        }
+                    }
+                    parenDepth--;
+                    break;
+                case SEMICOLON:
+                    setEnd(clause, prevEnd);
+                    while (sp >= 0) {
+                        scope = scopes[sp];
+                        sp -= SCOPE_SIZE;
+                    }
+                    setEnd(scope, prevEnd);
+                    scope = -1;
+                    break;
+                case STRINGS:
+                case DIGITS:
+                    addNode(NODE_LITERAL, clause >= 0 ? clause : scope, start, end, i);
+                    break;
+                case COMMA:
+                    if ((mode == MODE_ALIAS || mode == MODE_FROM) && parenDepth == scopeParen) {
+                        mode = MODE_TABLE;
+                        fromParent = scope;
+                        joinStart = -1;
+                    }
+                    break;
+                case DOT:
+                    break;
+                default:
+                    if (type > 0 && type <= COMMENTS) {
+                        break;
+                    }
+                    switch (keyword(tokens.getIntHash(i), tokens.getHash(i))) {
+                        case IntTokenHash.SELECT:
+                            if (prevType == LEFT_PARENTHESES) {
+                                int parenStart = tokens.getPos(i-1);
+                                int parent = clause >= 0 ? clause : scope;
+                                if (mode == MODE_TABLE) {
+                                    parent = addNode(NODE_FROM_ITEM, fromParent, parenStart, end, i-1);
+                                }
+                                if ((sp += SCOPE_SIZE) == scopes.length) {
+                                    scopes = Arrays.copyOf(scopes, scopes.length<<1);
+                                }
+                                scopes[sp] = scope;
+                                scopes[sp+1] = clause;
+                                scopes[sp+2] = fromParent;
+                                scopes[sp+3] = lastItem;
+                                scopes[sp+4] = mode;
+                                scopes[sp+5] = scopeParen;
+                                scopes[sp+6] = joinStart;
+                                scope = addNode(NODE_SUBQUERY, parent, parenStart, end, i-1);
+                                fromParent = lastItem = joinStart = -1;
+                                scopeParen = parenDepth;
+                            } else {
+                                setEnd(clause, prevEnd);
+                            }
+                            clause = addNode(NODE_SELECT_LIST, scope, end, end, i);
+                            mode = MODE_NONE;
+                            break;
+                        case IntTokenHash.FROM:
+                            setEnd(clause, prevEnd);
+                            clause = -1;
+                            fromParent = scope;
+                            mode = MODE_TABLE;
+                            break;
+                        case IntTokenHash.UPDATE:
+                        case IntTokenHash.INTO:
+                        case IntTokenHash.TABLE:
+                            if (clause >= 0 && getType(clause) == NODE_SELECT_LIST)
+                                break; //SELECT ... INTO @var
+                            fromParent = scope;
+                            mode = MODE_TABLE;
+                            break;
+                        case IntTokenHash.LOW_PRIORITY:
+                        case IntTokenHash.HIGH_PRIORITY:
+                        case IntTokenHash.DELAYED:
+                        case IntTokenHash.IF:
+                        case IntTokenHash.NOT:
+                        case IntTokenHash.EXISTS:
+                            break; //表名前的修饰，保持原状态
+                        case IntTokenHash.LEFT:
+                        case IntTokenHash.RIGHT:
+                        case IntTokenHash.INNER:
+                        case IntTokenHash.CROSS:
+                        case IntTokenHash.NATURAL:
+                        case IntTokenHash.OUTER:
+                            if (mode == MODE_ALIAS || mode == MODE_FROM || (clause >= 0 && getType(getParent(clause)) == NODE_JOIN)) {
+                                if (joinStart < 0)
+                                    joinStart = start;
+                                mode = MODE_FROM;
+                            }
+                            break;
+                        case IntTokenHash.JOIN:
+                        case IntTokenHash.STRAIGHT_JOIN:
+                            setEnd(clause, prevEnd);
+                            clause = -1;
+                            fromParent = addNode(NODE_JOIN, scope, joinStart < 0 ? start : joinStart, end, i);
+                            joinStart = -1;
+                            mode = MODE_TABLE;
+                            break;
+                        case IntTokenHash.ON:
+                        case IntTokenHash.USING:
+                            if (fromParent >= 0 && getType(fromParent) == NODE_JOIN && parenDepth == scopeParen) {
+                                clause = addNode(NODE_PREDICATE, fromParent, end, end, i);
+                                mode = MODE_NONE;
+                            }
+                            break;
+                        case IntTokenHash.WHERE:
+                        case IntTokenHash.HAVING:
+                            setEnd(clause, prevEnd);
+                            clause = addNode(NODE_PREDICATE, scope, end, end, i);
+                            mode = MODE_NONE;
+                            break;
+                        case IntTokenHash.GROUP:
+                        case IntTokenHash.ORDER:
+                        case IntTokenHash.LIMIT:
+                        case IntTokenHash.SET:
+                        case IntTokenHash.VALUES:
+                        case IntTokenHash.UNION:
+                        case IntTokenHash.FOR:
+                        case IntTokenHash.LOCK:
+                        case IntTokenHash.WINDOW:
+                            if (parenDepth != scopeParen)
+                                break;
+                            setEnd(clause, prevEnd);
+                            clause = -1;
+                            mode = MODE_NONE;
+                            break;
+                        case IntTokenHash.USE:
+                        case IntTokenHash.FORCE:
+                        case IntTokenHash.IGNORE:
+                            if (mode == MODE_ALIAS)
+                                mode = MODE_FROM; //索引提示
+                            break;
+                        case IntTokenHash.AS:
+                            break;
+                        default:
+                            if (mode == MODE_TABLE) {
+                                lastItem = addNode(NODE_FROM_ITEM, fromParent, start, end, i);
+                                mode = MODE_ALIAS;
+                            } else if (mode == MODE_ALIAS) {
+                                setEnd(lastItem, end);
+                                if (prevType != DOT)
+                                    mode = MODE_FROM;
+                            }
+                            break;
+                    }
+            }
+            prevType = type;
+            prevEnd = end;
+        }
+        if (scope >= 0) {
+            setEnd(clause, prevEnd);
+            while (sp >= 0) {
+                scope = scopes[sp];
+                sp -= SCOPE_SIZE;
+            }
+            setEnd(scope, prevEnd);
+        }
+    }
+
+    static boolean isKeyword(NewSQLParser.HashArray tokens, int idx, int intHash, long hash) {
+        return idx < tokens.getCount() && tokens.getIntHash(idx) == intHash && tokens.getHash(idx) == hash;
+    }
+
+    /*
+    * 用完整哈希值确认关键字，确认通过返回 IntTokenHash，否则当作普通标识符返回0
+    */
+    static int keyword(int intHash, long hash) {
+        long expected;
+        switch (intHash) {
+            case IntTokenHash.SELECT: expected = TokenHash.SELECT; break;
+            case IntTokenHash.FROM: expected = TokenHash.FROM; break;
+            case IntTokenHash.UPDATE: expected = TokenHash.UPDATE; break;
+            case IntTokenHash.INTO: expected = TokenHash.INTO; break;
+            case IntTokenHash.TABLE: expected = TokenHash.TABLE; break;
+            case IntTokenHash.LOW_PRIORITY: expected = TokenHash.LOW_PRIORITY; break;
+            case IntTokenHash.HIGH_PRIORITY: expected = TokenHash.HIGH_PRIORITY; break;
+            case IntTokenHash.DELAYED: expected = TokenHash.DELAYED; break;
+            case IntTokenHash.IF: expected = TokenHash.IF; break;
+            case IntTokenHash.NOT: expected = TokenHash.NOT; break;
+            case IntTokenHash.EXISTS: expected = TokenHash.EXISTS; break;
+            case IntTokenHash.LEFT: expected = TokenHash.LEFT; break;
+            case IntTokenHash.RIGHT: expected = TokenHash.RIGHT; break;
+            case IntTokenHash.INNER: expected = TokenHash.INNER; break;
+            case IntTokenHash.CROSS: expected = TokenHash.CROSS; break;
+            case IntTokenHash.NATURAL: expected = TokenHash.NATURAL; break;
+            case IntTokenHash.OUTER: expected = TokenHash.OUTER; break;
+            case IntTokenHash.JOIN: expected = TokenHash.JOIN; break;
+            case IntTokenHash.STRAIGHT_JOIN: expected = TokenHash.STRAIGHT_JOIN; break;
+            case IntTokenHash.ON: expected = TokenHash.ON; break;
+            case IntTokenHash.USING: expected = TokenHash.USING; break;
+            case IntTokenHash.WHERE: expected = TokenHash.WHERE; break;
+            case IntTokenHash.HAVING: expected = TokenHash.HAVING; break;
+            case IntTokenHash.GROUP: expected = TokenHash.GROUP; break;
+            case IntTokenHash.ORDER: expected = TokenHash.ORDER; break;
+            case IntTokenHash.LIMIT: expected = TokenHash.LIMIT; break;
+            case IntTokenHash.SET: expected = TokenHash.SET; break;
+            case IntTokenHash.VALUES: expected = TokenHash.VALUES; break;
+            case IntTokenHash.UNION: expected = TokenHash.UNION; break;
+            case IntTokenHash.FOR: expected = TokenHash.FOR; break;
+            case IntTokenHash.LOCK: expected = TokenHash.LOCK; break;
+            case IntTokenHash.WINDOW: expected = TokenHash.WINDOW; break;
+            case IntTokenHash.USE: expected = TokenHash.USE; break;
+            case IntTokenHash.FORCE: expected = TokenHash.FORCE; break;
+            case IntTokenHash.IGNORE: expected = TokenHash.IGNORE; break;
+            case IntTokenHash.AS: expected = TokenHash.AS; break;
+            default: return 0;
+        }
+        return hash == expected ? intHash : 0;
+    }
+
+    /*
+    * 只保存当前节点下标，移动失败时停在原节点
+    */
+    public final class Cursor {
+        private int node;
+
+        Cursor() { reset(); }
+
+        public void reset() { node = nodeCount > 0 ? 0 : -1; }
+
+        public boolean isValid() { return node >= 0; }
+
+        public void moveTo(int node) { this.node = node; }
+
+        public boolean toFirstChild() { return move(getFirstChild(node)); }
+
+        public boolean toNextSibling() { return move(getNextSibling(node)); }
+
+        public boolean toParent() { return move(getParent(node)); }
+
+        private boolean move(int target) {
+            if (target < 0)
+                return false;
+            node = target;
+            return true;
+        }
+
+        public int node() { return node; }
+        public int type() { return getType(node); }
+        public int start() { return getStart(node); }
+        public int end() { return getEnd(node); }
+        public int size() { return getSize(node); }
+        public int token() { return getToken(node); }
+    }
+}
@@ -0,0 +1,110 @@
+package io.mycat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 按数据节点拆分 IN 列表：SQLParser 记录了 col IN (常量, ...) 中每个值的位置，
+ * 路由层算出每个值所属的数据节点后，用本类生成只包含该节点的值的语句
+ * 生成结果不拷贝sql，而是一组指向原始buffer的片段，记录格式：[{start pos, end pos}]（end不包含），
+ * 按顺序拼接即为改写后的语句，例如 WHERE id IN (1, 2, 3, 4) 中节点0只有 1 和 3 时得到
+ *   [sql开头, 1 的结尾)  [1 和 2 之间的 ", "]  [3]  [), sql末尾)
+ * 原列表中相邻的值合并为一个片段，值之间的分隔符取原列表中第一个分隔符
+ * 只改写最外层 WHERE 的顶层 AND 条件中的列表，其他位置的列表原样发送
+ * 用法：
+ *   InListRewriter rewriter = new InListRewriter();
+ *   for (int node ...) if (rewriter.rewrite(context, listIdx, valueNodes, node, sql.length) != 0) rewriter.writeTo(sql, buffer);
+ */
+public class InListRewriter {
+    public static final int SEND_UNCHANGED = -1;
+
+    private int[] segments = new int[64];
+    private int segmentCount;
+    private int length;
+
+    /*
+    * valueNodes[i] 为该列表中第 i 个值所属的数据节点，ShardingFunction.UNKNOWN 的值每个节点都保留；
+    * 返回节点 node 分到的值的个数，为0时该节点上没有满足这个 AND 条件的行，可以不发送；
+    * 列表在 NOT/OR 之下或者是表达式的一部分时（见 SQLContext.isInListConjunct）不改写，
+    * 片段为整条sql，返回 SEND_UNCHANGED，该节点照常发送
+    */
+    public int rewrite(SQLContext context, int listIdx, int[] valueNodes, int node, int sqlLength) {
+        segmentCount = 0;
+        length = 0;
+        if (!context.isInListConjunct(listIdx)) {
+            addSegment(0, sqlLength);
+            length = sqlLength;
+            return SEND_UNCHANGED;
+        }
+        int first = context.getInListFirstValue(listIdx);
+        int count = context.getInListValueCount(listIdx);
+        int sepStart = 0;
+        int sepEnd = 0;
+        if (count > 1) { //分隔符：第一个值之后到第二个值之前
+            sepStart = context.getInValuePos(first)+context.getInValueSize(first);
+            sepEnd = context.getInValuePos(first+1);
+        }
+        int selected = 0;
+        int prev = -2;
+        for (int i = 0; i < count; i++) {
+            if (valueNodes[i] != node && valueNodes[i] != ShardingFunction.UNKNOWN)
+                continue;
+            int start = context.getInValuePos(first+i);
+            int end = start+context.getInValueSize(first+i);
+            if (selected == 0) {
+                if (i == 0) {
+                    addSegment(0, end);
+                } else {
+                    addSegment(0, context.getInListStart(listIdx));
+                    addSegment(start, end);
+                }
+            } else if (prev == i-1) {
+                segments[(segmentCount<<1)-1] = end; //与前一个值在原列表中相邻，直接延长
+            } else {
+                addSegment(sepStart, sepEnd);
+                addSegment(start, end);
+            }
+            prev = i;
+            selected++;
+        }
+        if (selected == 0)
+            return 0;
+        addSegment(context.getInListEnd(listIdx), sqlLength);
+        for (int i = 0; i < segmentCount; i++)
+            length += segments[(i<<1)+1]-segments[i<<1];
+        return selected;
+    }
+
+    private void addSegment(int start, int end) {
+        if (segmentCount<<1 == segments.length)
+            segments = Arrays.copyOf(segments, segments.length<<1);
+        segments[segmentCount<<1] = start;
+        segments[(segmentCount<<1)+1] = end;
+        segmentCount++;
+    }
+
+    public int getSegmentCount() { return segmentCount; }
+
+    public int getSegmentStart(int idx) { return segments[idx<<1]; }
+
+    public int getSegmentEnd(int idx) { return segments[(idx<<1)+1]; }
+
+    //改写后语句的字节数
+    public int length() { return length; }
+
+    public void writeTo(byte[] sql, ByteBuffer buffer) {
+        for (int i = 0; i < segmentCount; i++)
+            buffer.put(sql, segments[i<<1], segments[(i<<1)+1]-segments[i<<1]);
+    }
+
+    public byte[] toBytes(byte[] sql) {
+        byte[] result = new byte[length];
+        int pos = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            int size = segments[(i<<1)+1]-segments[i<<1];
+            System.arraycopy(sql, segments[i<<1], result, pos, size);
+            pos += size;
+        }
+        return result;
+    }
+}
@@ -36,4 +36,31 @@ public class IntTokenHash {
     public static final int SCHEMA = 0xc490006;
     public static final int DATANODE = 0x45d0008;
     public static final int CATLET = 0xda600006;
+    public static final int GROUP = 0x43f50005;
+    public static final int ORDER = 0x88da0005;
+    public static final int UNION = 0xcf9d0005;
+    public static final int DISTINCT = 0xa4400008;
+    public static final int HAVING = 0xe8e60006;
+    public static final int COUNT = 0xa45e0005;
+    public static final int SUM = 0x54000003;
+    public static final int MIN = 0x6a7e0003;
+    public static final int MAX = 0x697e0003;
+    public static final int AVG = 0x9bd60003;
+    public static final int GROUP_CONCAT = 0x9456000c;
+    public static final int OVER = 0x414b0004;
+    public static final int WINDOW = 0xcc100006;
+    public static final int WHERE = 0x75950005;
+    public static final int ON = 0x409e0002;
+    public static final int LEFT = 0xf4e50004;
+    public static final int RIGHT = 0xec610005;
+    public static final int INNER = 0x30260005;
+    public static final int CROSS = 0x2c240005;
+    public static final int NATURAL = 0x4b9c0007;
+    public static final int STRAIGHT_JOIN = 0x41c7000d;
+    public static final int OUTER = 0x650e0005;
+    public static final int USING = 0x52290005;
+    public static final int SET = 0x52330003;
+    public static final int VALUES = 0x6f3d0006;
+    public static final int FOR = 0x576e0003;
+    public static final int FORCE = 0xaae60005;
 }
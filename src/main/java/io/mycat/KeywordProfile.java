@@ -0,0 +1,75 @@
+package io.mycat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLParser 的采样统计：每 sampleInterval 条语句统计一条，记录 BasicTokenTable 中每个关键字出现的次数，以及作为语句第一个 token 的次数
+ * 每个 SQLParser 实例一份，不需要同步；不设置时解析过程中只多一次判空
+ * dump 出的文件由 MatchMethodGenerator.GenerateBasicTokenTable() 读取，同一首字母、第二个字符相同的候选关键字按出现次数排列
+ * 用法：
+ *   KeywordProfile profile = new KeywordProfile(100);
+ *   parser.setProfile(profile);
+ *   ...
+ *   profile.dump("basic_tokens_profile.txt");
+ */
+public class KeywordProfile {
+    private final int sampleInterval;
+    private final long[] counts = new long[BasicTokenTable.INFO.length>>1];
+    private final long[] firstCounts = new long[BasicTokenTable.INFO.length>>1];
+    private long statements; //解析过的语句数
+    private long samples; //统计过的语句数
+
+    public KeywordProfile(int sampleInterval) {
+        if (sampleInterval < 1)
+            throw new IllegalArgumentException("sampleInterval : " + sampleInterval);
+        this.sampleInterval = sampleInterval;
+    }
+
+    /*
+    * 每条语句开始时调用，返回这条语句是否需要统计
+    */
+    final boolean sample() {
+        if (statements++ % sampleInterval != 0)
+            return false;
+        samples++;
+        return true;
+    }
+
+    final void hit(int token, boolean first) {
+        counts[token]++;
+        if (first)
+            firstCounts[token]++;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getCount(int token) {
+        return counts[token];
+    }
+
+    public long getFirstCount(int token) {
+        return firstCounts[token];
+    }
+
+    /*
+    * 每行一个关键字：名字、出现次数、作为第一个 token 的次数，用 tab 分隔；# 开头的是注释
+    */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        lines.add("#samples\t" + samples);
+        for (int token = 0; token < counts.length; token++)
+            lines.add(BasicTokenTable.NAMES[token] + '\t' + counts[token] + '\t' + firstCounts[token]);
+        return lines;
+    }
+
+    public void dump(String file) throws IOException {
+        Files.write(Paths.get(file), lines(), StandardCharsets.UTF_8);
+    }
+}
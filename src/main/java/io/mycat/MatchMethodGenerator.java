@@ -1,7 +1,6 @@
 package io.mycat;
 
 import com.alibaba.druid.sql.parser.Token;
-import javafx.util.Pair;
 
 import java.io.File;
 import java.io.IOException;
@@ -125,6 +124,64 @@ public class MatchMethodGenerator {
         map.put("INOUT", Token.INOUT);
     }
 
+    /**
+     * BASIC_PARSER 识别的关键字和紧跟在关键字之后的字符：BLANK 为空白或结尾，FUNC 为 ( 或空白，END 为空白、; 或结尾
+     * 新增关键字时在这里加一项（关键字要在 sql_tokens.txt 中），运行 GenerateBasicTokenTable() 重新生成 BasicTokenTable.java，
+     * 再在 SQLParser.basicKeyword() 里加上对应的处理；有 basic_tokens_profile.txt（KeywordProfile.dump() 的输出）时按其中的次数排列候选关键字
+     */
+    static Map<String, String> basicTokens = new LinkedHashMap<String, String>();
+
+    static {
+        basicTokens.put("FROM", "BLANK");
+        basicTokens.put("FOUND_ROWS", "FUNC");
+        basicTokens.put("FOR", "BLANK");
+        basicTokens.put("JOIN", "BLANK");
+        basicTokens.put("UPDATE", "BLANK");
+        basicTokens.put("USE", "BLANK");
+        basicTokens.put("USING", "FUNC");
+        basicTokens.put("UNION", "BLANK");
+        basicTokens.put("DELETE", "BLANK");
+        basicTokens.put("DROP", "BLANK");
+        basicTokens.put("DISTINCT", "BLANK");
+        basicTokens.put("SELECT", "BLANK");
+        basicTokens.put("SET", "BLANK");
+        basicTokens.put("SUM", "FUNC");
+        basicTokens.put("START", "BLANK");
+        basicTokens.put("SHOW", "BLANK");
+        basicTokens.put("INSERT", "BLANK");
+        basicTokens.put("INTO", "BLANK");
+        basicTokens.put("LEFT", "BLANK");
+        basicTokens.put("LOCK", "BLANK");
+        basicTokens.put("LAST_INSERT_ID", "FUNC");
+        basicTokens.put("LIMIT", "BLANK");
+        basicTokens.put("ALTER", "BLANK");
+        basicTokens.put("AVG", "FUNC");
+        basicTokens.put("CREATE", "BLANK");
+        basicTokens.put("COUNT", "FUNC");
+        basicTokens.put("MIN", "FUNC");
+        basicTokens.put("MAX", "FUNC");
+        basicTokens.put("HAVING", "BLANK");
+        basicTokens.put("ORDER", "BLANK");
+        basicTokens.put("OVER", "FUNC");
+        basicTokens.put("ON", "BLANK");
+        basicTokens.put("WINDOW", "BLANK");
+        basicTokens.put("WHERE", "BLANK");
+        basicTokens.put("REPLACE", "BLANK");
+        basicTokens.put("RELEASE_LOCK", "FUNC");
+        basicTokens.put("RELEASE_ALL_LOCKS", "FUNC");
+        basicTokens.put("RIGHT", "BLANK");
+        basicTokens.put("TABLE", "BLANK");
+        basicTokens.put("TEMPORARY", "BLANK");
+        basicTokens.put("TRUNCATE", "BLANK");
+        basicTokens.put("TRANSACTION", "END");
+        basicTokens.put("GET_LOCK", "FUNC");
+        basicTokens.put("GROUP", "BLANK");
+        basicTokens.put("GROUP_CONCAT", "FUNC");
+        basicTokens.put("PREPARE", "BLANK");
+        basicTokens.put("BEGIN", "END");
+        basicTokens.put("VALUES", "FUNC");
+    }
+
     static final byte[] shrinkCharTbl = new byte[96];//为了压缩hash字符映射空间，再次进行转义
     static void initShrinkCharTbl () {
         shrinkCharTbl[0] = 1;//从 $ 开始计算
@@ -220,7 +277,7 @@ public class MatchMethodGenerator {
     }
 
     static int collideCount = 0;
-    static long hashCollideTest(final List<Pair<Long, char[]>> sqlKeys, final ArrayList<Character> srcArray,
+    static long hashCollideTest(final List<Map.Entry<Long, char[]>> sqlKeys, final ArrayList<Character> srcArray,
                                 final int maxDepth, final int depth, final char[] str,
                                 final long totalCount, final long count) {
         long newCount = count;
@@ -253,9 +310,9 @@ public class MatchMethodGenerator {
         srcArray.add('_');
         srcArray.add('-');
 
-        List<Pair<Long, char[]>> sqlKeys = Stream.of(Token.values())
+        List<Map.Entry<Long, char[]>> sqlKeys = Stream.of(Token.values())
                 .filter(t -> t.name()!=null)
-                .map(x -> new Pair<>(genHash(x.name().toCharArray()), x.name().toCharArray()))
+                .map(x -> new AbstractMap.SimpleEntry<>(genHash(x.name().toCharArray()), x.name().toCharArray()))
                 .collect(Collectors.toList());
 
         collideCount = 0;
@@ -346,12 +403,136 @@ public class MatchMethodGenerator {
         }
     }
 
+    /**
+     * 生成 BasicTokenTable.java：第一个字节查 FIRST_BYTE 得到符号类别或关键字族（首字母），
+     * 关键字族再按第二个字符查 SECOND 得到候选关键字的下标范围，同一范围内的关键字下标连续
+     */
+    static void GenerateBasicTokenTable() {
+        Set<String> sqlTokens;
+        try {
+            sqlTokens = Files.lines(Paths.get("sql_tokens.txt")).map(String::trim).collect(Collectors.toSet());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        List<String> families = new ArrayList<>();
+        basicTokens.keySet().forEach(x -> {
+            if (!sqlTokens.contains(x))
+                throw new IllegalStateException(x + " is not in sql_tokens.txt");
+            if (x.length() < 2 || x.length() > 24)
+                throw new IllegalStateException(x + " : keyword length must be 2~24");
+            if (!families.contains(x.substring(0, 1)))
+                families.add(x.substring(0, 1));
+        });
+        //KeywordProfile.dump() 输出的统计，没有时按 basicTokens 中的顺序
+        Map<String, Long> profile = new HashMap<>();
+        if (Files.exists(Paths.get("basic_tokens_profile.txt"))) {
+            try {
+                Files.lines(Paths.get("basic_tokens_profile.txt"))
+                        .filter(x -> !x.startsWith("#") && !x.trim().isEmpty())
+                        .map(x -> x.split("\t"))
+                        .forEach(x -> profile.put(x[0], Long.parseLong(x[1])));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        //按 (族, 第二个字符 & 0x1F) 排序，同一组内出现次数多的在前，SQLReader.basicToken() 按顺序逐个比较
+        List<String> keywords = basicTokens.keySet().stream()
+                .sorted(Comparator.comparingInt((String x) -> families.indexOf(x.substring(0, 1)) << 5 | (x.charAt(1) & 0x1F))
+                        .thenComparing(x -> -profile.getOrDefault(x, 0L)))
+                .collect(Collectors.toList());
+
+        byte[] firstByte = new byte[256];
+        " \t\r\n".chars().forEach(c -> firstByte[c] = 1);
+        firstByte['('] = 2;
+        firstByte[')'] = 3;
+        firstByte[','] = 4;
+        firstByte['#'] = 5;
+        firstByte['-'] = 6;
+        firstByte['/'] = 7;
+        firstByte['\''] = 8;
+        firstByte['"'] = 8;
+        firstByte['@'] = 9;
+        for (int i = 0; i < families.size(); i++) {
+            char c = families.get(i).charAt(0);
+            firstByte[c] = firstByte[Character.toLowerCase(c)] = (byte) (16 + i);
+        }
+        int[] second = new int[families.size() << 5];
+        for (int id = 0; id < keywords.size(); id++) {
+            String x = keywords.get(id);
+            int slot = families.indexOf(x.substring(0, 1)) << 5 | (x.charAt(1) & 0x1F);
+            if (second[slot] == 0)
+                second[slot] = id << 8;
+            second[slot]++;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("package io.mycat;\n\n");
+        sb.append("/**\n");
+        sb.append(" * 由 MatchMethodGenerator.GenerateBasicTokenTable() 根据 sql_tokens.txt 生成，不要手工修改\n");
+        sb.append(" * BASIC_PARSER 用 FIRST_BYTE[第一个字节] 分派：小于 FAMILY 的是符号类别，大于等于 FAMILY 的是关键字族（首字母，忽略大小写），\n");
+        sb.append(" * 关键字族再用 SECOND[(族 - FAMILY) << 5 | (第二个字节 & 0x1F)] 取出候选关键字，由 SQLReader.basicToken() 逐个比较\n");
+        if (!profile.isEmpty())
+            sb.append(" * 候选关键字按 basic_tokens_profile.txt 中的出现次数排列\n");
+        sb.append(" */\n");
+        sb.append("final class BasicTokenTable {\n");
+        sb.append("    static final byte OTHER = 0;\n    static final byte BLANK = 1;\n    static final byte LPAREN = 2;\n    static final byte RPAREN = 3;\n");
+        sb.append("    static final byte COMMA = 4;\n    static final byte SHARP = 5;\n    static final byte MINUS = 6;\n    static final byte SLASH = 7;\n");
+        sb.append("    static final byte QUOTE = 8;\n    static final byte AT = 9;\n    static final byte FAMILY = 16;\n\n");
+        sb.append("    //关键字之后的字符\n");
+        sb.append("    static final byte TERM_BLANK = 0; //空白或结尾\n    static final byte TERM_FUNC = 1; //( 或空白\n    static final byte TERM_END = 2; //空白、; 或结尾\n\n");
+        sb.append("    static final int NOT_FOUND = -1;\n");
+        for (int id = 0; id < keywords.size(); id++)
+            sb.append(String.format("    static final int %s = %d;%n", keywords.get(id), id));
+        sb.append("\n    static final String[] NAMES = {");
+        for (int id = 0; id < keywords.size(); id++)
+            sb.append(id % 8 == 0 ? "\n            " : " ").append('"').append(keywords.get(id)).append("\",");
+        sb.append("\n    };\n");
+        sb.append("\n    static final byte[] FIRST_BYTE = {");
+        for (int i = 0; i < firstByte.length; i++)
+            sb.append(i % 32 == 0 ? "\n            " : " ").append(firstByte[i]).append(',');
+        sb.append("\n    };\n\n");
+        sb.append("    //记录格式：[{第一个候选关键字的下标 << 8 | 候选个数}]，不是关键字开头的为0\n");
+        sb.append("    static final short[] SECOND = {");
+        for (int i = 0; i < second.length; i++)
+            sb.append(i % 32 == 0 ? "\n            " : " ").append(String.format("0x%x", second[i])).append(',');
+        sb.append("\n    };\n\n");
+        sb.append("    //记录格式：[{关键字长度, 结束条件}]\n");
+        sb.append("    static final byte[] INFO = {");
+        for (String x : keywords)
+            sb.append("\n            ").append(x.length()).append(", TERM_").append(basicTokens.get(x)).append(", //").append(x);
+        sb.append("\n    };\n\n");
+        sb.append("    //记录格式：[{字符0~7, 字符8~15, 字符16~23}]，按 SQLReader.getLong() 的字节序打包，不足的补0\n");
+        sb.append("    static final long[] CHARS = {");
+        for (String x : keywords) {
+            sb.append("\n           ");
+            for (int i = 0; i < 24; i += 8)
+                sb.append(String.format(" 0x%016xL,", SQLReader.keyword(x.substring(Math.min(i, x.length()), Math.min(i+8, x.length())))));
+        }
+        sb.append("\n    };\n\n");
+        sb.append("    //记录格式：[{掩码0~7, 掩码8~15, 掩码16~23}]，字母为 0xDF（忽略大小写），其他字符为 0xFF，超出长度的为0\n");
+        sb.append("    static final long[] MASKS = {");
+        for (String x : keywords) {
+            sb.append("\n           ");
+            for (int i = 0; i < 24; i += 8) {
+                long mask = 0;
+                for (int k = Math.min(i+8, x.length())-1; k >= i; k--)
+                    mask = mask << 8 | (Character.isLetter(x.charAt(k)) ? 0xDF : 0xFF);
+                sb.append(String.format(" 0x%016xL,", mask));
+            }
+        }
+        sb.append("\n    };\n}\n");
+        System.out.print(sb);
+    }
+
     public static void main(String[] args) {
         //isXXXTokenGenerator();
         //skipXXXTokenGenerator();
 //        sqlKeyHastTest();
 //        run();
 //        test1();
-        GenerateSqlTokenHash();
+//        GenerateSqlTokenHash();
+        GenerateBasicTokenTable();
     }
 }
@@ -0,0 +1,57 @@
+package io.mycat;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 当前生效的路由元数据：读线程只读一次 AtomicReference 拿到快照，整条语句都用这个快照路由，不加锁
+ * 写线程复制当前快照修改后用 CAS 发布，epoch 加1；多个写线程同时修改时失败的一方基于最新快照重做
+ * 缓存的解析/路由结果不主动清理，使用前用 isStale 检查，过期的重新路由
+ * 用法：
+ *   RoutingMetadata metadata = registry.acquire(context); //路由开始时
+ *   ...
+ *   if (registry.isStale(cachedContext)) ... //重新路由
+ *   registry.update(b -> b.addTable("tbl_order", router, nodes));
+ */
+public class MetadataRegistry {
+    private final AtomicReference<RoutingMetadata> current;
+
+    public MetadataRegistry(int datanodeCount) {
+        this(RoutingMetadata.empty(datanodeCount));
+    }
+
+    public MetadataRegistry(RoutingMetadata initial) {
+        current = new AtomicReference<>(initial);
+    }
+
+    public RoutingMetadata current() { return current.get(); }
+
+    /*
+    * 取当前快照并把它的 epoch 记录到 context 中，context 中的路由结果都是基于这个快照计算的
+    */
+    public RoutingMetadata acquire(SQLContext context) {
+        RoutingMetadata metadata = current.get();
+        context.setMetadataEpoch(metadata.getEpoch());
+        return metadata;
+    }
+
+    //context 还没有路由过，或者路由之后元数据又发布过新版本
+    public boolean isStale(SQLContext context) {
+        long epoch = context.getMetadataEpoch();
+        return epoch == SQLContext.EPOCH_NONE || epoch != current.get().getEpoch();
+    }
+
+    /*
+    * 复制当前快照，由 updater 修改后发布，返回发布的快照；updater 可能因为并发修改被调用多次，不要在里面产生副作用
+    */
+    public RoutingMetadata update(Consumer<RoutingMetadata.Builder> updater) {
+        for (;;) {
+            RoutingMetadata old = current.get();
+            RoutingMetadata.Builder builder = old.toBuilder();
+            updater.accept(builder);
+            RoutingMetadata next = builder.build(old.getEpoch()+1);
+            if (current.compareAndSet(old, next))
+                return next;
+        }
+    }
+}
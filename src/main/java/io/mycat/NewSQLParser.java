@@ -1,6 +1,7 @@
 package io.mycat;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 import static io.mycat.TokenHash.FROM;
@@ -31,21 +32,55 @@ public class NewSQLParser {
     SQLContext context;
     SQLReader reader;
 
+    /*
+    * token 记录格式：[{type<<32 | size<<16 | start, hash}]，sql 不超过 64KB 时 start、size 都放在第一个long中（紧凑格式）
+    * 超过 64KB 时改用宽格式：size 截断到 0xFFFF（getIntHash 只用来匹配关键字，不会和关键字长度冲突），
+    * 32位的 start、size 另外记录在 wideArray 中：[{start, size}]
+    * 数组按需扩容，解析器重复使用时保留；偶尔出现的超长sql（批量INSERT）撑大的数组按最近的高水位收缩回来
+    */
     class HashArray {
-        long[] hashArray = new long[1024];
+        static final int INIT_SIZE = 1024;
+        static final int SHRINK_INTERVAL = 1024; //每解析这么多次检查一次是否需要收缩
+        long[] hashArray = new long[INIT_SIZE];
+        int[] wideArray = new int[0];
+        boolean wide;
         int pos = 0;
-
-        void init() {
-            while(pos>=0) {
-                hashArray[pos--] = 0;
+        int highWater = 0; //最近一个检查周期内最多用到的 hashArray 长度
+        int initCount = 0;
+
+        void init(int sqlLength) {
+            if (pos > highWater)
+                highWater = pos;
+            if (++initCount == SHRINK_INTERVAL) {
+                int size = Math.max(INIT_SIZE, Integer.highestOneBit(Math.max(highWater, 1)*2-1)); //不小于高水位的2的幂
+                if (hashArray.length > size<<1) {
+                    hashArray = new long[size];
+                    wideArray = new int[0];
+                }
+                highWater = 0;
+                initCount = 0;
             }
+            wide = sqlLength > 0xFFFF;
             pos = 0;
         }
-        void set(int type, int start, int size) { hashArray[pos++] = (long)type << 32 | size << 16 | start; pos++; }
-        void set(int type, int start, int size, long hash) { hashArray[pos++] = (long)type << 32 | size << 16 | start; hashArray[pos++] = hash; }
-        int getPos(int idx) { return ((int)hashArray[idx<<1])>>>16; }
-        int getSize(int idx) { return ((int)hashArray[idx<<1]&0xFFFF0000); }
-        int getType(int idx) { return (int)(hashArray[idx<<1]&0xFFFFFFFF00000000L>>>32); }
+        void set(int type, int start, int size) { set(type, start, size, 0L); }
+        void set(int type, int start, int size, long hash) {
+            if (pos+2 > hashArray.length)
+                hashArray = Arrays.copyOf(hashArray, hashArray.length<<1);
+            if (wide) {
+                if (pos+2 > wideArray.length)
+                    wideArray = Arrays.copyOf(wideArray, hashArray.length);
+                wideArray[pos] = start;
+                wideArray[pos+1] = size;
+                hashArray[pos++] = (long)type << 32 | (long)Math.min(size, 0xFFFF) << 16;
+            } else {
+                hashArray[pos++] = (long)type << 32 | (size << 16 | start) & 0xFFFFFFFFL; //size 可能超过 0x7FFF，不能做符号扩展
+            }
+            hashArray[pos++] = hash;
+        }
+        int getPos(int idx) { return wide ? wideArray[idx<<1] : (int)hashArray[idx<<1]&0xFFFF; }
+        int getSize(int idx) { return wide ? wideArray[(idx<<1)+1] : ((int)hashArray[idx<<1]>>>16)&0xFFFF; }
+        int getType(int idx) { return (int)(hashArray[idx<<1]>>>32); }
         void setType(int idx, int type) { hashArray[idx<<1] = (hashArray[idx<<1] & 0xFFFFFFFFL) | ((long)type << 32); }
         long getHash(int idx) { return hashArray[(idx<<1)+1]; }
         int getIntHash(int idx) {
@@ -55,6 +90,78 @@ public class NewSQLParser {
         int getCount() {return pos>>1;}
     }
 
+    /*
+    * 按需读取 token 的游标：next() 只向后读出一个 token，和 tokenize 一样追加到 hashArray，之前读出的 token 仍然按下标访问；
+    * 只需要前几个 token（比如按语句类型路由）时不用扫描整条 sql，已经读出的部分可以直接交给 firstParse，需要全部 token 时调用 fill()
+    * type() 对标点、字符串、数字是 DIGITS、STRINGS、COMMA 等常量，对单词是哈希值，关键字用 intHash()/hash() 匹配
+    */
+    public final class TokenCursor {
+        private byte[] sql;
+        private int pos; //下一个 token 从这里开始读
+        private int idx; //当前 token 在 hashArray 中的下标，next() 之前为 -1
+
+        void reset(byte[] sql) {
+            this.sql = sql;
+            pos = 0;
+            idx = -1;
+        }
+
+        public boolean next() {
+            if (!read(idx+1))
+                return false;
+            idx++;
+            return true;
+        }
+
+        //下一个 token 的类型，不移动游标，没有时返回 0
+        public int peekType() { return read(idx+1) ? hashArray.getType(idx+1) : 0; }
+
+        //读出剩余的全部 token，之后 hashArray 和 tokenize 的结果一致
+        public void fill() {
+            int sqlLength = sql.length;
+            while (pos < sqlLength)
+                pos = lex(sql, pos, sqlLength);
+        }
+
+        //保证 hashArray 中至少有 i+1 个 token
+        private boolean read(int i) {
+            int sqlLength = sql.length;
+            while (hashArray.getCount() <= i) {
+                if (pos >= sqlLength)
+                    return false;
+                pos = lex(sql, pos, sqlLength);
+            }
+            return true;
+        }
+
+        public int index() { return idx; }
+        public int type() { return hashArray.getType(idx); }
+        public int intHash() { return hashArray.getIntHash(idx); }
+        public long hash() { return hashArray.getHash(idx); }
+        public int start() { return hashArray.getPos(idx); }
+        public int size() { return hashArray.getSize(idx); }
+    }
+
+    /*
+    * scan() 推送 token 的回调，pos/len 为在 sql 中的位置和长度
+    * scan() 中每个回调只有一个调用点，进程中只用一个实现类时调用点保持单态，JIT 可以把回调内联到扫描循环中；
+    * 多个消费者（审计、防火墙、统计）最好合并到一个 final 类里直接调用各自的处理，而不是各自实现接口轮流传入
+    */
+    public interface TokenListener {
+        int LITERAL_NUMBER = DIGITS;  //整数，1.5 为 1 . 5 三个 token
+        int LITERAL_STRING = STRINGS; //pos/len 为引号内的内容
+
+        //hash 为 MySQL 保留字，和 TokenHash 中的常量比较；NAME、STATUS 等非保留字和反引号括起的保留字都按 onIdentifier 推送
+        default void onKeyword(long hash, int pos, int len) {}
+        //其他单词：表名、字段名、别名、函数名等，反引号不在范围内
+        default void onIdentifier(long hash, int pos, int len) {}
+        default void onLiteral(int type, int pos, int len) {}
+        //注释，包括 /* */、-- 和 #（-- 和 # 不包括行尾的换行）
+        default void onComment(int pos, int len) {}
+        //pos 为 ; 的位置，最后一条语句没有 ; 时为 sql 的长度；;; 这类没有 token 的空语句不推送
+        default void onStatementEnd(int pos) {}
+    }
+
 /*    class TokenArray {
         short[] tokenPosArray = new short[1024];
         byte[] tokenSizeArray = new byte[1024];
@@ -74,35 +181,36 @@ public class NewSQLParser {
 
 //    final byte readArrayByte(Object array, long pos) { return UNSAFE.getByte(array, pos+16); }//unsafe访问数组需要往后偏移16位？？
 
-    private final int DIGITS = 1;
-    private final int CHARS = 2;
-    private final int STRINGS = 3;
-    private final int MINUS = 4;
-    private final int SHARP = 5;
-    private final int DIVISION = 6;
-    private final byte DOT = 7;
-    private final byte COMMA = 8;
-    private final byte BACK_SLASH = 9;
-    private final byte LEFT_PARENTHESES = 10;
-    private final byte RIGHT_PARENTHESES = 11;
-    private final byte SEMICOLON = 12;
-    private final byte STAR = 13;
-    private final byte EQUAL = 14;
-    private final byte PLUS = 15;
-    private final byte LESS = 16;
-    private final byte GREATER = 17;
-    private final byte AT = 18;
-    private final byte COMMENTS = 19;
+    static final int DIGITS = 1;
+    static final int CHARS = 2;
+    static final int STRINGS = 3;
+    static final int MINUS = 4;
+    static final int SHARP = 5;
+    static final int DIVISION = 6;
+    static final byte DOT = 7;
+    static final byte COMMA = 8;
+    static final byte BACK_SLASH = 9;
+    static final byte LEFT_PARENTHESES = 10;
+    static final byte RIGHT_PARENTHESES = 11;
+    static final byte SEMICOLON = 12;
+    static final byte STAR = 13;
+    static final byte EQUAL = 14;
+    static final byte PLUS = 15;
+    static final byte LESS = 16;
+    static final byte GREATER = 17;
+    static final byte AT = 18;
+    static final byte COMMENTS = 19;
 
 //    static final byte
 
     final byte[] charType = new byte[512];
     //final byte[] shrinkCharTbl = new byte[96];//为了压缩hash字符映射空间，再次进行转义
     HashArray hashArray = new HashArray();
+    final TokenCursor cursor = new TokenCursor();
     //TokenArray tokenArray = new TokenArray();
 //    Unsafe UNSAFE;
 
-    void init() {
+    public void init() {
         //// TODO: 2017/2/21 可能需要调整顺序进行优化
         IntStream.rangeClosed('0', '9').forEach(c -> charType[c<<1] = DIGITS);
         IntStream.rangeClosed('A', 'Z').forEach(c -> charType[c<<1] = CHARS);
@@ -158,7 +266,7 @@ public class NewSQLParser {
         long hash = c = charType[(c<<1)+1];
         int type = 1315423911;
         type ^= (type<<5) + c + (type>>2);
-        while (++pos < sqlLength && (((cType = charType[(c = sql[pos])<<1]) == 2) || cType == 1) ) {
+        while (++pos < sqlLength && (((cType = charType[((c = sql[pos])&0xFF)<<1]) == 2) || cType == 1) ) {
             cType = charType[(c<<1)+1];
             hash = (hash*41)+cType;//别问我为什么是41
             type ^= (type<<5) + cType + (type>>2);
@@ -168,28 +276,34 @@ public class NewSQLParser {
         return pos;
     }
 
+    //pos指向引号后的第一个字符，记录的是引号内的内容，返回值跳过结束引号
     int parseString(byte[] sql, int pos, int sqlLength, int startSign) {
-        int size = 1;
         int start = pos;
         int c;
-        while (++pos < sqlLength ) {
+        while (pos < sqlLength) {
             c = sql[pos];
             if (c == '\\') {
                 pos+=2;
-            } else if (c == startSign ) {
-                break;
+            } else if (c == startSign) {
+                if (pos+1 < sqlLength && sql[pos+1] == startSign) { //'' 或 "" 转义
+                    pos+=2;
+                } else {
+                    break;
+                }
             } else {
-                size++;
+                pos++;
             }
         }
-        hashArray.set(STRINGS, start, size, 0L);
-        return pos;
+        if (pos > sqlLength)
+            pos = sqlLength;
+        hashArray.set(STRINGS, start, pos-start, 0L);
+        return pos+1;
     }
 
     int parseDigits(byte[] sql, int pos, int sqlLength) {
         int start = pos;
         int size = 1;
-        while (++pos<sqlLength && charType[sql[pos]<<1] == DIGITS) {
+        while (++pos<sqlLength && charType[(sql[pos]&0xFF)<<1] == DIGITS) {
             size++;
         }
         hashArray.set(DIGITS, start, size);
@@ -201,27 +315,29 @@ public class NewSQLParser {
         return pos;
     }
 
+    //pos指向/*中的*，注释整体（包括/* */）作为一个COMMENTS记录下来，注解需要用到
     int skipMultiLineComment(byte[] sql, int pos, int sqlLength, int pre) {
         int start = pos-1;
-        int size=2;
         while (++pos < sqlLength) {
-            if (pre == '*' && sql[pos] == '/' ) {
-                size++;
+            if (sql[pos] == '/' && pre == '*') {
+                pos++;
+                break;
             }
+            pre = sql[pos];
         }
-        hashArray.set(COMMENTS, start, size);
+        hashArray.set(COMMENTS, start, pos-start);
         return pos;
     }
 
     void tokenize(byte[] sql) {
         int pos = 0;
         int sqlLength = sql.length;
-        hashArray.init();
+        hashArray.init(sqlLength);
         byte c;
         byte cType;
         while (pos < sqlLength) {
             c = sql[pos];
-            cType = charType[c<<1];
+            cType = charType[(c&0xFF)<<1];
 
 //            if (cType == CHARS) {
 //                pos = parseToken(sql, pos, sqlLength, c);
@@ -266,8 +382,8 @@ public class NewSQLParser {
                     pos = parseString(sql, ++pos, sqlLength, c);
                     break;
                 case MINUS:
-                    if (sql[++pos]!='-') {
-                        hashArray.set(MINUS, pos++, 1);
+                    if (++pos == sqlLength || sql[pos]!='-') {
+                        hashArray.set(MINUS, pos-1, 1);
                     } else {
                         pos = skipSingleLineComment(sql, pos, sqlLength);
                     }
@@ -276,13 +392,13 @@ public class NewSQLParser {
                     pos = skipSingleLineComment(sql, pos, sqlLength);
                     break;
                 case DIVISION:
-                    int next = sql[++pos];
+                    int next = ++pos < sqlLength ? sql[pos] : 0;
                     if (next == '*') {
-                        pos = skipMultiLineComment(sql, pos, sqlLength, next);
-                    } if (next == '/') {
+                        pos = skipMultiLineComment(sql, pos, sqlLength, 0);
+                    } else if (next == '/') {
                         pos = skipSingleLineComment(sql, pos, sqlLength);
                     } else {
-                        hashArray.set(charType[next<<1], pos++, 1);
+                        hashArray.set(DIVISION, pos-1, 1);
                     }
                     break;
                 default:
@@ -291,6 +407,114 @@ public class NewSQLParser {
         }
     }
 
+    /*
+    * 处理 pos 上的一个字符或者一个 token（读出的 token 追加到 hashArray），返回之后的位置，供 TokenCursor 逐个读取；
+    * 与 tokenize 的循环体相同（tokenize 中内联展开，改为调用 lex 慢20%以上），NewUnsafeSQLParser.tokenize 中还有一份；
+    * 修改词法规则时几处一起改，testNewSQLParserLexers 用随机输入对比 tokenize、游标、scan 和 NewUnsafeSQLParser 的结果
+    */
+    int lex(byte[] sql, int pos, int sqlLength) {
+        byte c = sql[pos];
+        byte cType = charType[(c&0xFF)<<1];
+        switch (cType) {
+            case 0:
+                return pos+1;
+            case CHARS:
+                pos = parseToken(sql, pos, sqlLength, c);
+                break;
+            case DIGITS:
+                pos = parseDigits(sql, pos, sqlLength);
+                break;
+            case STRINGS:
+                pos = parseString(sql, ++pos, sqlLength, c);
+                break;
+            case MINUS:
+                if (++pos == sqlLength || sql[pos]!='-') {
+                    hashArray.set(MINUS, pos-1, 1);
+                } else {
+                    pos = skipSingleLineComment(sql, pos, sqlLength);
+                }
+                break;
+            case SHARP:
+                pos = skipSingleLineComment(sql, pos, sqlLength);
+                break;
+            case DIVISION:
+                int next = ++pos < sqlLength ? sql[pos] : 0;
+                if (next == '*') {
+                    pos = skipMultiLineComment(sql, pos, sqlLength, 0);
+                } else if (next == '/') {
+                    pos = skipSingleLineComment(sql, pos, sqlLength);
+                } else {
+                    hashArray.set(DIVISION, pos-1, 1);
+                }
+                break;
+            default:
+                hashArray.set(cType, pos++, 1);
+        }
+        return pos;
+    }
+
+    /*
+    * 从头开始按需读取 sql 中的 token，返回解析器唯一的游标（不分配对象）；调用 tokenize 之后游标失效
+    */
+    TokenCursor cursor(byte[] sql) {
+        hashArray.init(sql.length);
+        cursor.reset(sql);
+        return cursor;
+    }
+
+    /*
+    * 一次扫描，每读出一个 token 就推送给 listener；token 同样记录在 hashArray 中，之后仍然可以 firstParse
+    * 包外的审计、防火墙、统计代码直接调用，解析器先 init() 一次
+    */
+    public void scan(byte[] sql, TokenListener listener) {
+        int pos = 0;
+        int sqlLength = sql.length;
+        boolean pending = false; //上一个 ; 之后是否还有 token
+        hashArray.init(sqlLength);
+        while (pos < sqlLength) {
+            int start = pos;
+            byte cType = charType[(sql[pos]&0xFF)<<1];
+            if (cType == 0) {
+                pos++;
+                continue;
+            }
+            int count = hashArray.getCount();
+            pos = lex(sql, pos, sqlLength);
+            if (count == hashArray.getCount()) { //空白之外不产生 token 的只有 --、#、// 注释
+                listener.onComment(start, pos-start);
+                continue;
+            }
+            switch (cType) {
+                case CHARS:
+                    long hash = hashArray.getHash(count);
+                    if (TokenHash.isKeyword(hash) && (start == 0 || sql[start-1] != '`')) //`select` 是名字
+                        listener.onKeyword(hash, start, pos-start);
+                    else
+                        listener.onIdentifier(hash, start, pos-start);
+                    break;
+                case DIGITS:
+                case STRINGS:
+                    listener.onLiteral(cType, hashArray.getPos(count), hashArray.getSize(count));
+                    break;
+                case DIVISION:
+                    if (hashArray.getType(count) == COMMENTS) {
+                        listener.onComment(start, pos-start);
+                        continue; //语句之间的注释不算语句内容
+                    }
+                    break;
+                case SEMICOLON:
+                    if (pending)
+                        listener.onStatementEnd(start);
+                    pending = false;
+                    continue;
+                default:
+            }
+            pending = true;
+        }
+        if (pending)
+            listener.onStatementEnd(sqlLength);
+    }
+
     void pickTableNames(int idx) {
 
     }
@@ -307,7 +531,7 @@ public class NewSQLParser {
                     break;
                 case IntTokenHash.JOIN:
                     if (hashArray.getHash(i) == TokenHash.JOIN) {
-
+                        context.setFeature(SQLContext.FEATURE_JOIN);
                     }
                     break;
                 case IntTokenHash.UPDATE:
@@ -332,7 +556,10 @@ public class NewSQLParser {
                     break;
                 case IntTokenHash.SELECT:
                     if (hashArray.getHash(i) == TokenHash.SELECT) {
-
+                        if (i > 0 && hashArray.getType(i-1) == LEFT_PARENTHESES && context.getSQLType() != 0) {
+                            context.setFeature(SQLContext.FEATURE_SUBQUERY);
+                        }
+                        context.setSQLType(SQLContext.SELECT_SQL);
                     }
                     break;
                 case IntTokenHash.SHOW:
@@ -350,6 +577,52 @@ public class NewSQLParser {
 
                     }
                     break;
+                case IntTokenHash.LIMIT:
+                    if (hashArray.getHash(i) == TokenHash.LIMIT) {
+                        context.setFeature(SQLContext.FEATURE_LIMIT);
+                    }
+                    break;
+                case IntTokenHash.UNION:
+                    if (hashArray.getHash(i) == TokenHash.UNION) {
+                        context.setFeature(SQLContext.FEATURE_UNION);
+                    }
+                    break;
+                case IntTokenHash.GROUP:
+                    if (hashArray.getHash(i) == TokenHash.GROUP) {
+                        context.setFeature(SQLContext.FEATURE_GROUP_BY);
+                    }
+                    break;
+                case IntTokenHash.ORDER:
+                    if (hashArray.getHash(i) == TokenHash.ORDER) {
+                        context.setFeature(SQLContext.FEATURE_ORDER_BY);
+                    }
+                    break;
+                case IntTokenHash.DISTINCT:
+                    if (hashArray.getHash(i) == TokenHash.DISTINCT) {
+                        context.setFeature(SQLContext.FEATURE_DISTINCT);
+                    }
+                    break;
+                case IntTokenHash.HAVING:
+                    if (hashArray.getHash(i) == TokenHash.HAVING) {
+                        context.setFeature(SQLContext.FEATURE_HAVING);
+                    }
+                    break;
+                case IntTokenHash.COUNT:
+                case IntTokenHash.SUM:
+                case IntTokenHash.MIN:
+                case IntTokenHash.MAX:
+                case IntTokenHash.AVG:
+                case IntTokenHash.GROUP_CONCAT:
+                    if (isAggregate(hashArray.getHash(i)) && i+1 < hashArray.getCount() && hashArray.getType(i+1) == LEFT_PARENTHESES) {
+                        context.setFeature(SQLContext.FEATURE_AGGREGATE);
+                    }
+                    break;
+                case IntTokenHash.OVER:
+                case IntTokenHash.WINDOW:
+                    if (hashArray.getHash(i) == TokenHash.OVER || hashArray.getHash(i) == TokenHash.WINDOW) {
+                        context.setFeature(SQLContext.FEATURE_WINDOW);
+                    }
+                    break;
                 default:
                     break;
             }
@@ -357,6 +630,11 @@ public class NewSQLParser {
 
     }
 
+    static boolean isAggregate(long hash) {
+        return hash == TokenHash.COUNT || hash == TokenHash.SUM || hash == TokenHash.MIN || hash == TokenHash.MAX || hash == TokenHash.AVG
+                || hash == TokenHash.GROUP_CONCAT; //和 SQLParser 的 AGG_GROUP_CONCAT 一致
+    }
+
     /*
     * 计划用于第二遍解析，处理分片表分片条件
     */
@@ -0,0 +1,148 @@
+package io.mycat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * NewSQLParser 的 tokenize 改为通过 UnsafeReader 读取，去掉每次读 sql[pos] 时 JVM 的越界检查，
+ * 生成的 token 数组（hashArray）格式与 NewSQLParser 完全一致，firstParse、CompactAST 等可以直接使用
+ * 除了 byte[] 还可以直接解析 ByteBuffer（包括直接内存）和堆外地址，不需要先复制到堆内；pos 都相对于读取的起始位置
+ * 所有读取都在 pos < sqlLength 的循环条件之内，调试时用 -Dmycat.unsafe.checked=true 检查
+ */
+public class NewUnsafeSQLParser extends NewSQLParser {
+    final UnsafeReader raw = new UnsafeReader();
+
+    @Override
+    void tokenize(byte[] sql) {
+        raw.init(sql);
+        tokenize();
+    }
+
+    void tokenize(ByteBuffer buffer) {
+        raw.init(buffer);
+        tokenize();
+    }
+
+    void tokenize(long address, int length) {
+        raw.init(address, length);
+        tokenize();
+    }
+
+    int parseToken(int pos, int sqlLength, byte c) {
+        int cType;
+        int start = pos;
+        int size = 1;
+        long hash = c = charType[(c<<1)+1];
+        int type = 1315423911;
+        type ^= (type<<5) + c + (type>>2);
+        while (++pos < sqlLength && (((cType = charType[((c = raw.get(pos))&0xFF)<<1]) == 2) || cType == 1) ) {
+            cType = charType[(c<<1)+1];
+            hash = (hash*41)+cType;
+            type ^= (type<<5) + cType + (type>>2);
+            size++;
+        }
+        hashArray.set(type, start, size, hash);
+        return pos;
+    }
+
+    //pos指向引号后的第一个字符，记录的是引号内的内容，返回值跳过结束引号
+    int parseString(int pos, int sqlLength, int startSign) {
+        int start = pos;
+        int c;
+        while (pos < sqlLength) {
+            c = raw.get(pos);
+            if (c == '\\') {
+                pos+=2;
+            } else if (c == startSign) {
+                if (pos+1 < sqlLength && raw.get(pos+1) == startSign) { //'' 或 "" 转义
+                    pos+=2;
+                } else {
+                    break;
+                }
+            } else {
+                pos++;
+            }
+        }
+        if (pos > sqlLength)
+            pos = sqlLength;
+        hashArray.set(STRINGS, start, pos-start, 0L);
+        return pos+1;
+    }
+
+    int parseDigits(int pos, int sqlLength) {
+        int start = pos;
+        int size = 1;
+        while (++pos<sqlLength && charType[(raw.get(pos)&0xFF)<<1] == DIGITS) {
+            size++;
+        }
+        hashArray.set(DIGITS, start, size);
+        return pos;
+    }
+
+    int skipSingleLineComment(int pos, int sqlLength) {
+        while (++pos < sqlLength && raw.get(pos)!='\n');
+        return pos;
+    }
+
+    //pos指向/*中的*，注释整体（包括/* */）作为一个COMMENTS记录下来
+    int skipMultiLineComment(int pos, int sqlLength, int pre) {
+        int start = pos-1;
+        while (++pos < sqlLength) {
+            byte c = raw.get(pos);
+            if (c == '/' && pre == '*') {
+                pos++;
+                break;
+            }
+            pre = c;
+        }
+        hashArray.set(COMMENTS, start, pos-start);
+        return pos;
+    }
+
+    private void tokenize() {
+        int pos = 0;
+        int sqlLength = raw.length();
+        hashArray.init(sqlLength);
+        byte c;
+        byte cType;
+        while (pos < sqlLength) {
+            c = raw.get(pos);
+            cType = charType[(c&0xFF)<<1];
+            switch (cType) {
+                case 0:
+                    pos++;
+                    break;
+                case CHARS:
+                    pos = parseToken(pos, sqlLength, c);
+                    break;
+                case DIGITS:
+                    pos = parseDigits(pos, sqlLength);
+                    break;
+                case STRINGS:
+                    pos = parseString(++pos, sqlLength, c);
+                    break;
+                case MINUS:
+                    if (++pos == sqlLength || raw.get(pos)!='-') {
+                        hashArray.set(MINUS, pos-1, 1);
+                    } else {
+                        pos = skipSingleLineComment(pos, sqlLength);
+                    }
+                    break;
+                case SHARP:
+                    pos = skipSingleLineComment(pos, sqlLength);
+                    break;
+                case DIVISION:
+                    int next = ++pos < sqlLength ? raw.get(pos) : 0;
+                    if (next == '*') {
+                        pos = skipMultiLineComment(pos, sqlLength, 0);
+                    } else if (next == '/') {
+                        pos = skipSingleLineComment(pos, sqlLength);
+                    } else {
+                        hashArray.set(DIVISION, pos-1, 1);
+                    }
+                    break;
+                default:
+                    hashArray.set(cType, pos++, 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.mycat;
+
+import java.util.Arrays;
+
+/**
+ * 范围分片的裁剪：把 SQLContext 中的范围条件换算成数据节点位图
+ * 分区用有序的起始值数组描述，第 i 个分区覆盖 [starts[i], starts[i+1])，最后一个分区到正无穷，小于 starts[0] 的值不属于任何分区
+ * 位图为 long[]，第 i 个节点对应 bitset[i>>>6] 的第 (i&63) 位，只做或操作，调用方负责清零
+ */
+public class PartitionPruner {
+
+    /*
+    * 把 [from, to] 范围内的位全部置1
+    */
+    public static void setBits(long[] bitset, int from, int to) {
+        if (from > to)
+            return;
+        int fromWord = from>>>6;
+        int toWord = to>>>6;
+        long fromMask = -1L << from; //移位只取低6位
+        long toMask = -1L >>> (63-(to&63));
+        if (fromWord == toWord) {
+            bitset[fromWord] |= fromMask & toMask;
+            return;
+        }
+        bitset[fromWord] |= fromMask;
+        for (int i = fromWord+1; i < toWord; i++)
+            bitset[i] = -1L;
+        bitset[toWord] |= toMask;
+    }
+
+    /*
+    * 闭区间 [low, high] 命中的分区
+    */
+    public static void prune(long[] starts, long low, long high, long[] bitset) {
+        if (low > high || starts.length == 0 || high < starts[0])
+            return;
+        setBits(bitset, partitionOf(starts, low), partitionOf(starts, high));
+    }
+
+    /*
+    * 按整数边界裁剪第 rangeIdx 个范围条件，开区间换算成闭区间；字符串边界无法按整数比较，返回false，由调用方处理（比如按日期换算）
+    */
+    public static boolean prune(SQLContext context, int rangeIdx, long[] starts, long[] bitset) {
+        int flags = context.getRangeFlags(rangeIdx);
+        if ((flags & SQLContext.RANGE_STRING) != 0)
+            return false;
+        long low = Long.MIN_VALUE;
+        long high = Long.MAX_VALUE;
+        if ((flags & SQLContext.RANGE_LOW_UNBOUNDED) == 0) {
+            low = context.getRangeLow(rangeIdx);
+            if ((flags & SQLContext.RANGE_LOW_INCLUSIVE) == 0) {
+                if (low == Long.MAX_VALUE)
+                    return true;
+                low++;
+            }
+        }
+        if ((flags & SQLContext.RANGE_HIGH_UNBOUNDED) == 0) {
+            high = context.getRangeHigh(rangeIdx);
+            if ((flags & SQLContext.RANGE_HIGH_INCLUSIVE) == 0) {
+                if (high == Long.MIN_VALUE)
+                    return true;
+                high--;
+            }
+        }
+        prune(starts, low, high, bitset);
+        return true;
+    }
+
+    //value 所在的分区，小于 starts[0] 时按第0个分区处理（调用前已经排除了整个区间都小于 starts[0] 的情况）
+    static int partitionOf(long[] starts, long value) {
+        int idx = Arrays.binarySearch(starts, value);
+        if (idx < 0)
+            idx = -idx-2;
+        return idx < 0 ? 0 : idx;
+    }
+}
@@ -0,0 +1,130 @@
+package io.mycat;
+
+import java.util.Arrays;
+
+/**
+ * 按谓词树计算命中的数据节点：SQLContext 中的谓词节点是逆波兰序，原子条件交给 AtomRouter 换算成位图入栈，
+ * AND 求交集、OR 求并集，NOT 和无法识别的条件按全部节点处理（原子条件的位图只是可能命中的节点，取反后不能裁剪）
+ * 位图为 long[]，第 i 个节点对应 bitset[i>>>6] 的第 (i&63) 位，栈中的位图预先分配并重复使用，计算过程中不分配内存
+ * 用法：
+ *   PredicateEvaluator evaluator = new PredicateEvaluator(1024);
+ *   long[] nodes = new long[evaluator.words()];
+ *   int hits = evaluator.evaluateScope(context, 0, router, nodes);
+ */
+public class PredicateEvaluator {
+
+    public interface AtomRouter {
+        /*
+        * 把第 node 个谓词节点（PRED_EQ/PRED_IN/PRED_RANGE）命中的数据节点或到 bitset 中，bitset 调用前已清零；
+        * 不是分片字段或者无法判断（比如参数 ?）时返回false，按全部节点处理
+        */
+        boolean route(SQLContext context, int node, long[] bitset);
+    }
+
+    private final int nodeCount;
+    private final int words;
+    private long[][] stack = new long[8][];
+
+    public PredicateEvaluator(int nodeCount) {
+        this.nodeCount = nodeCount;
+        this.words = (nodeCount+63)>>>6;
+        for (int i = 0; i < stack.length; i++)
+            stack[i] = new long[words];
+    }
+
+    public int words() { return words; }
+
+    /*
+    * 计算第 predIdx 个谓词命中的节点，结果写入 result，返回命中的节点个数
+    */
+    public int evaluate(SQLContext context, int predIdx, AtomRouter router, long[] result) {
+        if (!context.isPredicateComplete() || !evaluate0(context, predIdx, router))
+            fillAll(result);
+        else
+            System.arraycopy(stack[0], 0, result, 0, words);
+        return count(result);
+    }
+
+    /*
+    * 一个scope中所有 WHERE 和 INNER JOIN 的 ON 条件的交集；LEFT/RIGHT JOIN 的 ON 条件不过滤另一侧的行，HAVING 在分组之后，都不参与
+    */
+    public int evaluateScope(SQLContext context, int scope, AtomRouter router, long[] result) {
+        fillAll(result);
+        if (!context.isPredicateComplete())
+            return nodeCount;
+        for (int i = 0, n = context.getPredicateCount(); i < n; i++) {
+            byte kind = context.getPredicateKind(i);
+            if (context.getPredicateScope(i) != scope || kind != SQLContext.JOIN_WHERE && kind != SQLContext.JOIN_INNER)
+                continue;
+            if (evaluate0(context, i, router)) {
+                long[] bitset = stack[0];
+                for (int w = 0; w < words; w++)
+                    result[w] &= bitset[w];
+            }
+        }
+        return count(result);
+    }
+
+    //结果在 stack[0] 中，节点序列不完整时返回false
+    private boolean evaluate0(SQLContext context, int predIdx, AtomRouter router) {
+        int top = -1;
+        for (int i = context.getPredicateFirstNode(predIdx), end = context.getPredicateEndNode(predIdx); i < end; i++) {
+            if (context.getPredicateOf(i) != predIdx)
+                continue; //夹在中间的子查询谓词
+            byte op = context.getPredicateOp(i);
+            switch (op) {
+                case SQLContext.PRED_NOP:
+                    break;
+                case SQLContext.PRED_AND:
+                case SQLContext.PRED_OR: {
+                    if (top < 1)
+                        return false;
+                    long[] right = stack[top--];
+                    long[] left = stack[top];
+                    if (op == SQLContext.PRED_AND) {
+                        for (int w = 0; w < words; w++)
+                            left[w] &= right[w];
+                    } else {
+                        for (int w = 0; w < words; w++)
+                            left[w] |= right[w];
+                    }
+                    break;
+                }
+                case SQLContext.PRED_NOT:
+                    if (top < 0)
+                        return false;
+                    fillAll(stack[top]);
+                    break;
+                default: {
+                    if (++top == stack.length) {
+                        stack = Arrays.copyOf(stack, top<<1);
+                        for (int j = top; j < stack.length; j++)
+                            stack[j] = new long[words];
+                    }
+                    long[] bitset = stack[top];
+                    if (op == SQLContext.PRED_TRUE) {
+                        fillAll(bitset);
+                    } else {
+                        Arrays.fill(bitset, 0L);
+                        if (!router.route(context, i, bitset))
+                            fillAll(bitset);
+                    }
+                }
+            }
+        }
+        return top == 0;
+    }
+
+    private void fillAll(long[] bitset) {
+        Arrays.fill(bitset, 0, words, -1L);
+        if ((nodeCount & 63) != 0)
+            bitset[words-1] = -1L >>> (64-(nodeCount & 63));
+    }
+
+    private int count(long[] bitset) {
+        int count = 0;
+        for (int w = 0; w < words; w++)
+            count += Long.bitCount(bitset[w]);
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+package io.mycat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * 路由元数据的不可变快照：表名字典（RoutingTable + TableNameScanner）、每个表的分片规则和所在数据节点位图
+ * 发布后不再修改，解析、路由线程之间共享不需要加锁；修改时用 toBuilder() 复制一份，改完后由 MetadataRegistry 发布新快照
+ * epoch 为快照的版本号，从1开始，路由时记录到 SQLContext 中，缓存的解析/路由结果版本号不是最新的就需要重新路由
+ * 表序号按 addTable 的顺序，删除表后重新编号，所以表序号只在同一个快照内有效
+ */
+public final class RoutingMetadata {
+    private final long epoch;
+    private final int datanodeCount;
+    private final String[] tableNames;
+    private final ShardingRouter[] routers; //null 为全局表或者不分片的表
+    private final long[][] datanodes; //每个表所在的数据节点
+    private final RoutingTable tables;
+    private final TableNameScanner scanner;
+
+    private RoutingMetadata(long epoch, Builder builder) {
+        int count = builder.names.size();
+        this.epoch = epoch;
+        this.datanodeCount = builder.datanodeCount;
+        this.tableNames = builder.names.toArray(new String[count]);
+        this.routers = builder.routers.toArray(new ShardingRouter[count]);
+        this.datanodes = builder.datanodes.toArray(new long[count][]);
+        this.tables = new RoutingTable(count);
+        for (int i = 0; i < count; i++)
+            tables.put(tableNames[i], i);
+        this.scanner = new TableNameScanner(tableNames);
+    }
+
+    public static RoutingMetadata empty(int datanodeCount) {
+        return new Builder(datanodeCount).build(1);
+    }
+
+    public long getEpoch() { return epoch; }
+
+    public int getDatanodeCount() { return datanodeCount; }
+
+    public int getTableCount() { return tableNames.length; }
+
+    public String getTableName(int table) { return tableNames[table]; }
+
+    //解析结果中第 tblIdx 个表在快照中的序号，不在快照中返回 RoutingTable.NOT_FOUND
+    public int getTable(SQLContext context, int tblIdx) { return tables.get(context, tblIdx); }
+
+    public int getTable(byte[] buffer, int start, int end) { return tables.get(buffer, start, end); }
+
+    public ShardingRouter getRouter(int table) { return routers[table]; }
+
+    public boolean isSharded(int table) { return routers[table] != null; }
+
+    /*
+    * 把表所在的数据节点或到 bitset 中；快照内的数组是共享的，不直接返回
+    */
+    public void addDatanodes(int table, long[] bitset) {
+        long[] nodes = datanodes[table];
+        for (int i = 0; i < nodes.length; i++)
+            bitset[i] |= nodes[i];
+    }
+
+    //路由前的预过滤，sql 中没有出现任何一个配置的表名时可以直接发往默认节点
+    public TableNameScanner getScanner() { return scanner; }
+
+    public Builder toBuilder() {
+        Builder builder = new Builder(datanodeCount);
+        for (int i = 0; i < tableNames.length; i++) {
+            builder.index.put(tableNames[i].toLowerCase(Locale.ROOT), i);
+            builder.names.add(tableNames[i]);
+            builder.routers.add(routers[i]);
+            builder.datanodes.add(datanodes[i]);
+        }
+        return builder;
+    }
+
+    /*
+    * 写线程使用，不是线程安全的；位图在 addTable 时复制，快照之间共享不变的 ShardingRouter 和位图
+    */
+    public static final class Builder {
+        private final int datanodeCount;
+        private final ArrayList<String> names = new ArrayList<>();
+        private final ArrayList<ShardingRouter> routers = new ArrayList<>();
+        private final ArrayList<long[]> datanodes = new ArrayList<>();
+        private final HashMap<String, Integer> index = new HashMap<>(); //小写表名到序号
+
+        public Builder(int datanodeCount) {
+            this.datanodeCount = datanodeCount;
+        }
+
+        /*
+        * 添加或者替换一个表，router 为 null 时是全局表/不分片的表，nodes 为表所在的数据节点位图
+        */
+        public Builder addTable(String name, ShardingRouter router, long[] nodes) {
+            long[] copy = Arrays.copyOf(nodes, (datanodeCount+63)>>>6);
+            Integer idx = index.putIfAbsent(name.toLowerCase(Locale.ROOT), names.size());
+            if (idx != null) {
+                routers.set(idx, router);
+                datanodes.set(idx, copy);
+            } else {
+                names.add(name);
+                routers.add(router);
+                datanodes.add(copy);
+            }
+            return this;
+        }
+
+        public Builder removeTable(String name) {
+            Integer idx = index.remove(name.toLowerCase(Locale.ROOT));
+            if (idx != null) {
+                names.remove((int) idx);
+                routers.remove((int) idx);
+                datanodes.remove((int) idx);
+                index.replaceAll((k, v) -> v > idx ? v-1 : v);
+            }
+            return this;
+        }
+
+        public RoutingMetadata build(long epoch) {
+            return new RoutingMetadata(epoch, this);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.mycat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 表名（或库名）到路由规则序号的查找表，直接用解析器的 TokenHash 哈希值查找，不需要先创建表名String
+ * 开放寻址（线性探测）存放在基本类型数组中，负载不超过 1/2；TokenHash 会忽略非标识符字符，
+ * 所以哈希值相同后还要按字节比较名字（ASCII 忽略大小写，与 TokenHash 一致）
+ * 前面加了一个 Bloom filter，不在表中的名字（非分片表）大多在这里就能返回，不需要访问哈希表
+ * 用法：
+ *   RoutingTable tables = new RoutingTable(1024);
+ *   tables.put("tbl_A", ruleIdx);
+ *   int rule = tables.get(context, tblIdx); //-1 为不在表中
+ */
+public class RoutingTable {
+    public static final int NOT_FOUND = -1;
+    private static final int BLOOM_HASHES = 3;
+
+    private long[] hashes; //0 为空位，哈希值本身为0的按1存放
+    private int[] values;
+    private int[] nameOffsets; //名字在 names 中的位置，记录格式：[{pos, size}]
+    private byte[] names = new byte[1024];
+    private int namesSize;
+    private int mask;
+    private int size;
+    private long[] bloom;
+    private int bloomMask;
+
+    public RoutingTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8)*2-1)<<1; //不小于 2 * expectedSize 的2的幂
+        hashes = new long[capacity];
+        values = new int[capacity];
+        nameOffsets = new int[capacity<<1];
+        mask = capacity-1;
+        bloom = new long[capacity>>>3]; //每个名字至少 16 bit
+        bloomMask = (bloom.length<<6)-1;
+    }
+
+    /*
+    * 添加或者替换，value 必须大于等于0；配置加载时调用，不要求无分配
+    */
+    public void put(String name, int value) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        long hash = TokenHash.hash(bytes, 0, bytes.length);
+        int idx = find(hash, bytes, 0, bytes.length);
+        if (idx >= 0) {
+            values[idx] = value;
+            return;
+        }
+        if ((size+1)<<1 > hashes.length)
+            resize();
+        idx = slot(hash);
+        while (hashes[idx] != 0)
+            idx = (idx+1) & mask;
+        if (namesSize+bytes.length > names.length)
+            names = Arrays.copyOf(names, Math.max(names.length<<1, namesSize+bytes.length));
+        System.arraycopy(bytes, 0, names, namesSize, bytes.length);
+        hashes[idx] = hash == 0 ? 1 : hash;
+        values[idx] = value;
+        nameOffsets[idx<<1] = namesSize;
+        nameOffsets[(idx<<1)+1] = bytes.length;
+        namesSize += bytes.length;
+        size++;
+        addBloom(hash);
+    }
+
+    public int get(byte[] buffer, int start, int end) {
+        return get(TokenHash.hash(buffer, start, end), buffer, start, end);
+    }
+
+    //hash 为 [start, end) 的 TokenHash 哈希值
+    public int get(long hash, byte[] buffer, int start, int end) {
+        if (!mightContain(hash))
+            return NOT_FOUND;
+        int idx = find(hash, buffer, start, end);
+        return idx < 0 ? NOT_FOUND : values[idx];
+    }
+
+    //按表名查找
+    public int get(SQLContext context, int tblIdx) {
+        int start = context.getTablePos(tblIdx);
+        int end = start+context.getTableSize(tblIdx);
+        return get(context.getTableHash(tblIdx), context.getBuffer(), start, end);
+    }
+
+    //按库名查找，没有指定库名时返回 defaultValue（当前会话的默认库）
+    public int getSchema(SQLContext context, int tblIdx, int defaultValue) {
+        int start = context.getSchemaPos(tblIdx);
+        if (start < 0)
+            return defaultValue;
+        return get(context.getBuffer(), start, start+context.getSchemaSize(tblIdx));
+    }
+
+    public boolean mightContain(long hash) {
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h>>>32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1+i*h2) & bloomMask;
+            if ((bloom[bit>>>6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public int size() { return size; }
+
+    private int find(long hash, byte[] buffer, int start, int end) {
+        long stored = hash == 0 ? 1 : hash;
+        for (int idx = slot(hash); ; idx = (idx+1) & mask) {
+            long h = hashes[idx];
+            if (h == 0)
+                return -1;
+            if (h == stored && nameEquals(idx, buffer, start, end))
+                return idx;
+        }
+    }
+
+    private boolean nameEquals(int idx, byte[] buffer, int start, int end) {
+        int pos = nameOffsets[idx<<1];
+        if (nameOffsets[(idx<<1)+1] != end-start)
+            return false;
+        for (int i = start; i < end; i++, pos++) {
+            int a = buffer[i];
+            int b = names[pos];
+            if (a != b && ((a ^ b) != 0x20 || (a | 0x20) < 'a' || (a | 0x20) > 'z'))
+                return false;
+        }
+        return true;
+    }
+
+    private int slot(long hash) {
+        return (int) mix(hash) & mask;
+    }
+
+    private void addBloom(long hash) {
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h>>>32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1+i*h2) & bloomMask;
+            bloom[bit>>>6] |= 1L << bit;
+        }
+    }
+
+    //扩容时重新计算位置，Bloom filter 一起按新的大小重建
+    private void resize() {
+        long[] oldHashes = hashes;
+        int[] oldValues = values;
+        int[] oldOffsets = nameOffsets;
+        int capacity = oldHashes.length<<1;
+        hashes = new long[capacity];
+        values = new int[capacity];
+        nameOffsets = new int[capacity<<1];
+        mask = capacity-1;
+        bloom = new long[capacity>>>3];
+        bloomMask = (bloom.length<<6)-1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == 0)
+                continue;
+            int pos = oldOffsets[i<<1];
+            int len = oldOffsets[(i<<1)+1];
+            long hash = TokenHash.hash(names, pos, pos+len);
+            int idx = slot(hash);
+            while (hashes[idx] != 0)
+                idx = (idx+1) & mask;
+            hashes[idx] = oldHashes[i];
+            values[idx] = oldValues[i];
+            nameOffsets[idx<<1] = pos;
+            nameOffsets[(idx<<1)+1] = len;
+            addBloom(hash);
+        }
+    }
+
+    //TokenHash 是乘法哈希，低位分布不好，先混合一下
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -32,6 +32,51 @@ public class SQLContext {
     private int schemaResultArraySize = 64;//todo : 测试期先写死，后期考虑从设置参数中读取 by kaiz
     private byte annotationType;
     private short sqlCount;
+    private int sessionAffinity; //记录需要固定后端连接的原因，按位或
+    private int masterReasons; //记录读语句必须发往主库的原因，按位或
+    private long features; //语句特征位图，路由和合并层用一次掩码判断就能决定是否走快速路径
+    private long metadataEpoch; //路由时使用的元数据快照版本，EPOCH_NONE 为还没有路由
+    private byte extractLevel; //解析时的提取级别，SQLParser.EXTRACT_TYPE_ONLY ~ EXTRACT_FULL
+    private int[] tblExtResult; //记录格式：[{scope id, alias pos, alias size}]，与 tblResult 按表序号一一对应
+    private int[] scopeResult; //记录格式：[{parent scope id, start pos, end pos, alias pos, alias size, limit offset, limit count, flags}]
+    private long[] tblHashResult; //每个表在谓词中被引用时用的名字（有别名时为别名）的哈希值，按表序号对应
+    private long[] tblNameHashResult; //表名本身的哈希值，路由时按此查找
+    private int[] colResult; //记录格式：[{tbl index(-1为无法确定), column pos, column size, scope id}]
+    private long[] colHashResult;
+    private int colCount;
+    private int colResultArraySize = 256;//todo : 测试期先写死，最多64个字段引用
+    private int[] joinResult; //记录格式：[{left tbl index, left column index, right tbl index, right column index, join type}]
+    private int joinCount;
+    private int joinResultArraySize = 160;//todo : 测试期先写死，最多32条连接边
+    private int[] orderResult; //记录格式：[{scope id, expr pos, expr size, direction}]
+    private int orderCount;
+    private int orderResultArraySize = 64;//todo : 测试期先写死，最多16个排序项
+    private int[] groupResult; //记录格式：[{scope id, expr pos, expr size}]
+    private int groupCount;
+    private int groupResultArraySize = 48;//todo : 测试期先写死，最多16个分组项
+    private int[] aggResult; //记录格式：[{scope id, select item index(-1为不在select列表中), kind, expr pos, expr size}]
+    private int aggCount;
+    private int aggResultArraySize = 80;//todo : 测试期先写死，最多16个聚合函数
+    private int[] inListResult; //记录格式：[{column index, first value index, value count, list start pos, list end pos, conjunct}]，start 为 ( 之后，end 为 ) 所在位置
+    private int inListCount;
+    private int inListResultArraySize = 96;//todo : 测试期先写死，最多16个IN列表
+    private int[] inValueResult; //记录格式：[{value pos, value size, value type}]，字符串包括两侧引号，值的个数不定，不够时扩容
+    private long[] inValueLong; //整数值，按值序号对应
+    private int inValueCount;
+    private int[] rangeResult; //记录格式：[{column index, flags, low pos, low size, high pos, high size}]，字符串边界不含引号
+    private long[] rangeLongResult; //整数边界：[{low, high}]
+    private int rangeCount;
+    private int rangeResultArraySize = 96;//todo : 测试期先写死，最多16个范围条件
+    private int[] predResult; //记录格式：[{op, arg, predicate index, value type, value pos, value size}]，按逆波兰序排列，节点个数不定，不够时扩容
+    private long[] predLongResult; //PRED_EQ 的整数值，按节点序号对应
+    private int predNodeCount;
+    private int[] predClauseResult; //记录格式：[{scope id, kind, first node, end node}]，kind 为 JOIN_WHERE/JOIN_INNER/JOIN_LEFT/JOIN_RIGHT，HAVING 为0
+    private int predClauseCount;
+    private int predClauseResultArraySize = 64;//todo : 测试期先写死，最多16个谓词
+    private boolean predComplete; //scope、谓词个数超出上限或者括号不匹配时为false，路由时不能据此裁剪
+    private byte scopeCount;
+    private byte curScope;
+    private int scopeResultArraySize = 128;//todo : 测试期先写死，最多16层作用域
 
 
     //DDL
@@ -63,6 +108,12 @@ public class SQLContext {
     public static final byte ROLLBACK_SQL = 11;
     public static final byte SET_TRANSACTION_SQL = 12;
 
+    //SESSION
+    public static final byte SET_SQL = 30;
+    public static final byte BEGIN_SQL = 31;
+    public static final byte START_SQL = 32;
+    public static final byte PREPARE_SQL = 33;
+
     //ANNOTATION TYPE
     public static final byte ANNOTATION_BALANCE = 1;
     public static final byte ANNOTATION_SQL = 2;
@@ -71,13 +122,120 @@ public class SQLContext {
     public static final byte ANNOTATION_DATANODE = 5;
     public static final byte ANNOTATION_CATLET = 6;
 
+    //SESSION AFFINITY : 语句会产生会话状态，执行后后端连接不能再复用给其他前端会话
+    public static final int AFFINITY_USER_VARIABLE = 1;        // SET @var / SELECT @var
+    public static final int AFFINITY_SESSION_VARIABLE = 1 << 1; // SET [SESSION] xxx / SET NAMES
+    public static final int AFFINITY_TEMPORARY_TABLE = 1 << 2; // CREATE TEMPORARY TABLE
+    public static final int AFFINITY_GET_LOCK = 1 << 3;        // GET_LOCK()
+    public static final int AFFINITY_LAST_INSERT_ID = 1 << 4;  // LAST_INSERT_ID()
+    public static final int AFFINITY_FOUND_ROWS = 1 << 5;      // FOUND_ROWS()
+    public static final int AFFINITY_PREPARE = 1 << 6;         // PREPARE
+    public static final int AFFINITY_LOCK_TABLES = 1 << 7;     // LOCK TABLES
+    public static final int AFFINITY_TRANSACTION = 1 << 8;     // BEGIN / START TRANSACTION
+
+    //READ WRITE SPLIT : SELECT 带有以下内容时不能发往从库
+    public static final int MASTER_FOR_UPDATE = 1;             // SELECT ... FOR UPDATE
+    public static final int MASTER_FOR_SHARE = 1 << 1;         // SELECT ... FOR SHARE
+    public static final int MASTER_LOCK_IN_SHARE_MODE = 1 << 2; // SELECT ... LOCK IN SHARE MODE
+    public static final int MASTER_SELECT_INTO = 1 << 3;       // SELECT ... INTO @var/OUTFILE/DUMPFILE
+    public static final int MASTER_SIDE_EFFECT = 1 << 4;       // GET_LOCK()、RELEASE_LOCK() 等有副作用的函数
+
+    //FEATURES
+    public static final long FEATURE_JOIN = 1L;            // JOIN 或者 FROM a, b
+    public static final long FEATURE_SUBQUERY = 1L << 1;   // (SELECT
+    public static final long FEATURE_UNION = 1L << 2;
+    public static final long FEATURE_GROUP_BY = 1L << 3;
+    public static final long FEATURE_ORDER_BY = 1L << 4;
+    public static final long FEATURE_DISTINCT = 1L << 5;
+    public static final long FEATURE_AGGREGATE = 1L << 6;  // COUNT/SUM/MIN/MAX/AVG/GROUP_CONCAT
+    public static final long FEATURE_HAVING = 1L << 7;
+    public static final long FEATURE_WINDOW = 1L << 8;     // OVER() / WINDOW
+    public static final long FEATURE_LIMIT = 1L << 9;
+    //跨分片执行时需要在中间件合并结果集的特征
+    public static final long FEATURE_MERGE_MASK = FEATURE_UNION | FEATURE_GROUP_BY | FEATURE_ORDER_BY | FEATURE_DISTINCT |
+            FEATURE_AGGREGATE | FEATURE_HAVING | FEATURE_WINDOW | FEATURE_LIMIT;
+
+    //SCOPE : scope 0 是整条语句，每个 (SELECT ...) 开启一个新的scope
+    public static final int SCOPE_SIZE = 8;
+    public static final int SCOPE_DERIVED = 1;             // FROM/JOIN (SELECT ...) 派生表
+    public static final int LIMIT_NONE = -1;               // 没有 LIMIT，或者 LIMIT 95,-1 这种取全部的写法
+    public static final int LIMIT_PARAM = -2;              // LIMIT ?，需要在执行阶段取参数
+
+    //连接边类型
+    public static final byte JOIN_INNER = 1;    // [INNER|CROSS] JOIN、STRAIGHT_JOIN 的 ON/USING
+    public static final byte JOIN_LEFT = 2;     // LEFT [OUTER] JOIN
+    public static final byte JOIN_RIGHT = 3;    // RIGHT [OUTER] JOIN
+    public static final byte JOIN_WHERE = 4;    // FROM a, b WHERE a.x = b.y
+    public static final int JOIN_SIZE = 5;
+
+    //排序方向
+    public static final byte ORDER_ASC = 1;
+    public static final byte ORDER_DESC = 2;
+
+    //聚合函数类型，COUNT(DISTINCT x) 之类的再或上 AGG_DISTINCT，合并层不能简单累加
+    public static final byte AGG_COUNT = 1;
+    public static final byte AGG_SUM = 2;
+    public static final byte AGG_MIN = 3;
+    public static final byte AGG_MAX = 4;
+    public static final byte AGG_AVG = 5;
+    public static final byte AGG_GROUP_CONCAT = 6;
+    public static final byte AGG_DISTINCT = 0x10;
+
+    //IN 列表中值的类型
+    public static final byte IN_VALUE_LONG = 1;
+    public static final byte IN_VALUE_STRING = 2;
+    public static final byte IN_VALUE_PARAM = 3;   // ?
+
+    //范围条件的标志位
+    public static final int RANGE_LOW_INCLUSIVE = 1;
+    public static final int RANGE_HIGH_INCLUSIVE = 1 << 1;
+    public static final int RANGE_LOW_UNBOUNDED = 1 << 2;
+    public static final int RANGE_HIGH_UNBOUNDED = 1 << 3;
+    public static final int RANGE_STRING = 1 << 4;   //边界是字符串（比如日期），按字节比较
+    static final int RANGE_SIZE = 6;
+
+    //谓词树节点，按逆波兰序排列：原子条件入栈，AND/OR 取栈顶两个，NOT 取栈顶一个
+    //子查询的谓词节点可能夹在外层谓词的节点中间，按节点记录的谓词序号区分
+    public static final byte PRED_NOP = 0;      // 已撤销的节点，跳过
+    public static final byte PRED_AND = 1;
+    public static final byte PRED_OR = 2;       // XOR 也按 OR 处理
+    public static final byte PRED_NOT = 3;
+    public static final byte PRED_TRUE = 4;     // 无法识别的条件，可能命中任意节点
+    public static final byte PRED_EQ = 5;       // col = 常量，arg 为字段序号，常量用 getPredicateValueXXX 获取
+    public static final byte PRED_IN = 6;       // arg 为IN列表序号
+    public static final byte PRED_RANGE = 7;    // arg 为范围条件序号
+    static final int PRED_SIZE = 6;
+
+    public static final long EPOCH_NONE = 0;
+
 
     public SQLContext() {
         tblResult = new int[tblResultArraySize];
         schemaResult = new int[schemaResultArraySize];
+        tblExtResult = new int[tblResultArraySize];
+        scopeResult = new int[scopeResultArraySize];
+        tblHashResult = new long[tblResultArraySize/3];
+        tblNameHashResult = new long[tblResultArraySize/3];
+        colResult = new int[colResultArraySize];
+        colHashResult = new long[colResultArraySize>>2];
+        joinResult = new int[joinResultArraySize];
+        orderResult = new int[orderResultArraySize];
+        groupResult = new int[groupResultArraySize];
+        aggResult = new int[aggResultArraySize];
+        inListResult = new int[inListResultArraySize];
+        inValueResult = new int[768];
+        inValueLong = new long[256];
+        rangeResult = new int[rangeResultArraySize];
+        rangeLongResult = new long[rangeResultArraySize/3];
+        predResult = new int[64*PRED_SIZE];
+        predLongResult = new long[64];
+        predClauseResult = new int[predClauseResultArraySize];
     }
 
-    public void setCurBuffer(byte[] curBuffer) {
+    public void setCurBuffer(byte[] curBuffer) { setCurBuffer(curBuffer, curBuffer.length); }
+
+    //length 之后可以有哨兵字节，不属于sql
+    public void setCurBuffer(byte[] curBuffer, int length) {
         buffer = curBuffer;
         tblCount = 0;
         schemaCount = 0;
@@ -88,6 +246,29 @@ public class SQLContext {
         sqlHash = 0;
         sqlType = 0;
         annotationType = 0;
+        sessionAffinity = 0;
+        masterReasons = 0;
+        features = 0;
+        metadataEpoch = EPOCH_NONE;
+        Arrays.fill(tblExtResult, 0);
+        Arrays.fill(scopeResult, 0);
+        scopeResult[0] = -1;
+        scopeResult[2] = length;
+        scopeResult[5] = LIMIT_NONE;
+        scopeResult[6] = LIMIT_NONE;
+        scopeCount = 1;
+        curScope = 0;
+        colCount = 0;
+        joinCount = 0;
+        orderCount = 0;
+        groupCount = 0;
+        aggCount = 0;
+        inListCount = 0;
+        inValueCount = 0;
+        rangeCount = 0;
+        predNodeCount = 0;
+        predClauseCount = 0;
+        predComplete = true;
     }
 
     public void setTblNameStart(int pos) {
@@ -95,6 +276,7 @@ public class SQLContext {
         tblResultPos++; //by kaiz : 跳过第一个schema，因为有可能之前已经设置过了
         tblResult[tblResultPos++] = pos;
         tblResult[tblResultPos] = 1;
+        tblExtResult[3*(tblCount-1)] = curScope;
     }
 
     public boolean isTblNameEnd() {
@@ -102,7 +284,9 @@ public class SQLContext {
     }
 
     public void setTblNameSize(int size) {
+        int start = tblResult[tblResultPos-1];
         tblResult[tblResultPos++] = size;
+        tblHashResult[tblCount-1] = tblNameHashResult[tblCount-1] = TokenHash.hash(buffer, start, start+size);
     }
 
     public void pushSchemaName() {
@@ -139,6 +323,563 @@ public class SQLContext {
         //return builder.append((char[])buffer, offset, size).toString();
     }
 
+    //别名两侧的反引号不计入
+    public void setTblAlias(int start, int end) {
+        int offset = 3*(tblCount-1);
+        if (offset < 0)
+            return;
+        if (buffer[start] == '`') start++;
+        if (end > start && buffer[end-1] == '`') end--;
+        tblExtResult[offset+1] = start;
+        tblExtResult[offset+2] = end-start;
+        tblHashResult[tblCount-1] = TokenHash.hash(buffer, start, end);
+    }
+
+    public int getTableScope(int tblIdx) { return tblExtResult[3*tblIdx]; }
+
+    public String getTableAlias(int tblIdx) {
+        int size = tblExtResult[3*tblIdx+2];
+        return size == 0 ? null : new String(buffer, tblExtResult[3*tblIdx+1], size);
+    }
+
+    /*
+    * 按别名或表名查找表序号，先找当前scope，再逐层往外找（关联子查询）；派生表的别名不对应实际的表，返回-1
+    */
+    public int resolveTable(long hash) {
+        for (int scope = curScope; scope >= 0; scope = scopeResult[scope*SCOPE_SIZE]) {
+            for (int i = 0; i < tblCount; i++) {
+                if (tblExtResult[3*i] == scope && tblHashResult[i] == hash)
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    * 不带限定名的字段只有在当前scope只有一个数据来源时才能确定所属的表
+    */
+    public int resolveSingleTable() {
+        int tblIdx = -1;
+        for (int i = 0; i < tblCount; i++) {
+            if (tblExtResult[3*i] == curScope) {
+                if (tblIdx >= 0)
+                    return -1;
+                tblIdx = i;
+            }
+        }
+        for (int scope = curScope+1; scope < scopeCount; scope++) {
+            if (scopeResult[scope*SCOPE_SIZE] == curScope && (scopeResult[scope*SCOPE_SIZE+7] & SCOPE_DERIVED) != 0)
+                return -1;
+        }
+        return tblIdx;
+    }
+
+    public int addColumn(int tblIdx, int start, int end, long hash) { //返回字段序号，超出上限时返回-1
+        int offset = colCount<<2;
+        if (offset >= colResultArraySize)
+            return -1;
+        if (buffer[start] == '`') start++;
+        if (end > start && buffer[end-1] == '`') end--;
+        colResult[offset] = tblIdx;
+        colResult[offset+1] = start;
+        colResult[offset+2] = end-start;
+        colResult[offset+3] = curScope;
+        colHashResult[colCount] = hash;
+        return colCount++;
+    }
+
+    public int getColumnCount() { return colCount; }
+
+    public int getColumnTable(int colIdx) { return colResult[colIdx<<2]; }
+
+    public String getColumnName(int colIdx) { return new String(buffer, colResult[(colIdx<<2)+1], colResult[(colIdx<<2)+2]); }
+
+    public int getColumnScope(int colIdx) { return colResult[(colIdx<<2)+3]; }
+
+    public long getColumnHash(int colIdx) { return colHashResult[colIdx]; }
+
+    /*
+    * 两侧都是已确定表的字段、并且不是同一个表时才记为连接边，路由层据此判断是否同分片键连接（ER 分片）
+    */
+    public void addJoinEdge(int leftCol, int rightCol, byte joinType) {
+        if (leftCol < 0 || rightCol < 0)
+            return;
+        int leftTbl = colResult[leftCol<<2];
+        int rightTbl = colResult[rightCol<<2];
+        int offset = joinCount*JOIN_SIZE;
+        if (leftTbl < 0 || rightTbl < 0 || leftTbl == rightTbl || offset >= joinResultArraySize)
+            return;
+        joinResult[offset] = leftTbl;
+        joinResult[offset+1] = leftCol;
+        joinResult[offset+2] = rightTbl;
+        joinResult[offset+3] = rightCol;
+        joinResult[offset+4] = joinType;
+        joinCount++;
+    }
+
+    /*
+    * USING 的两侧：当前scope中 before 之前最近的一个表；它和 limitPos 之间隔着派生表时无法确定，返回-1
+    */
+    public int getUsingTable(int before, int limitPos) {
+        for (int i = before-1; i >= 0; i--) {
+            if (tblExtResult[3*i] == curScope) {
+                for (int scope = curScope+1; scope < scopeCount; scope++) {
+                    int start = scopeResult[scope*SCOPE_SIZE+1];
+                    if (scopeResult[scope*SCOPE_SIZE] == curScope && (scopeResult[scope*SCOPE_SIZE+7] & SCOPE_DERIVED) != 0 &&
+                            start > tblResult[3*i+1] && start < limitPos)
+                        return -1;
+                }
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getTablePos(int tblIdx) { return tblResult[3*tblIdx+1]; }
+
+    public int getTableSize(int tblIdx) { return tblResult[3*tblIdx+2]; }
+
+    //表名（不是别名）的哈希值，与 TokenHash 相同
+    public long getTableHash(int tblIdx) { return tblNameHashResult[tblIdx]; }
+
+    //没有指定库名时为-1
+    public int getSchemaPos(int tblIdx) {
+        int schemaIdx = tblResult[3*tblIdx];
+        return schemaIdx == 0 ? -1 : schemaResult[schemaIdx<<1];
+    }
+
+    public int getSchemaSize(int tblIdx) {
+        int schemaIdx = tblResult[3*tblIdx];
+        return schemaIdx == 0 ? 0 : schemaResult[(schemaIdx<<1)+1];
+    }
+
+    public void addOrderBy(int start, int end, byte direction) {
+        int offset = orderCount<<2;
+        if (offset >= orderResultArraySize)
+            return;
+        orderResult[offset] = curScope;
+        orderResult[offset+1] = start;
+        orderResult[offset+2] = end-start;
+        orderResult[offset+3] = direction;
+        orderCount++;
+    }
+
+    public void addGroupBy(int start, int end) {
+        int offset = groupCount*3;
+        if (offset >= groupResultArraySize)
+            return;
+        groupResult[offset] = curScope;
+        groupResult[offset+1] = start;
+        groupResult[offset+2] = end-start;
+        groupCount++;
+    }
+
+    public void addAggregate(byte kind, int selectItem, int start, int end) {
+        int offset = aggCount*5;
+        if (offset >= aggResultArraySize)
+            return;
+        aggResult[offset] = curScope;
+        aggResult[offset+1] = selectItem;
+        aggResult[offset+2] = kind;
+        aggResult[offset+3] = start;
+        aggResult[offset+4] = end-start;
+        aggCount++;
+    }
+
+    public int getOrderByCount() { return orderCount; }
+
+    public int getOrderByScope(int idx) { return orderResult[idx<<2]; }
+
+    public String getOrderByExpr(int idx) { return new String(buffer, orderResult[(idx<<2)+1], orderResult[(idx<<2)+2]); }
+
+    public byte getOrderByDirection(int idx) { return (byte) orderResult[(idx<<2)+3]; }
+
+    public int getGroupByCount() { return groupCount; }
+
+    public int getGroupByScope(int idx) { return groupResult[idx*3]; }
+
+    public String getGroupByExpr(int idx) { return new String(buffer, groupResult[idx*3+1], groupResult[idx*3+2]); }
+
+    public int getAggregateCount() { return aggCount; }
+
+    public int getAggregateScope(int idx) { return aggResult[idx*5]; }
+
+    public int getAggregateSelectItem(int idx) { return aggResult[idx*5+1]; }
+
+    public byte getAggregateKind(int idx) { return (byte) aggResult[idx*5+2]; }
+
+    public String getAggregateExpr(int idx) { return new String(buffer, aggResult[idx*5+3], aggResult[idx*5+4]); }
+
+    public void addInValue(int start, int end, byte type, long value) {
+        if (inValueCount == inValueLong.length) {
+            inValueLong = Arrays.copyOf(inValueLong, inValueCount<<1);
+            inValueResult = Arrays.copyOf(inValueResult, inValueCount*6);
+        }
+        int offset = inValueCount*3;
+        inValueResult[offset] = start;
+        inValueResult[offset+1] = end-start;
+        inValueResult[offset+2] = type;
+        inValueLong[inValueCount++] = value;
+    }
+
+    /*
+    * 列表中出现了非常量（字段、表达式、子查询）时丢弃已经记录的值
+    */
+    public void discardInValues(int firstValue) { inValueCount = firstValue; }
+
+    public int getInValueCount() { return inValueCount; }
+
+    public int addInList(int colIdx, int firstValue, int start, int end) { //返回列表序号，超出上限时返回-1
+        int offset = inListCount*6;
+        if (offset >= inListResultArraySize) {
+            inValueCount = firstValue;
+            return -1;
+        }
+        inListResult[offset] = colIdx;
+        inListResult[offset+1] = firstValue;
+        inListResult[offset+2] = inValueCount-firstValue;
+        inListResult[offset+3] = start;
+        inListResult[offset+4] = end;
+        inListResult[offset+5] = 0;
+        return inListCount++;
+    }
+
+    public int getInListCount() { return inListCount; }
+
+    public int getInListColumn(int listIdx) { return inListResult[listIdx*6]; }
+
+    public int getInListFirstValue(int listIdx) { return inListResult[listIdx*6+1]; }
+
+    public int getInListValueCount(int listIdx) { return inListResult[listIdx*6+2]; }
+
+    public int getInListStart(int listIdx) { return inListResult[listIdx*6+3]; }
+
+    public int getInListEnd(int listIdx) { return inListResult[listIdx*6+4]; }
+
+    /*
+    * 列表是最外层 WHERE（或 INNER JOIN 的 ON）的顶层 AND 条件，不在 NOT/OR 之下、也不是比较等表达式的一部分，
+    * 只有这样的列表才能按节点拆分，否则去掉值会改变其他节点上的结果
+    */
+    public boolean isInListConjunct(int listIdx) { return inListResult[listIdx*6+5] != 0; }
+
+    public int getInValuePos(int valueIdx) { return inValueResult[valueIdx*3]; }
+
+    public int getInValueSize(int valueIdx) { return inValueResult[valueIdx*3+1]; }
+
+    public byte getInValueType(int valueIdx) { return (byte) inValueResult[valueIdx*3+2]; }
+
+    public long getInValueLong(int valueIdx) { return inValueLong[valueIdx]; }
+
+    //不含两侧引号，转义字符原样保留
+    public String getInValueString(int valueIdx) {
+        return new String(buffer, inValueResult[valueIdx*3]+1, inValueResult[valueIdx*3+1]-2);
+    }
+
+    /*
+    * 记录 col > v、col BETWEEN a AND b 之类的范围条件，边界为 [pos, end) 和整数值，没有的一侧用 RANGE_XXX_UNBOUNDED 标记；
+    * mergeFrom >= 0 时表示 [mergeFrom, rangeCount) 中的条件与本条件是 AND 关系，同一字段的条件直接求交集
+    * 返回记录或者合并到的范围条件序号，超出上限时返回-1
+    */
+    public int addRange(int colIdx, int mergeFrom, int flags, int lowPos, int lowEnd, long low, int highPos, int highEnd, long high) {
+        if (mergeFrom >= 0) {
+            for (int i = mergeFrom; i < rangeCount; i++) {
+                int offset = i*RANGE_SIZE;
+                int other = rangeResult[offset];
+                if (colResult[other<<2] == colResult[colIdx<<2] && colHashResult[other] == colHashResult[colIdx] &&
+                        colResult[(other<<2)+3] == colResult[(colIdx<<2)+3] && ((rangeResult[offset+1] ^ flags) & RANGE_STRING) == 0) {
+                    if ((flags & RANGE_LOW_UNBOUNDED) == 0)
+                        intersectLow(i, flags, lowPos, lowEnd-lowPos, low);
+                    if ((flags & RANGE_HIGH_UNBOUNDED) == 0)
+                        intersectHigh(i, flags, highPos, highEnd-highPos, high);
+                    return i;
+                }
+            }
+        }
+        int offset = rangeCount*RANGE_SIZE;
+        if (offset >= rangeResultArraySize)
+            return -1;
+        rangeResult[offset] = colIdx;
+        rangeResult[offset+1] = flags;
+        rangeResult[offset+2] = lowPos;
+        rangeResult[offset+3] = lowEnd-lowPos;
+        rangeResult[offset+4] = highPos;
+        rangeResult[offset+5] = highEnd-highPos;
+        rangeLongResult[rangeCount<<1] = low;
+        rangeLongResult[(rangeCount<<1)+1] = high;
+        return rangeCount++;
+    }
+
+    //下界取较大的一个，相等时 exclusive 优先
+    private void intersectLow(int idx, int flags, int pos, int size, long value) {
+        int offset = idx*RANGE_SIZE;
+        int oldFlags = rangeResult[offset+1];
+        int cmp = (oldFlags & RANGE_LOW_UNBOUNDED) != 0 ? 1 : compareBound(flags, pos, size, value, rangeResult[offset+2], rangeResult[offset+3], rangeLongResult[idx<<1]);
+        if (cmp > 0 || cmp == 0 && (flags & RANGE_LOW_INCLUSIVE) == 0) {
+            rangeResult[offset+1] = oldFlags & ~(RANGE_LOW_UNBOUNDED | RANGE_LOW_INCLUSIVE) | flags & RANGE_LOW_INCLUSIVE;
+            rangeResult[offset+2] = pos;
+            rangeResult[offset+3] = size;
+            rangeLongResult[idx<<1] = value;
+        }
+    }
+
+    //上界取较小的一个，相等时 exclusive 优先
+    private void intersectHigh(int idx, int flags, int pos, int size, long value) {
+        int offset = idx*RANGE_SIZE;
+        int oldFlags = rangeResult[offset+1];
+        int cmp = (oldFlags & RANGE_HIGH_UNBOUNDED) != 0 ? -1 : compareBound(flags, pos, size, value, rangeResult[offset+4], rangeResult[offset+5], rangeLongResult[(idx<<1)+1]);
+        if (cmp < 0 || cmp == 0 && (flags & RANGE_HIGH_INCLUSIVE) == 0) {
+            rangeResult[offset+1] = oldFlags & ~(RANGE_HIGH_UNBOUNDED | RANGE_HIGH_INCLUSIVE) | flags & RANGE_HIGH_INCLUSIVE;
+            rangeResult[offset+4] = pos;
+            rangeResult[offset+5] = size;
+            rangeLongResult[(idx<<1)+1] = value;
+        }
+    }
+
+    private int compareBound(int flags, int pos, int size, long value, int otherPos, int otherSize, long other) {
+        if ((flags & RANGE_STRING) == 0)
+            return Long.compare(value, other);
+        for (int i = 0, n = Math.min(size, otherSize); i < n; i++) {
+            int d = (buffer[pos+i] & 0xFF)-(buffer[otherPos+i] & 0xFF);
+            if (d != 0)
+                return d;
+        }
+        return size-otherSize;
+    }
+
+    public int getRangeCount() { return rangeCount; }
+
+    public int getRangeColumn(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE]; }
+
+    public int getRangeFlags(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE+1]; }
+
+    public long getRangeLow(int rangeIdx) { return rangeLongResult[rangeIdx<<1]; }
+
+    public long getRangeHigh(int rangeIdx) { return rangeLongResult[(rangeIdx<<1)+1]; }
+
+    public int getRangeLowPos(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE+2]; }
+
+    public int getRangeLowSize(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE+3]; }
+
+    public int getRangeHighPos(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE+4]; }
+
+    public int getRangeHighSize(int rangeIdx) { return rangeResult[rangeIdx*RANGE_SIZE+5]; }
+
+    public String getRangeLowString(int rangeIdx) { return new String(buffer, getRangeLowPos(rangeIdx), getRangeLowSize(rangeIdx)); }
+
+    public String getRangeHighString(int rangeIdx) { return new String(buffer, getRangeHighPos(rangeIdx), getRangeHighSize(rangeIdx)); }
+
+    /*
+    * 开始记录当前scope中的一个谓词（WHERE/ON/HAVING），返回谓词序号，超出上限时返回-1
+    */
+    public int startPredicate(byte kind) {
+        int offset = predClauseCount<<2;
+        if (offset >= predClauseResultArraySize) {
+            predComplete = false;
+            return -1;
+        }
+        predClauseResult[offset] = curScope;
+        predClauseResult[offset+1] = kind;
+        predClauseResult[offset+2] = predNodeCount;
+        predClauseResult[offset+3] = predNodeCount;
+        return predClauseCount++;
+    }
+
+    public void endPredicate(int predIdx) {
+        if (predIdx < 0)
+            return;
+        predClauseResult[(predIdx<<2)+3] = predNodeCount;
+        byte kind = (byte) predClauseResult[(predIdx<<2)+1];
+        if (predComplete && predClauseResult[predIdx<<2] == 0 && (kind == JOIN_WHERE || kind == JOIN_INNER))
+            markInListConjuncts(predIdx);
+    }
+
+    /*
+    * 从根节点倒序遍历逆波兰序的谓词树，只经过 AND 到达的 PRED_IN 是顶层 AND 条件；
+    * 经过 OR/NOT 之后的子树都不是，所以待处理的子树只需要记两个计数：栈底连续的“顶层”和栈顶的“非顶层”
+    */
+    private void markInListConjuncts(int predIdx) {
+        int conjuncts = 1;
+        int others = 0;
+        for (int i = predNodeCount-1; i >= predClauseResult[(predIdx<<2)+2] && conjuncts+others > 0; i--) {
+            int offset = i*PRED_SIZE;
+            if (predResult[offset+2] != predIdx || predResult[offset] == PRED_NOP)
+                continue;
+            boolean conjunct = others == 0;
+            if (conjunct)
+                conjuncts--;
+            else
+                others--;
+            switch (predResult[offset]) {
+                case PRED_AND:
+                    if (conjunct)
+                        conjuncts += 2;
+                    else
+                        others += 2;
+                    break;
+                case PRED_OR:
+                    others += 2;
+                    break;
+                case PRED_NOT:
+                    others++;
+                    break;
+                case PRED_IN:
+                    if (conjunct && predResult[offset+1] >= 0)
+                        inListResult[predResult[offset+1]*6+5] = 1;
+            }
+        }
+    }
+
+    public int addPredicateNode(int predIdx, byte op, int arg) { //返回节点序号
+        if (predIdx < 0)
+            return -1;
+        if (predNodeCount == predLongResult.length) {
+            predLongResult = Arrays.copyOf(predLongResult, predNodeCount<<1);
+            predResult = Arrays.copyOf(predResult, (predNodeCount<<1)*PRED_SIZE);
+        }
+        int offset = predNodeCount*PRED_SIZE;
+        predResult[offset] = op;
+        predResult[offset+1] = arg;
+        predResult[offset+2] = predIdx;
+        predResult[offset+3] = 0;
+        predLongResult[predNodeCount] = 0;
+        return predNodeCount++;
+    }
+
+    //PRED_EQ 的常量，字符串包括两侧引号
+    public void setPredicateValue(int node, byte type, int start, int end, long value) {
+        int offset = node*PRED_SIZE;
+        predResult[offset+3] = type;
+        predResult[offset+4] = start;
+        predResult[offset+5] = end-start;
+        predLongResult[node] = value;
+    }
+
+    /*
+    * 已经记录的条件之后又出现了其他内容（比如 a = 1 + b、(a = 1) IS NULL），
+    * 把 fromNode 开始属于该谓词的节点替换为一个 PRED_TRUE
+    */
+    public void retractPredicate(int predIdx, int fromNode) {
+        boolean first = true;
+        for (int i = fromNode; i < predNodeCount; i++) {
+            int offset = i*PRED_SIZE;
+            if (predResult[offset+2] == predIdx) {
+                predResult[offset] = first ? PRED_TRUE : PRED_NOP;
+                predResult[offset+3] = 0;
+                first = false;
+            }
+        }
+    }
+
+    public void setPredicateIncomplete() { predComplete = false; }
+
+    public boolean isPredicateComplete() { return predComplete; }
+
+    public int getPredicateCount() { return predClauseCount; }
+
+    public int getPredicateScope(int predIdx) { return predClauseResult[predIdx<<2]; }
+
+    public byte getPredicateKind(int predIdx) { return (byte) predClauseResult[(predIdx<<2)+1]; }
+
+    public int getPredicateFirstNode(int predIdx) { return predClauseResult[(predIdx<<2)+2]; }
+
+    public int getPredicateEndNode(int predIdx) { return predClauseResult[(predIdx<<2)+3]; }
+
+    public int getPredicateNodeCount() { return predNodeCount; }
+
+    public byte getPredicateOp(int node) { return (byte) predResult[node*PRED_SIZE]; }
+
+    public int getPredicateArg(int node) { return predResult[node*PRED_SIZE+1]; }
+
+    public int getPredicateOf(int node) { return predResult[node*PRED_SIZE+2]; }
+
+    public byte getPredicateValueType(int node) { return (byte) predResult[node*PRED_SIZE+3]; }
+
+    public long getPredicateValueLong(int node) { return predLongResult[node]; }
+
+    public int getPredicateValuePos(int node) { return predResult[node*PRED_SIZE+4]; }
+
+    public int getPredicateValueSize(int node) { return predResult[node*PRED_SIZE+5]; }
+
+    //不含两侧引号，转义字符原样保留
+    public String getPredicateValueString(int node) {
+        return new String(buffer, predResult[node*PRED_SIZE+4]+1, predResult[node*PRED_SIZE+5]-2);
+    }
+
+    public int getJoinCount() { return joinCount; }
+
+    public int getJoinLeftTable(int joinIdx) { return joinResult[joinIdx*JOIN_SIZE]; }
+
+    public int getJoinLeftColumn(int joinIdx) { return joinResult[joinIdx*JOIN_SIZE+1]; }
+
+    public int getJoinRightTable(int joinIdx) { return joinResult[joinIdx*JOIN_SIZE+2]; }
+
+    public int getJoinRightColumn(int joinIdx) { return joinResult[joinIdx*JOIN_SIZE+3]; }
+
+    public byte getJoinType(int joinIdx) { return (byte) joinResult[joinIdx*JOIN_SIZE+4]; }
+
+    /*
+    * 进入子查询，start为 ( 的位置，返回新的scope id；超过上限时返回-1，子查询内容仍然归属当前scope
+    */
+    public int openScope(int start, int flags) {
+        if (scopeCount*SCOPE_SIZE >= scopeResultArraySize) {
+            predComplete = false; //子查询的谓词会和当前scope的混在一起
+            return -1;
+        }
+        int offset = scopeCount*SCOPE_SIZE;
+        scopeResult[offset] = curScope;
+        scopeResult[offset+1] = start;
+        scopeResult[offset+5] = LIMIT_NONE;
+        scopeResult[offset+6] = LIMIT_NONE;
+        scopeResult[offset+7] = flags;
+        curScope = scopeCount++;
+        return curScope;
+    }
+
+    //end为 ) 之后的位置
+    public void closeScope(int end) {
+        if (curScope == 0)
+            return;
+        int offset = curScope*SCOPE_SIZE;
+        scopeResult[offset+2] = end;
+        curScope = (byte)scopeResult[offset];
+    }
+
+    public void setScopeAlias(int scope, int start, int end) {
+        int offset = scope*SCOPE_SIZE;
+        if (buffer[start] == '`') start++;
+        if (end > start && buffer[end-1] == '`') end--;
+        scopeResult[offset+3] = start;
+        scopeResult[offset+4] = end-start;
+    }
+
+    public void setLimit(int offset, int count) {
+        scopeResult[curScope*SCOPE_SIZE+5] = offset;
+        scopeResult[curScope*SCOPE_SIZE+6] = count;
+    }
+
+    public int getCurScope() { return curScope; }
+
+    public int getScopeCount() { return scopeCount; }
+
+    public int getScopeParent(int scope) { return scopeResult[scope*SCOPE_SIZE]; }
+
+    public int getScopeStart(int scope) { return scopeResult[scope*SCOPE_SIZE+1]; }
+
+    public int getScopeEnd(int scope) { return scopeResult[scope*SCOPE_SIZE+2]; }
+
+    public boolean isDerivedScope(int scope) { return (scopeResult[scope*SCOPE_SIZE+7] & SCOPE_DERIVED) != 0; }
+
+    public String getScopeAlias(int scope) {
+        int size = scopeResult[scope*SCOPE_SIZE+4];
+        return size == 0 ? null : new String(buffer, scopeResult[scope*SCOPE_SIZE+3], size);
+    }
+
+    public int getLimitOffset(int scope) { return scopeResult[scope*SCOPE_SIZE+5]; }
+
+    public int getLimitCount(int scope) { return scopeResult[scope*SCOPE_SIZE+6]; }
+
+    public byte[] getBuffer() { return buffer; } //各种 pos/size 都是相对这个buffer的
+
     public void setSQLHash(int sqlHash) { this.sqlHash = sqlHash; }
 
     public int getSqlHash() { return this.sqlHash; }
@@ -150,6 +891,38 @@ public class SQLContext {
 
     public byte getSQLType() { return this.sqlType; }
 
+    public void setSessionAffinity(int reason) { this.sessionAffinity |= reason; }
+
+    public int getSessionAffinity() { return this.sessionAffinity; }
+
+    public boolean hasSessionAffinity() { return this.sessionAffinity != 0; } //为true时当前会话需要固定后端连接，不能参与多路复用
+
+    public void setMasterReason(int reason) { this.masterReasons |= reason; }
+
+    public int getMasterReasons() { return this.masterReasons; }
+
+    public void setFeature(long feature) { this.features |= feature; }
+
+    public long getFeatures() { return this.features; }
+
+    public boolean hasFeature(long mask) { return (this.features & mask) != 0; }
+
+    public void setMetadataEpoch(long epoch) { this.metadataEpoch = epoch; }
+
+    public long getMetadataEpoch() { return this.metadataEpoch; } //与 MetadataRegistry 当前的 epoch 不同时缓存的路由结果已过期
+
+    public void setExtractLevel(byte level) { this.extractLevel = level; }
+
+    public byte getExtractLevel() { return this.extractLevel; } //低于 EXTRACT_FULL 时没有提取的内容（谓词、GROUP BY 等）计数为0，不代表sql中没有
+
+    /*
+    * 为true时可以发往只读从库；依赖会话状态的读（@var、LAST_INSERT_ID()、FOUND_ROWS()等）也只能在主库连接上执行
+    * 低于 EXTRACT_FULL 的级别会提前结束扫描或者跳过子句，可能漏掉 FOR UPDATE、INTO、锁函数等，按发往主库处理
+    */
+    public boolean isReadOnly() {
+        return (sqlType == SELECT_SQL || sqlType == SHOW_SQL) && masterReasons == 0 && sessionAffinity == 0 && extractLevel == SQLParser.EXTRACT_FULL;
+    }
+
     public boolean hasAnnotation() { //by kaiz : 是否包含注解，此处还需要完善
         return false;
     }
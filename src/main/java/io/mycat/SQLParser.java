@@ -1,6 +1,7 @@
 package io.mycat;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Created by Kaiz on 2017/1/22.
@@ -18,6 +19,69 @@ public class SQLParser {
     private final byte TBL_COMMA_FINDER = 4;
     private final byte INSERT_OPTIONS_PARSER = 5;
     private final byte TBL_OPTION_PARSER = 6;
+    private final byte PREDICATE_PARSER = 7;
+
+    //提取级别：调用方只需要一部分结果时，跳过不需要的子句，得到所需内容后立即结束扫描；级别依次包含前一级的内容
+    //sessionAffinity、masterReasons 只有 EXTRACT_FULL 保证完整，其他级别下只记录结束扫描之前遇到的，所以 SQLContext.isReadOnly() 在其他级别下总是返回 false；
+    //一次传入多条语句时只保证第一条
+    public static final byte EXTRACT_TYPE_ONLY = 1;  //只要语句类型，识别出类型后结束；读写分离需要 isReadOnly() 时用 EXTRACT_FULL
+    public static final byte EXTRACT_TABLES = 2;     //表名、库名、别名和子查询scope；INSERT/REPLACE 到 VALUES 为止（VALUES 中的子查询不再提取）
+    public static final byte EXTRACT_LIMIT = 3;      //再加上 LIMIT
+    public static final byte EXTRACT_CONDITIONS = 4; //再加上 WHERE/ON/HAVING 谓词及其中的字段、连接条件、范围条件
+    public static final byte EXTRACT_FULL = 5;       //再加上 GROUP BY/ORDER BY 列表和聚合函数
+
+    //关键字中连续的忽略大小写比较，交给 reader.icNextIs 一次比较
+    private static final long IC_PRIORITY = SQLReader.keyword("PRIORITY");
+    private static final long IC_ELAYED = SQLReader.keyword("ELAYED");
+    private static final long IC_GLOBAL = SQLReader.keyword("GLOBAL");
+    private static final long IC_FFSET = SQLReader.keyword("FFSET");
+    private static final long IC_LOBAL = SQLReader.keyword("LOBAL");
+    private static final long IC_PDATE = SQLReader.keyword("PDATE");
+    private static final long IC_XISTS = SQLReader.keyword("XISTS");
+    private static final long IC_HARE = SQLReader.keyword("HARE");
+    private static final long IC_NORE = SQLReader.keyword("NORE");
+    private static final long IC_IGH = SQLReader.keyword("IGH");
+    private static final long IC_OT = SQLReader.keyword("OT");
+    private static final long IC_OW = SQLReader.keyword("OW");
+    private static final long IC_TO = SQLReader.keyword("TO");
+
+    private final byte CLAUSE_PREDICATE = 1;
+    private final byte CLAUSE_SELECT = 2;
+    private final byte CLAUSE_SKIPPED = 3;  //提取级别不需要、交给 BASIC_PARSER 跳过的 WHERE/HAVING/GROUP BY/ORDER BY，其中的逗号不是表名分隔
+    private final byte CLAUSE_GROUP_BY = 4;
+    private final byte CLAUSE_ORDER_BY = 5;
+
+    //谓词中 a.x = b.y 形式等值条件的识别状态
+    private final byte EDGE_NONE = 0;  //处于 AND/OR 或者谓词开头
+    private final byte EDGE_LEFT = 1;  //a.x
+    private final byte EDGE_EQ = 2;    //a.x =
+    private final byte EDGE_RIGHT = 3; //a.x = b.y
+    private final byte EDGE_DIRTY = 4; //表达式中有其他成分，直到下一个 AND/OR 都不是连接条件
+
+    //谓词树中当前 AND/OR 分支的状态
+    private final byte BRANCH_EMPTY = 0;   //分支开头，还没有输出节点
+    private final byte BRANCH_OPERAND = 1; //已经输出了一个原子条件或者一组括号
+    private final byte BRANCH_DIRTY = 2;   //已经输出为 PRED_TRUE
+    private final byte OP_GROUP = 0;       //运算符栈中的 (
+    private final int PRED_STACK_SIZE = 16;
+
+    private static final long[] tableFollowKeywords = {TokenHash.WHERE, TokenHash.ON, TokenHash.USING, TokenHash.JOIN, TokenHash.LEFT, TokenHash.RIGHT,
+            TokenHash.INNER, TokenHash.CROSS, TokenHash.NATURAL, TokenHash.STRAIGHT_JOIN, TokenHash.OUTER, TokenHash.GROUP, TokenHash.ORDER,
+            TokenHash.LIMIT, TokenHash.HAVING, TokenHash.SET, TokenHash.VALUES, TokenHash.VALUE, TokenHash.UNION, TokenHash.FOR, TokenHash.LOCK,
+            TokenHash.WINDOW, TokenHash.USE, TokenHash.FORCE, TokenHash.IGNORE, TokenHash.PARTITION, TokenHash.SELECT, TokenHash.INTO, TokenHash.PROCEDURE};
+    private static final long[] predicateKeywords = {TokenHash.AND, TokenHash.OR, TokenHash.XOR, TokenHash.NOT, TokenHash.IN, TokenHash.IS, TokenHash.NULL,
+            TokenHash.LIKE, TokenHash.BETWEEN, TokenHash.EXISTS, TokenHash.TRUE, TokenHash.FALSE, TokenHash.UNKNOWN, TokenHash.CASE, TokenHash.WHEN,
+            TokenHash.THEN, TokenHash.ELSE, TokenHash.END, TokenHash.INTERVAL, TokenHash.BINARY, TokenHash.COLLATE, TokenHash.ESCAPE, TokenHash.DIV,
+            TokenHash.MOD, TokenHash.REGEXP, TokenHash.RLIKE, TokenHash.SOUNDS, TokenHash.ALL, TokenHash.ANY, TokenHash.SOME, TokenHash.DISTINCT,
+            TokenHash.AS, TokenHash.SIGNED, TokenHash.UNSIGNED, TokenHash.CHAR};
+    private static final long[] predicateEndKeywords = {TokenHash.GROUP, TokenHash.ORDER, TokenHash.LIMIT, TokenHash.HAVING, TokenHash.WINDOW,
+            TokenHash.UNION, TokenHash.FOR, TokenHash.LOCK, TokenHash.INTO, TokenHash.JOIN, TokenHash.INNER, TokenHash.LEFT, TokenHash.RIGHT,
+            TokenHash.CROSS, TokenHash.NATURAL, TokenHash.STRAIGHT_JOIN, TokenHash.WHERE, TokenHash.ON, TokenHash.PROCEDURE};
+    static {
+        Arrays.sort(tableFollowKeywords);
+        Arrays.sort(predicateKeywords);
+        Arrays.sort(predicateEndKeywords);
+    }
 
     private final byte QUEUE_SIZE = 16;
     private byte[] status_queue = new byte[QUEUE_SIZE]; //by kaiz : 为扩展复杂的解析预留空间，考虑到表名之后的修饰token可能无法预期，将可能需要处理的步骤状态值压入队列中，再从队列中逐一处理
@@ -27,284 +91,94 @@ public class SQLParser {
     private int resultSize = 1;
     //private byte[] sql;
     private SQLContext context;
+    private KeywordProfile profile; //为 null 时不统计
+    private boolean profiling; //当前语句是否被采样
+    private byte level; //当前语句的提取级别
     private int tokenCount = 0;
     private int tblTokenPos = 0; //by kaiz : 用于处理 tbl_A a,tbl_B b 的情况
+    private int parenTokenPos = -1; //最近一个 ( 之前的 tokenCount
+    private int parenPos; //最近一个 ( 的位置
+    private int parenDepth = 0;
+    private int[] scopeParenDepth = new int[16]; //每个scope开始时的括号深度，遇到同一深度的 ) 时关闭scope
+    private boolean pendingDerived; //表名位置上出现了 (，如果之后是 SELECT 则为派生表
+    private boolean derivedParen;
+    private int aliasScope = -1; //派生表关闭后，接下来的别名属于该scope
+    private byte[] scopeClause = new byte[16]; //每个scope当前所在的子句，子查询结束后据此回到谓词解析
+    private int[] scopePredicateDepth = new int[16]; //进入谓词时的括号深度，遇到同一深度的 ) 时谓词结束
+    private byte joinType; //LEFT/RIGHT 之后 JOIN 的类型
+    private byte onJoinType; //最近一个 JOIN 的类型，ON/USING 中的连接边使用
+    private byte clauseJoinType; //即将进入的谓词中等值条件对应的连接类型，0 为不记录（HAVING）
+    private byte[] scopeJoinType = new byte[16];
+    private int[] scopeSelectItem = new int[16]; //select 列表中当前是第几项，聚合函数据此对应到结果列
+    private int[] scopeRangeStart = new int[16]; //当前谓词中第一个范围条件的序号，出现 OR 之后为-1，不再合并同一字段的范围
+    private byte literalType; //literal() 解析出的常量类型和整数值
+    private long literalLong;
+    private byte edgeState;
+    private int edgeLeft;
+    private int edgeRight;
+    private int[] scopePredicate = new int[16]; //当前谓词在 SQLContext 中的序号
+    private byte[] predOps = new byte[16*PRED_STACK_SIZE]; //每个scope的运算符栈，AND/OR 时按优先级弹出到逆波兰序列中
+    private int[] predOpNode = new int[16*PRED_STACK_SIZE]; //( 入栈时的节点序号，括号之后又出现其他内容时从这里开始撤销
+    private int[] predOpTop = new int[16];
+    private byte[] predBranch = new byte[16];
+    private int[] predOperand = new int[16]; //当前分支第一个节点的序号
+    private int[] predNest = new int[16]; //函数调用、IN 列表、CASE ... END 的嵌套层数，其中的 AND/OR 不分隔谓词
+    private boolean[] predBetween = new boolean[16]; //BETWEEN 之后的 AND 属于 BETWEEN
+    private int atomArg; //rangePredicate()/inList() 记录的条件序号
     SQLReader reader = new SQLReader();
 
     //static byte[] status_queue = new byte[QUEUE_SIZE];
     void parse(final byte[] bytes, SQLContext sqlContext) {
+        parse(bytes, sqlContext, EXTRACT_FULL);
+    }
+
+    /*
+    * level 为 EXTRACT_TYPE_ONLY ~ EXTRACT_FULL，只提取到该级别的内容
+    */
+    void parse(final byte[] bytes, SQLContext sqlContext, byte level) {
+        reader.init(bytes);
+        parseBuffer(bytes, bytes.length, sqlContext, level);
+    }
+
+    /*
+    * 哨兵模式：bytes 中 sql 占 [0, length)，后面至少要有 SQLReader.SENTINEL_PADDING 个0字节（比如从网络读包时预留），
+    * 结尾附近的读取不需要按数组长度回退到逐字节读取；两种入口都不复制 sql
+    */
+    void parse(final byte[] bytes, int length, SQLContext sqlContext) {
+        parse(bytes, length, sqlContext, EXTRACT_FULL);
+    }
+
+    void parse(final byte[] bytes, int length, SQLContext sqlContext, byte level) {
+        reader.init(bytes, length);
+        parseBuffer(bytes, length, sqlContext, level);
+    }
+
+    private void parseBuffer(final byte[] bytes, int length, SQLContext sqlContext, byte level) {
+        if (level < EXTRACT_TYPE_ONLY || level > EXTRACT_FULL)
+            throw new IllegalArgumentException("level : " + level);
         context = sqlContext;
+        this.level = level;
         resultSize = 1;
         queue_pos = 0;
         tokenCount = 0;
+        tblTokenPos = 0;
+        parenTokenPos = -1;
+        parenDepth = 0;
+        pendingDerived = false;
+        derivedParen = false;
+        aliasScope = -1;
+        scopeClause[0] = 0;
+        joinType = SQLContext.JOIN_INNER;
+        onJoinType = SQLContext.JOIN_INNER;
         status_queue[queue_pos] = BASIC_PARSER;
-        reader.init(bytes);
-        context.setCurBuffer(bytes);
+        context.setCurBuffer(bytes, length);
+        context.setExtractLevel(level);
+        profiling = profile != null && profile.sample();
 
         while (reader.hasNext()) {  //by kaiz : 考虑到将来可能要用unsafe直接访问，所以越界判断都提前了
             switch (status_queue[queue_pos]) {
                 case BASIC_PARSER:
-                    //by kaiz : 清空状态数组，两种情况需要进行效率对比（毕竟只有16字节）
-                    for (queue_pos = 1; status_queue[queue_pos] != BASIC_PARSER && queue_pos < QUEUE_SIZE; status_queue[queue_pos++] = BASIC_PARSER)
-                        ;
-                    queue_pos = 0;
-                    basic_loop:
-                    while (reader.hasNext()) {
-                        switch (reader.cur()) {
-                            case 'F'://FROM
-                            case 'f':
-                                tokenCount++;//by kaiz : 所有的token遍历时，都记得要加 tokenCount，在后面token距离计算时会用到
-                                if (reader.isFromToken()) {
-                                    //by kaiz : 将接下来需要处理的状态按顺序加入队列
-                                    status_queue[0] = TBL_NAME_PARSER;
-                                    status_queue[1] = TBL_ALIAS_FINDER;
-                                    status_queue[2] = TBL_ALIAS_PARSER;
-                                    status_queue[3] = TBL_COMMA_FINDER;
-                                    break basic_loop;//by kaiz : 设置好状态列表后，可以跳出当前处理，进入接下来的状态处理
-                                } else {
-                                    findNextToken(false); //by kaiz : 如果不是需要处理的token，需要在此消耗掉，避免诸如 from_delete 之类的token被误判
-                                }
-                                break;
-                            case 'J'://JOIN
-                            case 'j':
-                                tokenCount++;
-                                if (reader.isJoinToken()) {
-                                    status_queue[0] = TBL_NAME_PARSER;//by kaiz : 辅助语句功能型的token不需要设置SQL type
-                                    break basic_loop;
-                                } else {
-                                    findNextToken(false);
-                                }
-                                break;
-                            case 'U'://UPDATE //USE
-                            case 'u':
-                                tokenCount++;
-                                switch (reader.icNextChar()) {
-                                    case 'P':
-                                    case 'p':
-                                        if (reader.icNextCharIs('D') && reader.icNextCharIs('A') && reader.icNextCharIs('T') && reader.icNextCharIs('E') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.UPDATE_SQL);//by kaiz : 主导语句功能的token记得设置SQL Type
-                                            status_queue[0] = TBL_NAME_PARSER;
-                                            break basic_loop;
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    case 'S':
-                                    case 's':
-                                        if (reader.icNextCharIs('E') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.USE_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    default:
-                                        findNextToken(false);
-                                        break;
-                                }
-                                break;
-                            case 'D'://DELETE //DROP
-                            case 'd':
-                                tokenCount++;
-                                switch (reader.icNextChar()) {
-                                    case 'E':
-                                        if (reader.icNextCharIs('L') && reader.icNextCharIs('E') && reader.icNextCharIs('T') && reader.icNextCharIs('E') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.DELETE_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    case 'R':
-                                        if (reader.icNextCharIs('O') && reader.icNextCharIs('P') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.DROP_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    default:
-                                        findNextToken(false);
-                                }
-                                break;
-                            case 'S'://SELECT //SHOW
-                            case 's':
-                                tokenCount++;
-                                switch (reader.icNextChar()) {
-                                    case 'E':
-                                        if (reader.isSelectToken()) {
-                                            context.setSQLType(SQLContext.SELECT_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    case 'H':
-                                        if (reader.isShowToken()) {
-                                            context.setSQLType(SQLContext.SHOW_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    default:
-                                        findNextToken(false);
-                                }
-                                break;
-                            case 'I': //INSERT //INTO
-                            case 'i':
-                                tokenCount++;
-                                if (reader.icNextCharIs('N')) {
-                                    switch (reader.icNextChar()) {
-                                        case 'S':
-                                            if (reader.icNextCharIs('E') && reader.icNextCharIs('R') && reader.icNextCharIs('T') &&
-                                                    reader.nextIsBlank()) {
-                                                sqlContext.setSQLType(SQLContext.INSERT_SQL);
-                                                status_queue[0] = INSERT_OPTIONS_PARSER;
-                                                status_queue[1] = TBL_NAME_PARSER;
-                                                break basic_loop;
-                                            } else {
-                                                findNextToken(false);
-                                            }
-                                            break;
-                                        case 'T':
-                                            if (reader.icNextCharIs('O') &&
-                                                    reader.nextIsBlank()) {
-                                                status_queue[0] = TBL_NAME_PARSER;
-                                                break basic_loop;
-                                            } else {
-                                                findNextToken(false);
-                                            }
-                                            break;
-                                        default:
-                                            findNextToken(false);
-                                            break;
-                                    }
-                                } else {
-                                    findNextToken(false);
-                                }
-                                break;
-                            case 'L': //LOCK //LIMIT
-                            case 'l':
-                                tokenCount++;
-                                switch (reader.icNextChar()) {
-                                    case 'O':
-                                        if (reader.icNextCharIs('C') && reader.icNextCharIs('K') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.LOCK_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    case 'I':
-                                        if (reader.icNextCharIs('M') && reader.icNextCharIs('I') && reader.icNextCharIs('T') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.LOCK_SQL);
-                                            limitClause();
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    default:
-                                        findNextToken(false);
-                                }
-                                break;
-                            case 'A'://ALTER
-                            case 'a':
-                                tokenCount++;
-                                if (reader.icNextCharIs('L') && reader.icNextCharIs('T') && reader.icNextCharIs('E') && reader.icNextCharIs('R') &&
-                                        reader.nextIsBlank()) {
-                                    context.setSQLType(SQLContext.ALTER_SQL);
-                                } else {
-                                    findNextToken(false);
-                                }
-                                break;
-                            case 'C'://CREATE
-                            case 'c':
-                                tokenCount++;
-                                if (reader.icNextCharIs('R') && reader.icNextCharIs('E') && reader.icNextCharIs('A') && reader.icNextCharIs('T') && reader.icNextCharIs('E') &&
-                                        reader.nextIsBlank()) {
-                                    context.setSQLType(SQLContext.CREATE_SQL);
-                                } else {
-                                    findNextToken(false);
-                                }
-                                break;
-                            case 'R'://REPLACE
-                            case 'r':
-                                tokenCount++;
-                                if (reader.icNextCharIs('E') && reader.icNextCharIs('P') && reader.icNextCharIs('L') && reader.icNextCharIs('A') && reader.icNextCharIs('C') && reader.icNextCharIs('E') &&
-                                        reader.nextIsBlank()) {
-                                    context.setSQLType(SQLContext.REPLACE_SQL);
-                                    status_queue[0] = INSERT_OPTIONS_PARSER;
-                                    status_queue[1] = TBL_NAME_PARSER;
-                                    break basic_loop;
-                                } else {
-                                    findNextToken(false);
-                                }
-                                break;
-                            case 'T'://TABLE //TRUNCATE
-                            case 't':
-                                tokenCount++;
-                                switch (reader.icNextChar()) {
-                                    case 'A':
-                                        if (reader.icNextCharIs('B') && reader.icNextCharIs('L') && reader.icNextCharIs('E') &&
-                                                reader.nextIsBlank()) {
-                                            status_queue[0] = TBL_OPTION_PARSER;
-                                            status_queue[1] = TBL_NAME_PARSER;
-                                            break basic_loop;
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    case 'R':
-                                        if (reader.icNextCharIs('U') && reader.icNextCharIs('N') && reader.icNextCharIs('C') && reader.icNextCharIs('A') && reader.icNextCharIs('T') && reader.icNextCharIs('E') &&
-                                                reader.nextIsBlank()) {
-                                            context.setSQLType(SQLContext.TRUNCATE_SQL);
-                                        } else {
-                                            findNextToken(false);
-                                        }
-                                        break;
-                                    default:
-                                        findNextToken(false);
-                                        break;
-                                }
-
-                                break;
-                            case ' ':
-                            case '\r':
-                            case '\n':
-                            case '\t':
-                                reader.move();
-                                break;
-                            case ',':
-                                reader.move();
-                                if (tokenCount - tblTokenPos < 2) {
-                                    status_queue[0] = TBL_NAME_PARSER;
-                                    status_queue[1] = TBL_ALIAS_FINDER;
-                                    status_queue[2] = TBL_ALIAS_PARSER;
-                                    status_queue[3] = TBL_COMMA_FINDER;
-                                    break basic_loop;
-                                }
-                                break;
-                            case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
-                                SharpComment();
-                                break;
-                            case '-':
-                                DoubleDashComment();
-                                break;
-                            case '/':
-                                MultiLineComment();
-                                break;
-                            case '\'':
-                            case '"':
-                                QuoteString();
-                                break;
-                            default:
-                                reader.move();
-                                tokenCount++;
-                                findNextToken(false); //by kaiz : 消耗掉无用token
-                                break;
-                        }
-                    }
+                    BasicParser();
                     break;
                 case TBL_NAME_PARSER:
                     TblNameParser();
@@ -324,9 +198,428 @@ public class SQLParser {
                 case TBL_OPTION_PARSER:
                     TableOptionsParser();
                     break;
+                case PREDICATE_PARSER:
+                    PredicateParser();
+                    break;
                 default:
             }
         }
+        for (int scope = context.getScopeCount()-1; scope >= 0; scope--) { //语句以谓词中的子查询结束时，外层谓词还没有结束
+            if (scopeClause[scope] == CLAUSE_PREDICATE)
+                endPredicate(scope);
+        }
+    }
+
+    /*
+    * 跳过与路由无关的内容，遇到需要进一步处理的关键字、括号、逗号时设置好状态队列后返回
+    */
+    private void BasicParser() {
+        //by kaiz : 清空状态数组，两种情况需要进行效率对比（毕竟只有16字节）
+        //队列中途回到 BASIC_PARSER 时（比如 TBL_ALIAS_FINDER 没找到别名）后面的状态还留着，最长的 FROM 队列用到4个位置
+        for (queue_pos = 1; queue_pos < 4; status_queue[queue_pos++] = BASIC_PARSER)
+            ;
+        queue_pos = 0;
+        while (reader.hasNext()) {
+            switch (BasicTokenTable.FIRST_BYTE[reader.cur()&0xFF]) { //符号按类别处理，字母开头的关键字按族查表，见 BasicTokenTable
+                case BasicTokenTable.AT://@var 用户变量，@@var 系统变量只在 SET 中才会改变会话状态
+                    tokenCount++;
+                    if (!reader.nextCharIs('@')) {
+                        context.setSessionAffinity(SQLContext.AFFINITY_USER_VARIABLE);
+                    }
+                    findNextToken(false);
+                    break;
+                case BasicTokenTable.BLANK:
+                    reader.move();
+                    break;
+                case BasicTokenTable.LPAREN:
+                    openParen();
+                    break;
+                case BasicTokenTable.RPAREN:
+                    if (closeParen())
+                        return;
+                    break;
+                case BasicTokenTable.COMMA:
+                    if (comma())
+                        return;
+                    break;
+                case BasicTokenTable.SHARP://"#" 和"–- "属于单行注释，注释范围为该行的结尾
+                    SharpComment();
+                    break;
+                case BasicTokenTable.MINUS:
+                    DoubleDashComment();
+                    break;
+                case BasicTokenTable.SLASH:
+                    MultiLineComment();
+                    break;
+                case BasicTokenTable.QUOTE:
+                    QuoteString();
+                    break;
+                case BasicTokenTable.OTHER:
+                    reader.move();
+                    tokenCount++;
+                    findNextToken(false); //by kaiz : 消耗掉无用token
+                    break;
+                default:
+                    if (keyword()) {
+                        return;//by kaiz : 设置好状态列表后，可以跳出当前处理，进入接下来的状态处理
+                    }
+                    break;
+            }
+        }
+    }
+
+    /*
+    * BASIC_PARSER 中以关键字族首字母开头的 token，返回 true 表示需要跳出 BASIC_PARSER
+    */
+    private boolean keyword() {
+        tokenCount++;//by kaiz : 所有的token遍历时，都记得要加 tokenCount，在后面token距离计算时会用到
+        int token = reader.basicToken();
+        if (token == BasicTokenTable.NOT_FOUND) {
+            findNextToken(false); //by kaiz : 如果不是需要处理的token，需要在此消耗掉，避免诸如 from_delete 之类的token被误判
+            return false;
+        }
+        if (profiling)
+            profile.hit(token, tokenCount == 1);
+        return level != EXTRACT_FULL ? partialKeyword(token) : basicKeyword(token);
+    }
+
+    private void openParen() {
+        parenTokenPos = tokenCount; //括号不计入 tokenCount，用于判断紧跟其后的 SELECT 是否为子查询
+        parenPos = reader.getPos();
+        parenDepth++;
+        derivedParen = pendingDerived;
+        pendingDerived = false;
+        reader.move();
+    }
+
+    /*
+    * BASIC_PARSER 中的 )，返回 true 表示需要跳出 BASIC_PARSER
+    */
+    private boolean closeParen() {
+        int curScope = context.getCurScope();
+        if (curScope > 0 && scopeParenDepth[curScope] == parenDepth) {
+            context.closeScope(reader.getPos()+1);
+            if (context.isDerivedScope(curScope)) { //派生表之后可能有别名，也可能继续用逗号连接下一个表，) 留给 TBL_ALIAS_FINDER 跳过
+                parenDepth--;
+                aliasScope = curScope;
+                tblTokenPos = tokenCount;
+                tableListQueue();
+                queue_pos = 1;
+                return true;
+            }
+            parenDepth--;
+            reader.move();
+            if (scopeClause[context.getCurScope()] == CLAUSE_PREDICATE) { //WHERE a IN (SELECT ...) AND ...
+                status_queue[0] = PREDICATE_PARSER;
+                return true;
+            } else if (scopeClause[context.getCurScope()] >= CLAUSE_GROUP_BY) { //ORDER BY (SELECT ...), a
+                byItems(scopeClause[context.getCurScope()] == CLAUSE_ORDER_BY, reader.getPos());
+            }
+            return false;
+        }
+        parenDepth--;
+        reader.move();
+        return false;
+    }
+
+    /*
+    * BASIC_PARSER 中的逗号，返回 true 表示需要跳出 BASIC_PARSER
+    */
+    private boolean comma() {
+        reader.move();
+        if (scopeClause[context.getCurScope()] == CLAUSE_SELECT && parenDepth == scopeParenDepth[context.getCurScope()]) {
+            scopeSelectItem[context.getCurScope()]++;
+            return false;
+        }
+        if (tokenCount - tblTokenPos < 2 && parenDepth == scopeParenDepth[context.getCurScope()] &&
+                scopeClause[context.getCurScope()] != CLAUSE_SKIPPED) { //INSERT INTO tbl(a, b) 中的逗号不是表名分隔
+            context.setFeature(SQLContext.FEATURE_JOIN);
+            tableListQueue();
+            return true;
+        }
+        return false;
+    }
+
+    //FROM、JOIN、UPDATE 以及表名之间的逗号之后都是表名列表，按顺序加入队列
+    private void tableListQueue() {
+        status_queue[0] = TBL_NAME_PARSER;
+        status_queue[1] = TBL_ALIAS_FINDER;
+        status_queue[2] = TBL_ALIAS_PARSER;
+        status_queue[3] = TBL_COMMA_FINDER;
+    }
+
+    /*
+    * BASIC_PARSER 中识别出的关键字，pos 在关键字之后的字符上；返回 true 表示已经设置好状态队列，需要跳出 BASIC_PARSER
+    */
+    private boolean basicKeyword(int token) {
+        switch (token) {
+            case BasicTokenTable.FROM:
+                if (parenDepth == scopeParenDepth[context.getCurScope()] && scopeClause[context.getCurScope()] == CLAUSE_SELECT)
+                    scopeClause[context.getCurScope()] = 0;
+                byte next = reader.peek(reader.skipBlank(reader.getPos()));
+                if (context.getSQLType() == SQLContext.PREPARE_SQL || next == '\'' || next == '"')
+                    return false; //PREPARE stmt FROM 'SELECT ...' 后面是语句文本或变量，不是表名
+                tableListQueue();
+                return true;
+            case BasicTokenTable.FOUND_ROWS:
+                context.setSessionAffinity(SQLContext.AFFINITY_FOUND_ROWS);
+                return false;
+            case BasicTokenTable.FOR:
+                forClause();
+                return false;
+            case BasicTokenTable.JOIN:
+                context.setFeature(SQLContext.FEATURE_JOIN);
+                onJoinType = joinType;
+                joinType = SQLContext.JOIN_INNER;
+                tableListQueue();//by kaiz : 辅助语句功能型的token不需要设置SQL type
+                return true;
+            case BasicTokenTable.UPDATE:
+                context.setSQLType(SQLContext.UPDATE_SQL);//by kaiz : 主导语句功能的token记得设置SQL Type
+                tableListQueue();
+                return true;
+            case BasicTokenTable.USE:
+                context.setSQLType(SQLContext.USE_SQL);
+                return false;
+            case BasicTokenTable.USING:
+                usingClause();
+                return false;
+            case BasicTokenTable.UNION:
+                context.setFeature(SQLContext.FEATURE_UNION);
+                return false;
+            case BasicTokenTable.DELETE:
+                context.setSQLType(SQLContext.DELETE_SQL);
+                return false;
+            case BasicTokenTable.DROP:
+                context.setSQLType(SQLContext.DROP_SQL);
+                return false;
+            case BasicTokenTable.DISTINCT:
+                context.setFeature(SQLContext.FEATURE_DISTINCT);
+                return false;
+            case BasicTokenTable.SELECT:
+                if (tokenCount - parenTokenPos == 1 && context.getSQLType() != 0) { //紧跟在 ( 之后的 SELECT
+                    context.setFeature(SQLContext.FEATURE_SUBQUERY);
+                    int scope = context.openScope(parenPos, derivedParen ? SQLContext.SCOPE_DERIVED : 0);
+                    if (scope > 0) {
+                        scopeParenDepth[scope] = parenDepth;
+                        scopeClause[scope] = 0;
+                    }
+                }
+                context.setSQLType(SQLContext.SELECT_SQL);
+                if (scopeClause[context.getCurScope()] != CLAUSE_PREDICATE) {
+                    scopeClause[context.getCurScope()] = CLAUSE_SELECT;
+                    scopeSelectItem[context.getCurScope()] = 0;
+                }
+                return false;
+            case BasicTokenTable.SET:
+                if (context.getSQLType() == 0) { //UPDATE ... SET 中的 SET 不产生会话状态
+                    context.setSQLType(SQLContext.SET_SQL);
+                    setClause();
+                }
+                return false;
+            case BasicTokenTable.SUM:
+                aggregateFunction(SQLContext.AGG_SUM, reader.getPos()-3, reader.getPos());
+                return false;
+            case BasicTokenTable.START:
+                context.setSQLType(SQLContext.START_SQL); //START TRANSACTION 在 TRANSACTION 处判定
+                return false;
+            case BasicTokenTable.SHOW:
+                context.setSQLType(SQLContext.SHOW_SQL);
+                return false;
+            case BasicTokenTable.INSERT:
+                context.setSQLType(SQLContext.INSERT_SQL);
+                status_queue[0] = INSERT_OPTIONS_PARSER;
+                status_queue[1] = TBL_NAME_PARSER;
+                return true;
+            case BasicTokenTable.INTO:
+                if (context.getSQLType() == SQLContext.SELECT_SQL) { //SELECT ... INTO @var/OUTFILE 之后不是表名
+                    context.setMasterReason(SQLContext.MASTER_SELECT_INTO);
+                    return false;
+                }
+                status_queue[0] = TBL_NAME_PARSER;
+                return true;
+            case BasicTokenTable.LEFT:
+                joinType = SQLContext.JOIN_LEFT;
+                return false;
+            case BasicTokenTable.LOCK:
+                if (context.getSQLType() == 0) {
+                    context.setSessionAffinity(SQLContext.AFFINITY_LOCK_TABLES);
+                } else if (context.getSQLType() == SQLContext.SELECT_SQL) { //SELECT ... LOCK IN SHARE MODE
+                    context.setMasterReason(SQLContext.MASTER_LOCK_IN_SHARE_MODE);
+                }
+                context.setSQLType(SQLContext.LOCK_SQL);
+                return false;
+            case BasicTokenTable.LAST_INSERT_ID:
+                context.setSessionAffinity(SQLContext.AFFINITY_LAST_INSERT_ID);
+                return false;
+            case BasicTokenTable.LIMIT:
+                context.setSQLType(SQLContext.LOCK_SQL);
+                context.setFeature(SQLContext.FEATURE_LIMIT);
+                limitClause();
+                return false;
+            case BasicTokenTable.ALTER:
+                context.setSQLType(SQLContext.ALTER_SQL);
+                return false;
+            case BasicTokenTable.AVG:
+                aggregateFunction(SQLContext.AGG_AVG, reader.getPos()-3, reader.getPos());
+                return false;
+            case BasicTokenTable.CREATE:
+                context.setSQLType(SQLContext.CREATE_SQL);
+                return false;
+            case BasicTokenTable.COUNT:
+                aggregateFunction(SQLContext.AGG_COUNT, reader.getPos()-5, reader.getPos());
+                return false;
+            case BasicTokenTable.MIN:
+                aggregateFunction(SQLContext.AGG_MIN, reader.getPos()-3, reader.getPos());
+                return false;
+            case BasicTokenTable.MAX:
+                aggregateFunction(SQLContext.AGG_MAX, reader.getPos()-3, reader.getPos());
+                return false;
+            case BasicTokenTable.HAVING:
+                context.setFeature(SQLContext.FEATURE_HAVING);
+                clauseJoinType = 0;
+                status_queue[0] = PREDICATE_PARSER;
+                return true;
+            case BasicTokenTable.ORDER:
+                context.setFeature(SQLContext.FEATURE_ORDER_BY);
+                if (parenDepth == scopeParenDepth[context.getCurScope()]) //OVER(ORDER BY ...)、GROUP_CONCAT(... ORDER BY ...) 里的不记录
+                    byList(true);
+                return false;
+            case BasicTokenTable.OVER:
+                context.setFeature(SQLContext.FEATURE_WINDOW);
+                return false;
+            case BasicTokenTable.ON:
+                if (isJoinCondition()) {
+                    clauseJoinType = onJoinType;
+                    status_queue[0] = PREDICATE_PARSER;
+                    return true;
+                }
+                return false;
+            case BasicTokenTable.WINDOW:
+                context.setFeature(SQLContext.FEATURE_WINDOW);
+                return false;
+            case BasicTokenTable.WHERE:
+                clauseJoinType = SQLContext.JOIN_WHERE;
+                status_queue[0] = PREDICATE_PARSER;
+                return true;
+            case BasicTokenTable.REPLACE:
+                context.setSQLType(SQLContext.REPLACE_SQL);
+                status_queue[0] = INSERT_OPTIONS_PARSER;
+                status_queue[1] = TBL_NAME_PARSER;
+                return true;
+            case BasicTokenTable.RELEASE_LOCK:
+            case BasicTokenTable.RELEASE_ALL_LOCKS:
+                context.setMasterReason(SQLContext.MASTER_SIDE_EFFECT);
+                return false;
+            case BasicTokenTable.RIGHT:
+                joinType = SQLContext.JOIN_RIGHT;
+                return false;
+            case BasicTokenTable.TABLE:
+                status_queue[0] = TBL_OPTION_PARSER;
+                status_queue[1] = TBL_NAME_PARSER;
+                return true;
+            case BasicTokenTable.TEMPORARY:
+                if (context.getSQLType() == SQLContext.CREATE_SQL) {
+                    context.setSessionAffinity(SQLContext.AFFINITY_TEMPORARY_TABLE);
+                }
+                return false;
+            case BasicTokenTable.TRUNCATE:
+                context.setSQLType(SQLContext.TRUNCATE_SQL);
+                return false;
+            case BasicTokenTable.TRANSACTION:
+                if (context.getSQLType() == SQLContext.START_SQL) {
+                    context.setSessionAffinity(SQLContext.AFFINITY_TRANSACTION);
+                }
+                return false;
+            case BasicTokenTable.GET_LOCK:
+                context.setSessionAffinity(SQLContext.AFFINITY_GET_LOCK);
+                context.setMasterReason(SQLContext.MASTER_SIDE_EFFECT);
+                return false;
+            case BasicTokenTable.GROUP:
+                context.setFeature(SQLContext.FEATURE_GROUP_BY);
+                if (parenDepth == scopeParenDepth[context.getCurScope()]) //OVER(PARTITION BY ...) 之类的括号里的不记录
+                    byList(false);
+                return false;
+            case BasicTokenTable.GROUP_CONCAT:
+                aggregateFunction(SQLContext.AGG_GROUP_CONCAT, reader.getPos()-12, reader.getPos());
+                return false;
+            case BasicTokenTable.PREPARE:
+                if (context.getSQLType() == 0) {
+                    context.setSQLType(SQLContext.PREPARE_SQL);
+                    context.setSessionAffinity(SQLContext.AFFINITY_PREPARE);
+                }
+                return false;
+            case BasicTokenTable.BEGIN:
+                if (context.getSQLType() == 0) { //存储过程中的 BEGIN 不算
+                    context.setSQLType(SQLContext.BEGIN_SQL);
+                    context.setSessionAffinity(SQLContext.AFFINITY_TRANSACTION);
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /*
+    * 提取级别低于 EXTRACT_FULL 时代替 basicKeyword：不需要的子句只记录 feature，内容交给 BASIC_PARSER 跳过（其中的子查询照常提取）；
+    * 已经得到所需内容时 reader 移到结尾，结束整个扫描
+    * ON 中的逗号之后可能还是表名（FROM a JOIN b ON a.id = b.id, c），ON 总是交给 PREDICATE_PARSER
+    */
+    private boolean partialKeyword(int token) {
+        switch (token) {
+            case BasicTokenTable.WHERE:
+                if (level < EXTRACT_CONDITIONS) {
+                    skipClause();
+                    return false;
+                }
+                break;
+            case BasicTokenTable.HAVING:
+                if (level < EXTRACT_CONDITIONS) {
+                    context.setFeature(SQLContext.FEATURE_HAVING);
+                    skipClause();
+                    return false;
+                }
+                break;
+            case BasicTokenTable.LIMIT:
+                if (level < EXTRACT_LIMIT) {
+                    context.setFeature(SQLContext.FEATURE_LIMIT);
+                    return false;
+                }
+                break;
+            case BasicTokenTable.GROUP:
+                context.setFeature(SQLContext.FEATURE_GROUP_BY);
+                skipClause();
+                return false;
+            case BasicTokenTable.ORDER:
+                context.setFeature(SQLContext.FEATURE_ORDER_BY);
+                skipClause();
+                return false;
+            case BasicTokenTable.SUM:
+            case BasicTokenTable.AVG:
+            case BasicTokenTable.COUNT:
+            case BasicTokenTable.MIN:
+            case BasicTokenTable.MAX:
+            case BasicTokenTable.GROUP_CONCAT:
+                context.setFeature(SQLContext.FEATURE_AGGREGATE);
+                return false;
+            case BasicTokenTable.VALUES:
+                if (parenDepth == 0 && (context.getSQLType() == SQLContext.INSERT_SQL || context.getSQLType() == SQLContext.REPLACE_SQL)) {
+                    reader.toLast(); //VALUES 之后只有值列表和 ON DUPLICATE KEY UPDATE，不再有表名、LIMIT 和谓词
+                    return true;
+                }
+                return false;
+            default:
+        }
+        boolean jump = basicKeyword(token);
+        if (level == EXTRACT_TYPE_ONLY && context.getSQLType() != 0) {
+            reader.toLast();
+            return true;
+        }
+        return jump;
+    }
+
+    private void skipClause() {
+        if (parenDepth == scopeParenDepth[context.getCurScope()]) //OVER(ORDER BY ...) 之类的括号里的不算
+            scopeClause[context.getCurScope()] = CLAUSE_SKIPPED;
     }
 
     void findNextToken(boolean jump_status) {
@@ -336,13 +629,13 @@ public class SQLParser {
                 case '\r':
                 case '\t':
                 case '\n':
-                case '(':
-                case ')':
                 case ';':
                     jump_status = true;
                     reader.move();
                     break;
                 case ',':
+                case '(':
+                case ')':
                     //pos++;
                     return;
                 case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
@@ -384,11 +677,15 @@ public class SQLParser {
                 case '/':
                     MultiLineComment();
                     break;
-                case ';':
                 case '(':
+                    pendingDerived = true;
                     status_queue[queue_pos] = BASIC_PARSER; //如果是括号说明是子查询，直接回到正常解析
                     break finder_loop;
+                case ';':
+                    status_queue[queue_pos] = BASIC_PARSER;
+                    break finder_loop;
                 default:
+                    aliasScope = -1;
                     if (context.isTblNameEnd()) {
                         context.setTblNameStart(reader.getPos());
                         tokenCount++;
@@ -403,26 +700,44 @@ public class SQLParser {
                             case '\r':
                             case '\n':
                             case '\t':
+                                context.setTblNameSize(resultSize);
+                                tblTokenPos = tokenCount;
+                                queue_pos++;
+                                break finder_loop;
                             case '(':
                             case ')':
                             case ';':
                                 context.setTblNameSize(resultSize);
                                 tblTokenPos = tokenCount;
-                                queue_pos++;
+                                status_queue[queue_pos] = BASIC_PARSER; //括号交给 BASIC_PARSER 计算深度
                                 break finder_loop;
                             case '`':
                                 context.setTblNameSize(resultSize);
-                                if (reader.nextCharIs('.')) {
-                                    context.pushSchemaName();
-                                    break name_loop;
-                                } else {
-                                    tblTokenPos = tokenCount;
+                                tblTokenPos = tokenCount;
+                                if (!reader.hasNext()) {
                                     queue_pos++;
                                     break finder_loop;
                                 }
+                                switch (reader.nextChar()) {
+                                    case '.':
+                                        context.pushSchemaName();
+                                        break name_loop;
+                                    case ',':
+                                        context.setFeature(SQLContext.FEATURE_JOIN);
+                                        break name_loop;
+                                    case '(':
+                                    case ')':
+                                    case ';':
+                                        status_queue[queue_pos] = BASIC_PARSER;
+                                        break finder_loop;
+                                    default:
+                                        queue_pos++;
+                                        break finder_loop;
+                                }
                             case ',':
                                 context.setTblNameSize(resultSize);
                                 tblTokenPos = tokenCount;
+                                context.setFeature(SQLContext.FEATURE_JOIN);
                                 break name_loop;
                             case '.':
                                 context.setTblNameSize(resultSize);
@@ -443,17 +758,18 @@ public class SQLParser {
             switch (reader.nextChar()) {
                 case 'A': //by kaiz : 处理 AS 写法
                 case 'a':
+                    int start = reader.getPos();
                     if (reader.icNextCharIs('S') &&
                             reader.nextIsBlank()) {
                         tokenCount++;
                         queue_pos++;
-                    } else if (reader.cur() == ',') {
-                        queue_pos = 0;
                     } else {
-                        status_queue[queue_pos] = BASIC_PARSER;
+                        reader.setPos(start);
+                        implicitAlias();
                     }
                     break alias_loop;
                 case ',':
+                    context.setFeature(SQLContext.FEATURE_JOIN);
                     queue_pos = 0; //by kaiz : 和 TBL_COMMA_FINDER 一样的处理，回到队列首，重新开始下一个处理循环
                     break alias_loop;
                 case '.': //by kaiz : 处理 . 写法
@@ -475,12 +791,30 @@ public class SQLParser {
                     MultiLineComment();
                     break;
                 default:
-                    status_queue[queue_pos] = BASIC_PARSER;
+                    implicitAlias();
                     break alias_loop;
             }
         }
     }
 
+    /*
+    * 省略 AS 的别名：表名之后的标识符只要不是能跟在表名后面的关键字，就当作别名
+    */
+    private void implicitAlias() {
+        int start = reader.getPos();
+        if (isIdentifierStart(reader.cur())) {
+            int end = reader.identifierEnd(start);
+            if (!isTableFollowKeyword(reader.icHash(start, end))) {
+                tokenCount++;
+                setAlias(start, end);
+                reader.setPos(end - 1);
+                queue_pos += 2; //跳过 TBL_ALIAS_PARSER，直接到 TBL_COMMA_FINDER
+                return;
+            }
+        }
+        status_queue[queue_pos] = BASIC_PARSER;
+    }
+
     private void TblAliasParser() {
         alias_loop:
         while (reader.hasNext()) { //by kaiz : 略过 AS 后空格
@@ -501,12 +835,14 @@ public class SQLParser {
                     break;
                 default:
                     tokenCount++;
+                    int aliasStart = reader.getPos();
                     while (reader.hasNext()) { //by kaiz : 略过别名
                         switch (reader.nextChar()) {
                             case ' ':
                             case '\t':
                             case '\r':
                             case '\n':
+                                setAlias(aliasStart, reader.getPos());
                                 queue_pos++;
                                 break alias_loop;
                             case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
@@ -519,15 +855,33 @@ public class SQLParser {
                                 MultiLineComment();
                                 break;
                             case ',':
+                                setAlias(aliasStart, reader.getPos());
+                                context.setFeature(SQLContext.FEATURE_JOIN);
                                 queue_pos = 0;
                                 break alias_loop;
+                            case '(':
+                            case ')':
+                            case ';':
+                                setAlias(aliasStart, reader.getPos());
+                                status_queue[queue_pos] = BASIC_PARSER;
+                                break alias_loop;
                         }
                     }
+                    setAlias(aliasStart, reader.getPos()+1);
                     break alias_loop;
             }
         }
     }
 
+    private void setAlias(int start, int end) {
+        if (aliasScope > 0) {
+            context.setScopeAlias(aliasScope, start, end);
+            aliasScope = -1;
+        } else {
+            context.setTblAlias(start, end);
+        }
+    }
+
     private void TblCommaFinder() {
         comma_loop:
         while (reader.hasNext()) {
@@ -547,6 +901,7 @@ public class SQLParser {
                     MultiLineComment();
                     break;
                 case ',':
+                    context.setFeature(SQLContext.FEATURE_JOIN);
                     queue_pos = 0; //by kaiz : 回到队列首，重新开始下一个处理循环
                     break comma_loop;
                 default:
@@ -565,7 +920,7 @@ public class SQLParser {
                 case 'd':
                     tokenCount++;
                     tempPos = reader.getPos();
-                    if (reader.icNextCharIs('E') && reader.icNextCharIs('L') && reader.icNextCharIs('A') && reader.icNextCharIs('Y') && reader.icNextCharIs('E') && reader.icNextCharIs('D') &&
+                    if (reader.icNextIs(IC_ELAYED, 6) &&
                             reader.nextIsBlank()) {
                         //context.setSQLType(SQLContext.ALTER_SQL);
                         //by kaiz : just pass...
@@ -581,8 +936,8 @@ public class SQLParser {
                 case 'l':
                     tokenCount++;
                     tempPos = reader.getPos();
-                    if (reader.icNextCharIs('O') && reader.icNextCharIs('W') && reader.nextCharIs('_') &&
-                            reader.icNextCharIs('P') && reader.icNextCharIs('R') && reader.icNextCharIs('I') && reader.icNextCharIs('O') && reader.icNextCharIs('R') && reader.icNextCharIs('I') && reader.icNextCharIs('T') && reader.icNextCharIs('Y') &&
+                    if (reader.icNextIs(IC_OW, 2) && reader.nextCharIs('_') &&
+                            reader.icNextIs(IC_PRIORITY, 8) &&
                             reader.nextIsBlank()) {
                         //context.setSQLType(SQLContext.ALTER_SQL);
                         //by kaiz : just pass...
@@ -598,8 +953,8 @@ public class SQLParser {
                 case 'h':
                     tokenCount++;
                     tempPos = reader.getPos();
-                    if (reader.icNextCharIs('I') && reader.icNextCharIs('G') && reader.icNextCharIs('H') && reader.nextCharIs('_') &&
-                            reader.icNextCharIs('P') && reader.icNextCharIs('R') && reader.icNextCharIs('I') && reader.icNextCharIs('O') && reader.icNextCharIs('R') && reader.icNextCharIs('I') && reader.icNextCharIs('T') && reader.icNextCharIs('Y') &&
+                    if (reader.icNextIs(IC_IGH, 3) && reader.nextCharIs('_') &&
+                            reader.icNextIs(IC_PRIORITY, 8) &&
                             reader.nextIsBlank()) {
                         //context.setSQLType(SQLContext.ALTER_SQL);
                         //by kaiz : just pass...
@@ -618,7 +973,7 @@ public class SQLParser {
                     switch (reader.nextChar()) {
                         case 'G':
                         case 'g':
-                            if (reader.icNextCharIs('N') && reader.icNextCharIs('O') && reader.icNextCharIs('R') && reader.icNextCharIs('E') &&
+                            if (reader.icNextIs(IC_NORE, 4) &&
                                     reader.nextIsBlank()) {
                                 //context.setSQLType(SQLContext.ALTER_SQL);
                                 //by kaiz : just pass...
@@ -631,7 +986,7 @@ public class SQLParser {
                             break;
                         case 'N':
                         case 'n':
-                            if (reader.icNextCharIs('T') && reader.icNextCharIs('O') &&
+                            if (reader.icNextIs(IC_TO, 2) &&
                                     reader.nextIsBlank()) {
                                 //context.setSQLType(SQLContext.ALTER_SQL);
                                 //by kaiz : just pass...
@@ -694,7 +1049,7 @@ public class SQLParser {
                 case 'n':
                     tokenCount++;
                     tempPos = reader.getPos();
-                    if (reader.icNextCharIs('O') && reader.icNextCharIs('T') &&
+                    if (reader.icNextIs(IC_OT, 2) &&
                             reader.nextIsBlank()) {
                         //context.setSQLType(SQLContext.ALTER_SQL);
                         //by kaiz : just pass...
@@ -710,7 +1065,7 @@ public class SQLParser {
                 case 'e':
                     tokenCount++;
                     tempPos = reader.getPos();
-                    if (reader.icNextCharIs('X') && reader.icNextCharIs('I') && reader.icNextCharIs('S') && reader.icNextCharIs('T') && reader.icNextCharIs('S') &&
+                    if (reader.icNextIs(IC_XISTS, 5) &&
                             reader.nextIsBlank()) {
                         //context.setSQLType(SQLContext.ALTER_SQL);
                         //by kaiz : just pass...
@@ -752,18 +1107,19 @@ public class SQLParser {
         if (reader.nextCharIs('-')) {
             byte maybeSpace = reader.nextChar();
             if (maybeSpace == ' ' || maybeSpace == '\t' || maybeSpace == '\r') {
-                while (reader.hasNext()) {
-                    if (reader.nextCharIs('\n')) {
-                        return;
-                    }
-                }
+                SharpComment();
+                return;
             }
         }
+        if (reader.atEnd()) //结尾的 - 或 --，比较时读到了哨兵
+            reader.toLast();
     }
 
-    void SharpComment() {
-        while (reader.hasNext()) {
-            if (reader.nextCharIs('\n')) {
+    void SharpComment() { //停在行尾的 \n 上，没有换行时停在最后一个字符上
+        byte c;
+        while ((c = reader.nextChar()) != '\n') {
+            if (c == SQLReader.SENTINEL && reader.atEnd()) {
+                reader.toLast();
                 return;
             }
         }
@@ -776,25 +1132,40 @@ public class SQLParser {
     */
     void MultiLineComment() {
         if (reader.nextCharIs('*')) {
-            while (reader.hasNext()) {
-                if (reader.isMultiLineCommentEndToken()) {
+            while (!reader.isMultiLineCommentEndToken()) {
+                if (reader.cur() == SQLReader.SENTINEL && reader.atEnd()) {
+                    reader.toLast();
                     return;
                 }
             }
+        } else if (reader.atEnd()) {
+            reader.toLast();
         }
     }
 
 
+    /*
+    LIMIT count / LIMIT offset, count / LIMIT count OFFSET offset，结果记录到当前scope
+    */
     void limitClause() {
         int argCount = 0;
+        int first = SQLContext.LIMIT_NONE;
+        int second = SQLContext.LIMIT_NONE;
+        boolean offsetForm = false;
+        int value;
+        limit_loop:
         while (reader.hasNext()) {
             switch (reader.nextChar()) {
                 case '+':
                 case '-':
+                    byte sign = reader.cur();
                     byte digit = reader.nextChar();
                     if ('0' <= digit && digit <= '9') {
-                        reader.readNumber();
-                        ++argCount;
+                        value = reader.readNumber();
+                        reader.setPos(reader.getPos()-1); //readNumber 停在数字后面的字符上，退一格让下一次 nextChar 读到它
+                        if (sign == '-') //LIMIT 95,-1 是取全部的旧写法
+                            value = SQLContext.LIMIT_NONE;
+                        if (argCount++ == 0) first = value; else second = value;
                     } else if (digit == '-') {
                         DoubleDashComment();
                     }
@@ -809,13 +1180,13 @@ public class SQLParser {
                 case '7':
                 case '8':
                 case '9': {
-                    reader.readNumber();
-                    ++argCount;
+                    value = reader.readNumber();
+                    reader.setPos(reader.getPos()-1); //LIMIT 5) 的 ) 要留给 BASIC_PARSER 关闭子查询
+                    if (argCount++ == 0) first = value; else second = value;
                     break;
                 }
                 case '?'://PARAM_MARKER
-                    reader.limitParamMarkerCollector();
-                    ++argCount;
+                    if (argCount++ == 0) first = SQLContext.LIMIT_PARAM; else second = SQLContext.LIMIT_PARAM;
                     break;
                 case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
                     SharpComment();
@@ -830,7 +1201,7 @@ public class SQLParser {
                     break;
                 default:
                     if (argCount == 1) {
-                        return;
+                        break limit_loop;
                     } else {
                         //Identifier
                         ++argCount;
@@ -838,10 +1209,11 @@ public class SQLParser {
                     break;
                 case 'O':
                 case 'o': {
-                    if (reader.icNextCharIs('F') && reader.icNextCharIs('F') && reader.icNextCharIs('S') && reader.icNextCharIs('E') && reader.icNextCharIs('T') &&
+                    if (reader.icNextIs(IC_FFSET, 5) &&
                             reader.nextIsBlank()) {
                         if (argCount == 1) {
                             //goto    case ','
+                            offsetForm = true;
                         } else {
                             //offset 的普通字符串 ,非关键字,异常路径
                         }
@@ -858,22 +1230,804 @@ public class SQLParser {
                     }
             }
             if (argCount == 2) {
+                break;
+            }
+        }
+        if (argCount == 1) {
+            context.setLimit(0, first);
+        } else if (offsetForm) {
+            context.setLimit(second, first);
+        } else if (argCount == 2) {
+            context.setLimit(first, second);
+        }
+    }
+
+
+    /*
+    FOR UPDATE / FOR SHARE 为加锁读，只能发往主库
+    */
+    void forClause() {
+        while (reader.hasNext()) {
+            switch (reader.nextChar()) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    break;
+                case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
+                    SharpComment();
+                    break;
+                case '-':
+                    DoubleDashComment();
+                    break;
+                case '/':
+                    MultiLineComment();
+                    break;
+                case 'U'://UPDATE
+                case 'u':
+                    tokenCount++;
+                    if (reader.icNextIs(IC_PDATE, 5) &&
+                            reader.nextIsClauseEnd()) {
+                        context.setMasterReason(SQLContext.MASTER_FOR_UPDATE);
+                    } else {
+                        findNextToken(false);
+                    }
+                    return;
+                case 'S'://SHARE
+                case 's':
+                    tokenCount++;
+                    if (reader.icNextIs(IC_HARE, 4) &&
+                            reader.nextIsClauseEnd()) {
+                        context.setMasterReason(SQLContext.MASTER_FOR_SHARE);
+                    } else {
+                        findNextToken(false);
+                    }
+                    return;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /*
+    SET GLOBAL xxx 和 SET @@global.xxx 不影响当前会话，
+    其余的 SET SESSION/LOCAL xxx、SET NAMES、SET xxx、SET @@xxx 都会产生会话状态，SET @var 记为用户变量
+    */
+    void setClause() {
+        while (reader.hasNext()) {
+            switch (reader.nextChar()) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    break;
+                case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
+                    SharpComment();
+                    break;
+                case '-':
+                    DoubleDashComment();
+                    break;
+                case '/':
+                    MultiLineComment();
+                    break;
+                case '@':
+                    if (!reader.nextCharIs('@')) {
+                        context.setSessionAffinity(SQLContext.AFFINITY_USER_VARIABLE);
+                    } else if (!(reader.icNextIs(IC_GLOBAL, 6) &&
+                            reader.nextCharIs('.'))) {
+                        context.setSessionAffinity(SQLContext.AFFINITY_SESSION_VARIABLE);
+                    }
+                    return;
+                case 'G'://GLOBAL
+                case 'g':
+                    if (!(reader.icNextIs(IC_LOBAL, 5) &&
+                            reader.nextIsBlank())) {
+                        context.setSessionAffinity(SQLContext.AFFINITY_SESSION_VARIABLE);
+                    }
+                    return;
+                default:
+                    context.setSessionAffinity(SQLContext.AFFINITY_SESSION_VARIABLE);
+                    return;
+            }
+        }
+    }
+
+    /*
+    * WHERE / ON / HAVING 之后的条件表达式：跳过运算符、常量和函数名，把字段按限定名解析到表序号后记录下来，
+    * 遇到子查询回到 BASIC_PARSER，子查询结束后根据 scopeClause 再回到这里；
+    * 以 AND/OR 分隔的 a.x = b.y 记为连接边；
+    * 同时用调度场算法把 AND/OR/NOT 和括号组织成逆波兰序的谓词树，每个 AND/OR 分支只有整个分支是
+    * col = 常量、IN 列表或范围条件时记为原子条件，否则记为 PRED_TRUE
+    */
+    private void PredicateParser() {
+        int scope = context.getCurScope();
+        if (scopeClause[scope] != CLAUSE_PREDICATE) { //子查询结束后回来的不用重新设置
+            scopeClause[scope] = CLAUSE_PREDICATE;
+            scopePredicateDepth[scope] = parenDepth;
+            scopeJoinType[scope] = clauseJoinType;
+            scopeRangeStart[scope] = context.getRangeCount();
+            scopePredicate[scope] = context.startPredicate(clauseJoinType);
+            predOpTop[scope] = 0;
+            predBranch[scope] = BRANCH_EMPTY;
+            predNest[scope] = 0;
+            predBetween[scope] = false;
+            edgeState = EDGE_NONE;
+        } else {
+            dirty(scope);
+        }
+        predicate_loop:
+        while (reader.hasCur()) {
+            switch (reader.cur()) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    reader.move();
+                    break;
+                case ',':
+                    if (parenDepth == scopePredicateDepth[scope]) { //FROM a JOIN b ON a.id = b.id, c 之后是下一个表
+                        endPredicate(scope);
+                        context.setFeature(SQLContext.FEATURE_JOIN);
+                        tableListQueue();
+                        queue_pos = 0;
+                        return;
+                    }
+                    dirty(scope);
+                    reader.move();
+                    break;
+                case '#'://"#" 和"–- "属于单行注释，注释范围为该行的结尾
+                    if (!reader.hasNext()) break predicate_loop;
+                    SharpComment();
+                    break;
+                case '-':
+                    if (!reader.hasNext()) break predicate_loop;
+                    if (reader.peek(reader.getPos()+1) != '-')
+                        dirty(scope);
+                    DoubleDashComment();
+                    break;
+                case '/':
+                    if (!reader.hasNext()) break predicate_loop;
+                    if (reader.peek(reader.getPos()+1) != '*')
+                        dirty(scope);
+                    MultiLineComment();
+                    if (reader.cur() == '*' && reader.peek(reader.getPos()+1) == '/')
+                        reader.setPos(reader.getPos()+2);
+                    break;
+                case '\'':
+                case '"':
+                    dirty(scope);
+                    QuoteString();
+                    break;
+                case '@':
+                    dirty(scope);
+                    if (reader.peek(reader.getPos()+1) != '@')
+                        context.setSessionAffinity(SQLContext.AFFINITY_USER_VARIABLE);
+                    reader.setPos(reader.identifierEnd(reader.skipChar(reader.getPos(), '@')));
+                    break;
+                case '(': {
+                    int next = reader.skipBlank(reader.getPos()+1);
+                    if (reader.icHash(next, reader.identifierEnd(next)) == TokenHash.SELECT) { //子查询交给 BASIC_PARSER 开启新的scope
+                        status_queue[queue_pos] = BASIC_PARSER;
+                        return;
+                    }
+                    scopeRangeStart[scope] = -1; //括号里的范围条件不和外面的合并
+                    if (predNest[scope] == 0 && predBranch[scope] == BRANCH_EMPTY) {
+                        predicatePush(scope, OP_GROUP);
+                    } else {
+                        predNest[scope]++;
+                        predicateDirty(scope);
+                    }
+                    edgeState = EDGE_NONE;
+                    parenDepth++;
+                    reader.move();
+                    break;
+                }
+                case ')':
+                    if (parenDepth == scopePredicateDepth[scope]) { //子查询结束或者 ( 里的 ON 条件结束
+                        endPredicate(scope);
+                        status_queue[queue_pos] = BASIC_PARSER;
+                        return;
+                    }
+                    joinEdgeEnd(scope);
+                    if (predNest[scope] > 0)
+                        predNest[scope]--;
+                    else
+                        predicateGroupEnd(scope);
+                    parenDepth--;
+                    reader.move();
+                    break;
+                case ';':
+                    endPredicate(scope);
+                    status_queue[queue_pos] = BASIC_PARSER;
+                    return;
+                case '=':
+                    edgeState = edgeState == EDGE_LEFT ? EDGE_EQ : EDGE_DIRTY;
+                    predicateDirty(scope);
+                    reader.move();
+                    break;
+                default:
+                    if (isIdentifierStart(reader.cur())) {
+                        if (!predicateIdentifier(scope))
+                            return;
+                    } else if (reader.cur() >= '0' && reader.cur() <= '9') {
+                        dirty(scope);
+                        reader.setPos(reader.identifierEnd(reader.getPos()));
+                        if (reader.hasCur() && reader.cur() == '.') //小数
+                            reader.setPos(reader.identifierEnd(reader.getPos()+1));
+                    } else {
+                        dirty(scope);
+                        reader.move();
+                    }
+            }
+        }
+        endPredicate(scope);
+    }
+
+    private void endPredicate(int scope) {
+        joinEdgeEnd(scope);
+        scopeClause[scope] = 0;
+        if (predBranch[scope] == BRANCH_EMPTY)
+            context.addPredicateNode(scopePredicate[scope], SQLContext.PRED_TRUE, 0);
+        predicatePop(scope, 0);
+        if (predOpTop[scope] > 0) //括号不匹配
+            context.setPredicateIncomplete();
+        context.endPredicate(scopePredicate[scope]);
+    }
+
+    private void dirty(int scope) {
+        edgeState = EDGE_DIRTY;
+        predicateDirty(scope);
+    }
+
+    /*
+    * 当前分支不是单独的原子条件：还没有输出节点时输出 PRED_TRUE，已经输出的原子条件或括号撤销为 PRED_TRUE
+    */
+    private void predicateDirty(int scope) {
+        if (predBranch[scope] == BRANCH_EMPTY)
+            context.addPredicateNode(scopePredicate[scope], SQLContext.PRED_TRUE, 0);
+        else if (predBranch[scope] == BRANCH_OPERAND)
+            context.retractPredicate(scopePredicate[scope], predOperand[scope]);
+        predBranch[scope] = BRANCH_DIRTY;
+    }
+
+    private void predicateAtom(int scope, byte op, int arg) {
+        if (predBranch[scope] != BRANCH_EMPTY || arg < 0) {
+            predicateDirty(scope);
+            return;
+        }
+        predOperand[scope] = context.addPredicateNode(scopePredicate[scope], op, arg);
+        predBranch[scope] = BRANCH_OPERAND;
+    }
+
+    /*
+    * AND/OR：结束当前分支，把栈中优先级不低于 op 的运算符输出后 op 入栈，优先级 NOT > AND > OR
+    */
+    private void predicateOperator(int scope, byte op) {
+        if (op == SQLContext.PRED_AND && predBetween[scope]) { //BETWEEN a AND b
+            predBetween[scope] = false;
+            predicateDirty(scope);
+            return;
+        }
+        if (predNest[scope] > 0) {
+            predicateDirty(scope);
+            return;
+        }
+        if (predBranch[scope] == BRANCH_EMPTY)
+            context.addPredicateNode(scopePredicate[scope], SQLContext.PRED_TRUE, 0);
+        predicatePop(scope, precedence(op));
+        predicatePush(scope, op);
+        predBranch[scope] = BRANCH_EMPTY;
+    }
+
+    private void predicatePush(int scope, byte op) {
+        if (predOpTop[scope] == PRED_STACK_SIZE) {
+            context.setPredicateIncomplete();
+            return;
+        }
+        int offset = scope*PRED_STACK_SIZE+predOpTop[scope]++;
+        predOps[offset] = op;
+        predOpNode[offset] = context.getPredicateNodeCount();
+    }
+
+    //输出栈顶优先级不低于 minPrecedence 的运算符，遇到 ( 停止
+    private void predicatePop(int scope, int minPrecedence) {
+        int base = scope*PRED_STACK_SIZE;
+        while (predOpTop[scope] > 0) {
+            byte op = predOps[base+predOpTop[scope]-1];
+            if (op == OP_GROUP || precedence(op) < minPrecedence)
                 return;
+            context.addPredicateNode(scopePredicate[scope], op, 0);
+            predOpTop[scope]--;
+        }
+    }
+
+    //) 结束一组括号，整组作为当前分支的一个操作数
+    private void predicateGroupEnd(int scope) {
+        if (predBranch[scope] == BRANCH_EMPTY)
+            context.addPredicateNode(scopePredicate[scope], SQLContext.PRED_TRUE, 0);
+        predicatePop(scope, 0);
+        if (predOpTop[scope] == 0) {
+            context.setPredicateIncomplete();
+            return;
+        }
+        predOperand[scope] = predOpNode[scope*PRED_STACK_SIZE + --predOpTop[scope]];
+        predBranch[scope] = BRANCH_OPERAND;
+    }
+
+    private int precedence(byte op) {
+        return op == SQLContext.PRED_NOT ? 3 : op == SQLContext.PRED_AND ? 2 : 1;
+    }
+
+    /*
+    * 一个 AND/OR 分支结束，如果整个分支就是 a.x = b.y 则记录连接边
+    */
+    private void joinEdgeEnd(int scope) {
+        if (edgeState == EDGE_RIGHT && scopeJoinType[scope] != 0)
+            context.addJoinEdge(edgeLeft, edgeRight, scopeJoinType[scope]);
+        edgeState = EDGE_NONE;
+    }
+
+    /*
+    * 处理谓词中的一个标识符，返回false表示条件表达式已经结束
+    */
+    private boolean predicateIdentifier(int scope) {
+        int start = reader.getPos();
+        int end = reader.identifierEnd(start);
+        long hash = reader.icHash(start, end);
+        int next = reader.skipBlank(end);
+        if (reader.peek(next) == '(' && hash != TokenHash.AND && hash != TokenHash.OR && hash != TokenHash.XOR && hash != TokenHash.NOT) { //函数调用
+            dirty(scope);
+            predicateFunction(hash, start, end);
+            reader.setPos(end);
+            return true;
+        }
+        if (Arrays.binarySearch(predicateKeywords, hash) >= 0) {
+            if (hash == TokenHash.AND) {
+                joinEdgeEnd(scope);
+                predicateOperator(scope, SQLContext.PRED_AND);
+            } else if (hash == TokenHash.OR || hash == TokenHash.XOR) { //XOR 命中的节点是 OR 的子集
+                joinEdgeEnd(scope);
+                scopeRangeStart[scope] = -1;
+                predicateOperator(scope, SQLContext.PRED_OR);
+            } else if (hash == TokenHash.NOT && predNest[scope] == 0 && predBranch[scope] == BRANCH_EMPTY) { //前缀 NOT，a NOT IN、IS NOT 之类的不算
+                edgeState = EDGE_DIRTY;
+                predicatePush(scope, SQLContext.PRED_NOT);
+            } else {
+                dirty(scope);
+                if (hash == TokenHash.CASE)
+                    predNest[scope]++;
+                else if (hash == TokenHash.END && predNest[scope] > 0)
+                    predNest[scope]--;
+                else if (hash == TokenHash.BETWEEN)
+                    predBetween[scope] = true;
+            }
+            reader.setPos(end);
+            return true;
+        }
+        if (Arrays.binarySearch(predicateEndKeywords, hash) >= 0) {
+            endPredicate(scope);
+            status_queue[queue_pos] = BASIC_PARSER;
+            return false;
+        }
+        tokenCount++;
+        long qualifier = 0;
+        boolean qualified = false;
+        while (reader.peek(end) == '.' && isIdentifierStart(reader.peek(end+1))) { //schema.tbl.col 取最后一级限定名作为表
+            qualifier = hash;
+            qualified = true;
+            start = end+1;
+            end = reader.identifierEnd(start);
+            hash = reader.icHash(start, end);
+        }
+        int tblIdx = qualified ? context.resolveTable(qualifier) : context.resolveSingleTable();
+        int colIdx = context.addColumn(tblIdx, start, end, hash);
+        switch (edgeState) {
+            case EDGE_NONE:
+                edgeLeft = colIdx;
+                edgeState = EDGE_LEFT;
+                break;
+            case EDGE_EQ:
+                edgeRight = colIdx;
+                edgeState = EDGE_RIGHT;
+                break;
+            default:
+                edgeState = EDGE_DIRTY;
+        }
+        if (colIdx >= 0 && edgeState == EDGE_LEFT && rangePredicate(scope, colIdx, end)) {
+            edgeState = EDGE_DIRTY;
+            predicateAtom(scope, SQLContext.PRED_RANGE, atomArg);
+            return true;
+        }
+        next = reader.skipBlank(end);
+        int wordEnd = reader.identifierEnd(next);
+        if (colIdx >= 0 && reader.icHash(next, wordEnd) == TokenHash.IN) {
+            int open = reader.skipBlank(wordEnd);
+            if (reader.peek(open) == '(' && inList(colIdx, open)) {
+                edgeState = EDGE_DIRTY;
+                predicateAtom(scope, SQLContext.PRED_IN, atomArg);
+                return true;
+            }
+        }
+        if (colIdx >= 0 && predBranch[scope] == BRANCH_EMPTY && equalPredicate(scope, colIdx, next)) {
+            edgeState = EDGE_DIRTY;
+            return true;
+        }
+        predicateDirty(scope);
+        reader.setPos(end);
+        return true;
+    }
+
+    /*
+    * col = 常量，常量之后必须是条件的结尾，只记录在谓词树中
+    */
+    private boolean equalPredicate(int scope, int colIdx, int pos) {
+        if (reader.peek(pos) != '=')
+            return false;
+        int start = reader.skipBlank(pos+1);
+        int valueEnd = literal(start);
+        if (valueEnd < 0 || !isConditionEnd(valueEnd))
+            return false;
+        tokenCount++;
+        int node = context.addPredicateNode(scopePredicate[scope], SQLContext.PRED_EQ, colIdx);
+        if (node >= 0)
+            context.setPredicateValue(node, literalType, start, valueEnd, literalLong);
+        predOperand[scope] = node;
+        predBranch[scope] = BRANCH_OPERAND;
+        reader.setPos(valueEnd);
+        return true;
+    }
+
+    /*
+    * col IN (常量, ...)：记录每个值的位置和类型，路由时每个分片只需要发送属于它的值；
+    * 列表中有非常量时放弃，按普通表达式继续解析
+    */
+    private boolean inList(int colIdx, int open) {
+        int first = context.getInValueCount();
+        int pos = open+1;
+        byte c;
+        while (true) {
+            int start = reader.skipBlank(pos);
+            pos = literal(start);
+            if (pos < 0) {
+                context.discardInValues(first);
+                return false;
+            }
+            context.addInValue(start, pos, literalType, literalLong);
+            pos = reader.skipBlank(pos);
+            c = reader.peek(pos);
+            if (c == ')')
+                break;
+            if (c != ',') {
+                context.discardInValues(first);
+                return false;
+            }
+            pos++;
+        }
+        tokenCount++;
+        atomArg = context.addInList(colIdx, first, open+1, pos);
+        reader.setPos(pos+1);
+        return true;
+    }
+
+    /*
+    * 解析 pos 开始的常量，返回结束位置，类型和整数值放在 literalType/literalLong 中；不是常量时返回-1
+    * 只接受字符串、? 和18位以内的整数，小数、0x十六进制、科学计数法都不当作常量
+    */
+    private int literal(int pos) {
+        byte c = reader.peek(pos);
+        switch (c) {
+            case '\'':
+            case '"':
+                literalType = SQLContext.IN_VALUE_STRING;
+                literalLong = 0;
+                return reader.quoteEnd(pos);
+            case '?':
+                literalType = SQLContext.IN_VALUE_PARAM;
+                literalLong = 0;
+                return pos+1;
+            default:
+                boolean negative = c == '-';
+                if (c == '-' || c == '+')
+                    c = reader.peek(++pos);
+                if (c < '0' || c > '9')
+                    return -1;
+                long value = 0;
+                int digits = 0;
+                while ((c = reader.peek(pos)) >= '0' && c <= '9' && digits++ < 18) {
+                    value = value*10+(c-'0');
+                    pos++;
+                }
+                if (c >= '0' && c <= '9' || c == '.' || isIdentifierStart(c))
+                    return -1;
+                literalType = SQLContext.IN_VALUE_LONG;
+                literalLong = negative ? -value : value;
+                return pos;
+        }
+    }
+
+    /*
+    * col > v、col >= v、col < v、col <= v、col BETWEEN a AND b，常量之后必须是条件的结尾（AND/OR、) 等），
+    * 记录为范围条件；同一个 AND 链中同一字段的多个范围在 SQLContext 中求交集
+    */
+    private boolean rangePredicate(int scope, int colIdx, int end) {
+        int pos = reader.skipBlank(end);
+        byte c = reader.peek(pos);
+        int flags;
+        int lowPos, lowEnd, highPos, highEnd;
+        long low = 0, high = 0;
+        if (c == '>' || c == '<') {
+            boolean eq = reader.peek(pos+1) == '=';
+            if (reader.peek(pos+1) == '>' || eq && reader.peek(pos+2) == '>') // <>、<=>
+                return false;
+            int start = reader.skipBlank(pos+(eq ? 2 : 1));
+            int valueEnd = literal(start);
+            if (valueEnd < 0 || literalType == SQLContext.IN_VALUE_PARAM || !isConditionEnd(valueEnd))
+                return false;
+            if (c == '>') {
+                flags = SQLContext.RANGE_HIGH_UNBOUNDED | (eq ? SQLContext.RANGE_LOW_INCLUSIVE : 0);
+                lowPos = start;
+                lowEnd = valueEnd;
+                low = literalLong;
+                highPos = highEnd = 0;
+            } else {
+                flags = SQLContext.RANGE_LOW_UNBOUNDED | (eq ? SQLContext.RANGE_HIGH_INCLUSIVE : 0);
+                highPos = start;
+                highEnd = valueEnd;
+                high = literalLong;
+                lowPos = lowEnd = 0;
+            }
+            if (literalType == SQLContext.IN_VALUE_STRING)
+                flags |= SQLContext.RANGE_STRING;
+            pos = valueEnd;
+        } else if ((c & 0xDF) == 'B' && reader.peek(pos+6) != 0) {
+            reader.setPos(pos);
+            boolean between = reader.isBetweenToken();
+            lowPos = reader.skipBlank(reader.getPos());
+            reader.setPos(end);
+            if (!between)
+                return false;
+            lowEnd = literal(lowPos);
+            if (lowEnd < 0 || literalType == SQLContext.IN_VALUE_PARAM)
+                return false;
+            byte lowType = literalType;
+            low = literalLong;
+            int and = reader.skipBlank(lowEnd);
+            int andEnd = reader.identifierEnd(and);
+            if (reader.icHash(and, andEnd) != TokenHash.AND)
+                return false;
+            highPos = reader.skipBlank(andEnd);
+            highEnd = literal(highPos);
+            if (highEnd < 0 || literalType != lowType || !isConditionEnd(highEnd))
+                return false;
+            high = literalLong;
+            flags = SQLContext.RANGE_LOW_INCLUSIVE | SQLContext.RANGE_HIGH_INCLUSIVE | (lowType == SQLContext.IN_VALUE_STRING ? SQLContext.RANGE_STRING : 0);
+            pos = highEnd;
+        } else {
+            return false;
+        }
+        if ((flags & SQLContext.RANGE_STRING) != 0) { //字符串边界不含引号
+            if ((flags & SQLContext.RANGE_LOW_UNBOUNDED) == 0) {
+                lowPos++;
+                lowEnd--;
+            }
+            if ((flags & SQLContext.RANGE_HIGH_UNBOUNDED) == 0) {
+                highPos++;
+                highEnd--;
             }
         }
+        tokenCount++;
+        atomArg = context.addRange(colIdx, scopeRangeStart[scope], flags, lowPos, lowEnd, low, highPos, highEnd, high);
+        reader.setPos(pos);
+        return true;
     }
 
+    //常量之后是条件的结尾
+    private boolean isConditionEnd(int pos) {
+        byte c = reader.peek(reader.skipBlank(pos));
+        return c == 0 || c == ')' || c == ';' || isIdentifierStart(c);
+    }
+
+    /*
+    * JOIN ... USING (col, ...)：左右两侧各记录一个字段，并按同名字段记录连接边
+    */
+    private void usingClause() {
+        int pos = reader.skipBlank(reader.getPos());
+        if (reader.peek(pos) != '(')
+            return;
+        int right = context.getUsingTable(context.getTableCount(), Integer.MAX_VALUE);
+        int left = right < 0 ? -1 : context.getUsingTable(right, context.getTablePos(right));
+        pos++;
+        using_loop:
+        while (true) {
+            pos = reader.skipBlank(pos);
+            switch (reader.peek(pos)) {
+                case ',':
+                    pos++;
+                    break;
+                case ')':
+                    pos++;
+                    break using_loop;
+                default:
+                    if (!isIdentifierStart(reader.peek(pos)))
+                        break using_loop;
+                    tokenCount++;
+                    int end = reader.identifierEnd(pos);
+                    long hash = reader.icHash(pos, end);
+                    context.addJoinEdge(context.addColumn(left, pos, end, hash), context.addColumn(right, pos, end, hash), onJoinType);
+                    pos = end;
+            }
+        }
+        reader.setPos(pos);
+    }
+
+    private void byList(boolean order) {
+        int pos = reader.skipBlank(reader.getPos());
+        int end = reader.identifierEnd(pos);
+        if (reader.icHash(pos, end) == TokenHash.BY)
+            byItems(order, end);
+    }
+
+    /*
+    * GROUP BY / ORDER BY 列表：每一项记录表达式的字节范围，ORDER BY 另外记录方向；
+    * 遇到 ) 或者后续子句的关键字时停在该位置，交还给 BASIC_PARSER 继续处理；
+    * 遇到子查询时该项不记录，子查询结束后根据 scopeClause 从下一项继续
+    */
+    private void byItems(boolean order, int pos) {
+        int end;
+        byte c;
+        int scope = context.getCurScope();
+        scopeClause[scope] = 0;
+        boolean more = true;
+        while (more) {
+            pos = reader.skipBlank(pos);
+            int start = pos;
+            int exprEnd = pos;
+            byte direction = SQLContext.ORDER_ASC;
+            more = false;
+            item_loop:
+            while ((c = reader.peek(pos)) != 0) {
+                switch (c) {
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                    case '\n':
+                        pos++;
+                        break;
+                    case ',':
+                        more = true;
+                        break item_loop;
+                    case ')':
+                    case ';':
+                        break item_loop;
+                    case '\'':
+                    case '"':
+                        pos = exprEnd = reader.quoteEnd(pos);
+                        break;
+                    case '(': {
+                        int next = reader.skipBlank(pos+1);
+                        if (reader.icHash(next, reader.identifierEnd(next)) == TokenHash.SELECT) { //子查询交给 BASIC_PARSER，这一项不记录
+                            scopeClause[scope] = order ? CLAUSE_ORDER_BY : CLAUSE_GROUP_BY;
+                            exprEnd = start;
+                            break item_loop;
+                        }
+                        pos = exprEnd = reader.parenEnd(pos);
+                        break;
+                    }
+                    default:
+                        if (isIdentifierStart(c)) {
+                            end = reader.identifierEnd(pos);
+                            long hash = reader.icHash(pos, end);
+                            if (reader.peek(reader.skipBlank(end)) == '(') { //函数调用
+                                byte kind = aggregateKind(hash);
+                                if (kind != 0)
+                                    aggregateFunction(kind, pos, end);
+                            } else if (hash == TokenHash.ASC || hash == TokenHash.DESC) {
+                                direction = hash == TokenHash.DESC ? SQLContext.ORDER_DESC : SQLContext.ORDER_ASC;
+                                pos = end;
+                                break;
+                            } else if (hash == TokenHash.WITH || isTableFollowKeyword(hash)) { //LIMIT、HAVING、WITH ROLLUP 等
+                                break item_loop;
+                            }
+                            pos = exprEnd = end;
+                        } else if (c >= '0' && c <= '9') {
+                            pos = exprEnd = reader.identifierEnd(pos);
+                        } else {
+                            pos = exprEnd = pos+1;
+                        }
+                }
+            }
+            if (exprEnd > start) {
+                tokenCount++;
+                addByItem(order, start, exprEnd, direction);
+            }
+            if (more)
+                pos++;
+        }
+        reader.setPos(pos);
+    }
 
-    void QuoteString() {
+    private void addByItem(boolean order, int start, int end, byte direction) {
+        if (order)
+            context.addOrderBy(start, end, direction);
+        else
+            context.addGroupBy(start, end);
+    }
+
+    /*
+    * 记录聚合函数，start/nameEnd 为函数名的范围，表达式一直到对应的 ) 为止；
+    * 在 select 列表中的记下是第几项，HAVING、ORDER BY 中的记为-1
+    */
+    private void aggregateFunction(byte kind, int start, int nameEnd) {
+        context.setFeature(SQLContext.FEATURE_AGGREGATE);
+        int scope = context.getCurScope();
+        int argStart = reader.skipBlank(reader.skipBlank(nameEnd)+1);
+        if (reader.icHash(argStart, reader.identifierEnd(argStart)) == TokenHash.DISTINCT)
+            kind |= SQLContext.AGG_DISTINCT;
+        int item = scopeClause[scope] == CLAUSE_SELECT ? scopeSelectItem[scope] : -1;
+        context.addAggregate(kind, item, start, reader.parenEnd(nameEnd));
+    }
+
+    private static byte aggregateKind(long hash) {
+        if (hash == TokenHash.COUNT) return SQLContext.AGG_COUNT;
+        if (hash == TokenHash.SUM) return SQLContext.AGG_SUM;
+        if (hash == TokenHash.MIN) return SQLContext.AGG_MIN;
+        if (hash == TokenHash.MAX) return SQLContext.AGG_MAX;
+        if (hash == TokenHash.AVG) return SQLContext.AGG_AVG;
+        if (hash == TokenHash.GROUP_CONCAT) return SQLContext.AGG_GROUP_CONCAT;
+        return 0;
+    }
+
+    private void predicateFunction(long hash, int start, int end) {
+        byte kind = aggregateKind(hash);
+        if (kind != 0) {
+            aggregateFunction(kind, start, end);
+        } else if (hash == TokenHash.GET_LOCK) {
+            context.setSessionAffinity(SQLContext.AFFINITY_GET_LOCK);
+            context.setMasterReason(SQLContext.MASTER_SIDE_EFFECT);
+        } else if (hash == TokenHash.RELEASE_LOCK || hash == TokenHash.RELEASE_ALL_LOCKS) {
+            context.setMasterReason(SQLContext.MASTER_SIDE_EFFECT);
+        } else if (hash == TokenHash.LAST_INSERT_ID) {
+            context.setSessionAffinity(SQLContext.AFFINITY_LAST_INSERT_ID);
+        } else if (hash == TokenHash.FOUND_ROWS) {
+            context.setSessionAffinity(SQLContext.AFFINITY_FOUND_ROWS);
+        }
+    }
+
+    /*
+    * ON 只有在 DML 的 JOIN 中才是连接条件，排除 GRANT ... ON 之类的写法；
+    * ON DUPLICATE KEY UPDATE 直接跳过，否则后面的 UPDATE 会被当成新的语句
+    */
+    private boolean isJoinCondition() {
+        int next = reader.skipBlank(reader.getPos());
+        if (reader.icHash(next, reader.identifierEnd(next)) == TokenHash.DUPLICATE) {
+            next = reader.skipBlank(reader.identifierEnd(next)); //KEY
+            next = reader.skipBlank(reader.identifierEnd(next)); //UPDATE
+            reader.setPos(reader.identifierEnd(next));
+            return false;
+        }
+        byte type = context.getSQLType();
+        return type == SQLContext.SELECT_SQL || type == SQLContext.UPDATE_SQL || type == SQLContext.DELETE_SQL ||
+                type == SQLContext.INSERT_SQL || type == SQLContext.REPLACE_SQL;
+    }
+
+    private static boolean isIdentifierStart(byte c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '$' || c == '`' || c < 0;
+    }
+
+    private static boolean isTableFollowKeyword(long hash) {
+        return Arrays.binarySearch(tableFollowKeywords, hash) >= 0;
+    }
+
+    void QuoteString() { //没有结束引号时停在结尾之后
         byte end = reader.cur();
-        while (reader.hasNext()) {
-            if (reader.nextChar() == end) {
+        byte c;
+        while ((c = reader.nextChar()) != end) {
+            if (c == '\\')
                 reader.move();
+            else if (c == SQLReader.SENTINEL && reader.atEnd())
                 return;
-            } else if (reader.cur() == '\\') {
-                reader.move();
-            }
         }
+        reader.move();
     }
 
 
@@ -927,6 +2081,13 @@ public class SQLParser {
 //        return SQLLength;
 //    }
 
+    /*
+    * 设置后按 KeywordProfile 的采样间隔统计关键字出现次数，null 为关闭
+    */
+    public void setProfile(KeywordProfile profile) {
+        this.profile = profile;
+    }
+
     public int getResultSize() {
         return resultSize;
     }
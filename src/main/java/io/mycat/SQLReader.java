@@ -1,8 +1,14 @@
 package io.mycat;
 
+import java.nio.ByteOrder;
+
 /**
  * Created by Kaiz on 2017/2/6.
  * 判断需要忽略大小写时，需要调用 ic 为前缀的接口，ic 是 ignore case 的简写
+ * 越过 sql 结尾的读取都返回 SENTINEL：哨兵模式下 sql 后面跟着 SENTINEL_PADDING 个 SENTINEL，直接读数组；
+ * 没有预留哨兵区的 sql 直接在原数组上解析，由 at()/getLong() 在数组结尾处按 SENTINEL 返回，不复制；
+ * 关键字逐字节比较时读到结尾之后会在第一个哨兵处失败；逐字节跳过字符串、注释的循环只在读到哨兵时才检查是否到了结尾（sql 中也可能有0字节）
+ * 关键字的剩余部分用 icNextIs 一次比较最多8个字节：读出一个long，与 0xDFDF... 掩码后和打包好的大写关键字比较
  */
 
 
@@ -15,27 +21,54 @@ final class SQLReader {
     private int tblPos;
     private int tblSize;
     private final byte ICMask = (byte) 0xDF;//ignore case mask;
-
+    static final byte SENTINEL = 0;
+    static final int SENTINEL_PADDING = 8; //readNumber、isMultiLineCommentEndToken 等最多越过结尾读这么多字节
+    private static final long IC_MASK_LONG = 0xDFDFDFDFDFDFDFDFL;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    /*
+    * 没有预留哨兵区的sql：直接在 src 上解析，越过结尾的读取按 SENTINEL 处理
+    */
     final void init(byte[] src) {
+        reset(src, src.length);
+    }
+
+    /*
+    * 哨兵模式：src 中 [length, length+SENTINEL_PADDING) 必须都是 SENTINEL，直接在 src 上解析，不复制
+    */
+    final void init(byte[] src, int length) {
+        if (src.length < length+SENTINEL_PADDING) //icNextIs 会直接读8个字节
+            throw new IllegalArgumentException("sentinel padding required, length : " + length + ", buffer length : " + src.length);
+        reset(src, length);
+    }
+
+    private void reset(byte[] src, int length) {
         pos = 0;
         this.sql = src;
-        sqlLength = this.sql.length - 1;
+        sqlLength = length - 1;
         sqlHash = 0;
         tblHash = 0;
         tblPos = 0;
         tblSize = 0;
     }
 
+    /*
+    * 读取 i 处的字节，数组结尾之后返回 SENTINEL；哨兵模式下不会读到数组结尾，这个比较和数组本身的越界检查是同一个，JIT 会合并
+    */
+    private byte at(int i) {
+        return i < sql.length ? sql[i] : SENTINEL;
+    }
+
     final byte cur() {
-        return sql[pos];
+        return at(pos);
     }
 
     final byte icCur() {
-        return (byte) (sql[pos] & ICMask);
+        return (byte) (at(pos) & ICMask);
     }
 
     final boolean icCurCharIs(char c) {
-        return (byte) (sql[pos] & ICMask) == c;
+        return (byte) (at(pos) & ICMask) == c;
     }
 
     final void move() {
@@ -43,25 +76,106 @@ final class SQLReader {
     }
 
     final byte nextChar() {
-        byte c = sql[++pos];
+        byte c = at(++pos);
         return c;
     }
 
     final byte icNextChar() {
-        byte c = (byte) (sql[++pos] & ICMask);
+        byte c = (byte) (at(++pos) & ICMask);
         return c;
     }
 
     final boolean icNextCharIs(char c) {
-        byte s = (byte) (sql[++pos] & ICMask);
+        byte s = (byte) (at(++pos) & ICMask);
         return s == c;
     }
 
     final boolean nextCharIs(char c) {
-        byte s = sql[++pos];
+        byte s = at(++pos);
         return s == c;
     }
 
+    /*
+    * 把最多8个大写字符按 getLong 的字节序打包，第一个字符在最低字节
+    */
+    static long keyword(String chars) {
+        long value = 0;
+        for (int i = chars.length()-1; i >= 0; i--)
+            value = value << 8 | (chars.charAt(i) & 0xFF);
+        return value;
+    }
+
+    //小端序读取 [pos, pos+8)，哨兵模式下 pos <= sqlLength+1 时都在哨兵区以内；没有哨兵区时结尾附近逐字节读
+    final long getLong(int pos) {
+        if (pos+8 > sql.length)
+            return tailLong(pos);
+        if (UnsafeReader.UNSAFE != null) {
+            long value = UnsafeReader.UNSAFE.getLong(sql, UnsafeReader.BYTE_ARRAY_OFFSET+pos);
+            return LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+        }
+        long value = 0;
+        for (int i = pos+7; i >= pos; i--)
+            value = value << 8 | (sql[i] & 0xFF);
+        return value;
+    }
+
+    private long tailLong(int pos) {
+        long value = 0;
+        for (int i = pos+7; i >= pos; i--)
+            value = value << 8 | (at(i) & 0xFF);
+        return value;
+    }
+
+    /*
+    * 忽略大小写比较接下来的 n（1~8）个字符，keyword 由 keyword() 生成；与连续 n 次 icNextCharIs 等价：
+    * 成功时停在最后一个字符上，失败时停在第一个不同的字符上
+    */
+    final boolean icNextIs(long keyword, int n) {
+        long diff = (getLong(pos+1) & (IC_MASK_LONG >>> ((8-n)<<3))) ^ keyword;
+        if (diff == 0) {
+            pos += n;
+            return true;
+        }
+        pos += 1+(Long.numberOfTrailingZeros(diff)>>>3);
+        return false;
+    }
+
+    /*
+    * pos 上是 BasicTokenTable 中某个关键字族的首字母，忽略大小写比较候选关键字的全部字符以及之后的一个字符（结束条件）；
+    * 成功时返回关键字下标，pos 停在关键字之后的字符上，与 icNextIs 之后再 nextIsBlank/nextIsFuncStart/nextIsStatementEnd 一致；
+    * 失败时返回 NOT_FOUND，pos 不变
+    */
+    final int basicToken() {
+        int second = BasicTokenTable.SECOND[(BasicTokenTable.FIRST_BYTE[sql[pos]&0xFF]-BasicTokenTable.FAMILY)<<5 | (at(pos+1)&0x1F)];
+        for (int id = second >>> 8, end = id+(second&0xFF); id < end; id++) {
+            int next = pos+BasicTokenTable.INFO[id<<1];
+            if (next <= sqlLength+1 && icMatches(id*3, next-pos) && isTerminator(BasicTokenTable.INFO[(id<<1)+1], next)) { //单词超出 sql 时不比较，保证 getLong 不会读出哨兵区
+                pos = next;
+                return id;
+            }
+        }
+        return BasicTokenTable.NOT_FOUND;
+    }
+
+    private boolean icMatches(int k, int length) {
+        return (getLong(pos) & BasicTokenTable.MASKS[k]) == BasicTokenTable.CHARS[k] &&
+                (length <= 8 || (getLong(pos+8) & BasicTokenTable.MASKS[k+1]) == BasicTokenTable.CHARS[k+1]) &&
+                (length <= 16 || (getLong(pos+16) & BasicTokenTable.MASKS[k+2]) == BasicTokenTable.CHARS[k+2]);
+    }
+
+    private boolean isTerminator(byte terminator, int next) {
+        byte c = at(next);
+        boolean blank = c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        switch (terminator) {
+            case BasicTokenTable.TERM_BLANK:
+                return blank || next > sqlLength;
+            case BasicTokenTable.TERM_FUNC:
+                return next <= sqlLength && (blank || c == '(');
+            default:
+                return blank || c == ';' || next > sqlLength;
+        }
+    }
+
     final void readTblName() {
         pos++;
     }
@@ -70,28 +184,133 @@ final class SQLReader {
         return pos < sqlLength;
     }
 
+    final boolean atEnd() { //读到 SENTINEL 时调用，区分结尾和 sql 中的0字节
+        return pos > sqlLength;
+    }
+
+    final void toLast() { //回到最后一个字符上，和 hasNext() 结束循环时的位置一致
+        pos = sqlLength;
+    }
+
+    //isXxxToken 中关键字除第一个字符以外的部分，第一个字符已经由调用方匹配
+    private static final long SELECT_REST = keyword("LECT");
+    private static final long SHOW_REST = keyword("OW");
+    private static final long FROM_REST = keyword("ROM");
+    private static final long JOIN_REST = keyword("OIN");
+    private static final long CREATE_REST = keyword("REATE");
+    private static final long TRIGGER_REST = keyword("RIGGER");
+    private static final long LOCK_REST = keyword("OCK");
+    private static final long BETWEEN_REST = keyword("ETWEEN");
+    private static final long CLOSE_REST = keyword("LOSE");
+    private static final long MINUS_REST = keyword("INUS");
+    private static final long TABLE_REST = keyword("ABLE");
+    private static final long WHEN_REST = keyword("HEN");
+    private static final long EXPLAIN_REST = keyword("XPLAIN");
+    private static final long ELSE_REST = keyword("LSE");
+    private static final long INNER_REST = keyword("NNER");
+    private static final long CAST_REST = keyword("AST");
+    private static final long LEFT_REST = keyword("EFT");
+    private static final long DISTINCT_REST = keyword("ISTINCT");
+    private static final long WHERE_REST = keyword("HERE");
+    private static final long FUNCTION_REST = keyword("UNCTION");
+    private static final long CASE_REST = keyword("ASE");
+    private static final long OUT_REST = keyword("UT");
+    private static final long DATABASE_REST = keyword("ATABASE");
+    private static final long CHECK_REST = keyword("HECK");
+    private static final long THEN_REST = keyword("HEN");
+    private static final long XOR_REST = keyword("OR");
+    private static final long KEY_REST = keyword("EY");
+    private static final long ALTER_REST = keyword("LTER");
+    private static final long INTO_REST = keyword("NTO");
+    private static final long SET_REST = keyword("ET");
+    private static final long REPEAT_REST = keyword("EPEAT");
+    private static final long CONSTRAINT_REST = keyword("ONSTRAIN");
+    private static final long CONSTRAINT_REST2 = keyword("T");
+    private static final long COMMENT_REST = keyword("OMMENT");
+    private static final long ASC_REST = keyword("SC");
+    private static final long GROUP_REST = keyword("ROUP");
+    private static final long ORDER_REST = keyword("RDER");
+    private static final long DELETE_REST = keyword("ELETE");
+    private static final long RIGHT_REST = keyword("IGHT");
+    private static final long UPDATE_REST = keyword("PDATE");
+    private static final long VALUES_REST = keyword("ALUES");
+    private static final long INTERVAL_REST = keyword("NTERVAL");
+    private static final long FETCH_REST = keyword("ETCH");
+    private static final long PROCEDURE_REST = keyword("ROCEDURE");
+    private static final long COMPUTE_REST = keyword("OMPUTE");
+    private static final long REVOKE_REST = keyword("EVOKE");
+    private static final long USE_REST = keyword("SE");
+    private static final long OPEN_REST = keyword("PEN");
+    private static final long UNION_REST = keyword("NION");
+    private static final long TRUNCATE_REST = keyword("RUNCATE");
+    private static final long CURSOR_REST = keyword("URSOR");
+    private static final long ALL_REST = keyword("LL");
+    private static final long COLUMN_REST = keyword("OLUMN");
+    private static final long LOOP_REST = keyword("OOP");
+    private static final long VIEW_REST = keyword("IEW");
+    private static final long DESC_REST = keyword("ESC");
+    private static final long INDEX_REST = keyword("NDEX");
+    private static final long REPLACE_REST = keyword("EPLACE");
+    private static final long DISABLE_REST = keyword("ISABLE");
+    private static final long NULL_REST = keyword("ULL");
+    private static final long FOR_REST = keyword("OR");
+    private static final long UNIQUE_REST = keyword("NIQUE");
+    private static final long ITERATE_REST = keyword("TERATE");
+    private static final long ENABLE_REST = keyword("NABLE");
+    private static final long EXCEPT_REST = keyword("XCEPT");
+    private static final long TABLESPACE_REST = keyword("ABLESPAC");
+    private static final long FULL_REST = keyword("ULL");
+    private static final long NOT_REST = keyword("OT");
+    private static final long LIKE_REST = keyword("IKE");
+    private static final long AND_REST = keyword("ND");
+    private static final long END_REST = keyword("ND");
+    private static final long INSERT_REST = keyword("NSERT");
+    private static final long HAVING_REST = keyword("AVING");
+    private static final long INOUT_REST = keyword("NOUT");
+    private static final long ANY_REST = keyword("NY");
+    private static final long DROP_REST = keyword("ROP");
+    private static final long SOME_REST = keyword("OME");
+    private static final long FOREIGN_REST = keyword("OREIGN");
+    private static final long SCHEMA_REST = keyword("CHEMA");
+    private static final long SEQUENCE_REST = keyword("EQUENCE");
+    private static final long LEAVE_REST = keyword("EAVE");
+    private static final long OUTER_REST = keyword("UTER");
+    private static final long EXISTS_REST = keyword("XISTS");
+    private static final long PRIMARY_REST = keyword("RIMARY");
+    private static final long INTERSECT_REST = keyword("NTERSECT");
+    private static final long USER_REST = keyword("SER");
+    private static final long UNTIL_REST = keyword("NTIL");
+    private static final long ESCAPE_REST = keyword("SCAPE");
+    private static final long WITH_REST = keyword("ITH");
+    private static final long OVER_REST = keyword("VER");
+    private static final long GRANT_REST = keyword("RANT");
+    private static final long DECLARE_REST = keyword("ECLARE");
+    private static final long WHILE_REST = keyword("HILE");
+    private static final long DEFAULT_REST = keyword("EFAULT");
+    private static final long REFERENCES_REST = keyword("EFERENCE");
+
     final boolean isSelectToken() {
-        return icNextCharIs('L') && icNextCharIs('E') && icNextCharIs('C') && icNextCharIs('T') &&
+        return icNextIs(SELECT_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isShowToken() {
-        return icNextCharIs('O') && icNextCharIs('W') &&
+        return icNextIs(SHOW_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isFromToken() {
-        return icNextCharIs('R') && icNextCharIs('O') && icNextCharIs('M') &&
+        return icNextIs(FROM_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isJoinToken() {
-        return icNextCharIs('O') && icNextCharIs('I') && icNextCharIs('N') &&
+        return icNextIs(JOIN_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isMultiLineCommentEndToken() {
-        return nextCharIs('*') && sql[pos + 1] == '/';
+        return nextCharIs('*') && at(pos + 1) == '/';
     }
 
 
@@ -99,18 +318,18 @@ final class SQLReader {
 
     }
 
-    final void readNumber() {
+    final int readNumber() { //返回整数部分的值，小数和指数部分只跳过
         int pos = this.pos;
         int startFlag = pos;
-        byte ch = sql[pos];
+        byte ch = at(pos);
         boolean has = true;
         if (ch == '-' || ch == '+') {
             pos += 1;
-            ch = sql[pos];
+            ch = at(pos);
         }
         while ('0' <= ch && ch <= '9' && has) {
             if (pos <= sqlLength) {
-                ch = sql[pos];
+                ch = at(pos);
                 ++pos;
             } else {
                 has = false;
@@ -118,17 +337,16 @@ final class SQLReader {
         }
         boolean isDouble = false;
         if ((ch == '.') && has) {
-            if (sql[pos + 1] == '.') {
+            if (at(pos + 1) == '.') {
                 this.pos = pos - 1;
-                limitNumberCollector(startFlag, this.pos);
-                return;
+                return limitNumberCollector(startFlag, this.pos);
             }
             pos += 2;
-            ch = sql[pos];
+            ch = at(pos);
             isDouble = true;
             while ('0' <= ch && ch <= '9' && has) {
                 if (pos <= sqlLength) {
-                    ch = sql[pos];
+                    ch = at(pos);
                     ++pos;
                 } else {
                     has = false;
@@ -137,14 +355,14 @@ final class SQLReader {
         }
         if ((ch == 'e' || ch == 'E') && has) {
             pos += 2;
-            ch = sql[pos];
+            ch = at(pos);
             if (ch == '+' || ch == '-') {
                 pos += 2;
-                ch = sql[pos];
+                ch = at(pos);
             }
             while (('0' <= ch && ch <= '9') && has) {
                 if (pos <= sqlLength) {
-                    ch = sql[pos];
+                    ch = at(pos);
                     ++pos;
                 } else {
                     has = false;
@@ -158,15 +376,17 @@ final class SQLReader {
         } else {
             //LITERAL_INT;
         }
-        limitNumberCollector(startFlag, this.pos);
-    }
-
-    final void limitParamMarkerCollector() {
-        System.out.println("?");
+        return limitNumberCollector(startFlag, this.pos);
     }
 
-    final void limitNumberCollector(int start, int end) {
-        System.out.println(new String(sql, start, end - start));
+    final int limitNumberCollector(int start, int end) {
+        long value = 0;
+        byte ch;
+        while (start < end && '0' <= (ch = at(start)) && ch <= '9' && value <= Integer.MAX_VALUE) {
+            value = value * 10 + (ch - '0');
+            start++;
+        }
+        return value > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) value;
     }
 
     final void findNextToken() {
@@ -177,73 +397,174 @@ final class SQLReader {
         return pos;
     }
 
+    final void setPos(int pos) {
+        this.pos = pos;
+    }
+
+    final boolean hasCur() { //hasNext 不处理最后一个字符，谓词解析需要处理到结尾
+        return pos <= sqlLength;
+    }
+
+    final byte peek(int pos) { //越界返回0
+        return pos <= sqlLength ? sql[pos] : 0;
+    }
+
+    final int skipBlank(int pos) {
+        while (pos <= sqlLength && (sql[pos] == ' ' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n'))
+            pos++;
+        return pos;
+    }
+
+    /*
+    * 返回从start开始的标识符结束位置（不包含），`xxx` 形式的包括两侧反引号
+    */
+    final int identifierEnd(int start) {
+        byte c;
+        if (start > sqlLength)
+            return start;
+        if (sql[start] == '`') {
+            while (++start <= sqlLength && sql[start] != '`') ;
+            return start > sqlLength ? start : start+1;
+        }
+        while (start <= sqlLength && ((c = sql[start]) >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '$' || c < 0))
+            start++;
+        return start;
+    }
+
+    /*
+    * pos 开始（可以有空白）的括号表达式的结束位置（不包含），跳过其中的字符串；pos 处不是 ( 时原样返回
+    */
+    final int parenEnd(int pos) {
+        int i = skipBlank(pos);
+        if (i > sqlLength || sql[i] != '(')
+            return pos;
+        int depth = 0;
+        for (; i <= sqlLength; i++) {
+            switch (sql[i]) {
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    if (--depth == 0)
+                        return i+1;
+                    break;
+                case '\'':
+                case '"':
+                case '`':
+                    i = quoteEnd(i)-1;
+                    break;
+            }
+        }
+        return i;
+    }
+
+    /*
+    * 从引号开始的字符串结束位置（不包含），支持反斜杠转义和双写引号
+    */
+    final int quoteEnd(int pos) {
+        byte quote = sql[pos];
+        while (++pos <= sqlLength) {
+            if (sql[pos] == '\\' && quote != '`') {
+                pos++;
+            } else if (sql[pos] == quote) {
+                if (pos+1 <= sqlLength && sql[pos+1] == quote)
+                    pos++;
+                else
+                    return pos+1;
+            }
+        }
+        return pos;
+    }
+
+    final int skipChar(int pos, char c) {
+        while (pos <= sqlLength && sql[pos] == c)
+            pos++;
+        return pos;
+    }
+
+    final long icHash(int start, int end) {
+        return TokenHash.hash(sql, start, end);
+    }
+
     final boolean nextIsBlank() {
-        return (sql[++pos] == ' ' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n');
+        return ++pos > sqlLength || (sql[pos] == ' ' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n'); //BEGIN、COMMIT之类的语句常常位于sql末尾
+    }
+
+    final boolean nextIsStatementEnd() { //空白、; 或者sql末尾
+        return ++pos > sqlLength || (sql[pos] == ' ' || sql[pos] == ';' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n');
+    }
+
+    final boolean nextIsClauseEnd() { //空白、;、) 或者sql末尾，子查询中的 FOR UPDATE 之后可能直接是 )
+        return ++pos > sqlLength || (sql[pos] == ' ' || sql[pos] == ';' || sql[pos] == ')' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n');
+    }
+
+    final boolean nextIsFuncStart() { //函数名之后是 ( ，mysql 在 IGNORE_SPACE 下也允许中间有空格
+        return ++pos <= sqlLength && (sql[pos] == '(' || sql[pos] == ' ' || sql[pos] == '\t' || sql[pos] == '\r' || sql[pos] == '\n');
     }
 
     ////////////////////////////////////////////////
     final boolean isCreateToken() {
-        return icNextCharIs('R') && icNextCharIs('E') && icNextCharIs('A') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(CREATE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isTriggerToken() {
-        return icNextCharIs('R') && icNextCharIs('I') && icNextCharIs('G') && icNextCharIs('G') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(TRIGGER_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isLockToken() {
-        return icNextCharIs('O') && icNextCharIs('C') && icNextCharIs('K') &&
+        return icNextIs(LOCK_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isBetweenToken() {
-        return icNextCharIs('E') && icNextCharIs('T') && icNextCharIs('W') && icNextCharIs('E') && icNextCharIs('E') && icNextCharIs('N') &&
+        return icNextIs(BETWEEN_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isCloseToken() {
-        return icNextCharIs('L') && icNextCharIs('O') && icNextCharIs('S') && icNextCharIs('E') &&
+        return icNextIs(CLOSE_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isMinusToken() {
-        return icNextCharIs('I') && icNextCharIs('N') && icNextCharIs('U') && icNextCharIs('S') &&
+        return icNextIs(MINUS_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isTableToken() {
-        return icNextCharIs('A') && icNextCharIs('B') && icNextCharIs('L') && icNextCharIs('E') &&
+        return icNextIs(TABLE_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isWhenToken() {
-        return icNextCharIs('H') && icNextCharIs('E') && icNextCharIs('N') &&
+        return icNextIs(WHEN_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isExplainToken() {
-        return icNextCharIs('X') && icNextCharIs('P') && icNextCharIs('L') && icNextCharIs('A') && icNextCharIs('I') && icNextCharIs('N') &&
+        return icNextIs(EXPLAIN_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isElseToken() {
-        return icNextCharIs('L') && icNextCharIs('S') && icNextCharIs('E') &&
+        return icNextIs(ELSE_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isInnerToken() {
-        return icNextCharIs('N') && icNextCharIs('N') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(INNER_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isCastToken() {
-        return icNextCharIs('A') && icNextCharIs('S') && icNextCharIs('T') &&
+        return icNextIs(CAST_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isLeftToken() {
-        return icNextCharIs('E') && icNextCharIs('F') && icNextCharIs('T') &&
+        return icNextIs(LEFT_REST, 3) &&
                 nextIsBlank();
     }
 
@@ -253,7 +574,7 @@ final class SQLReader {
     }
 
     final boolean isDistinctToken() {
-        return icNextCharIs('I') && icNextCharIs('S') && icNextCharIs('T') && icNextCharIs('I') && icNextCharIs('N') && icNextCharIs('C') && icNextCharIs('T') &&
+        return icNextIs(DISTINCT_REST, 7) &&
                 nextIsBlank();
     }
 
@@ -263,22 +584,22 @@ final class SQLReader {
     }
 
     final boolean isWhereToken() {
-        return icNextCharIs('H') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('E') &&
+        return icNextIs(WHERE_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isFunctionToken() {
-        return icNextCharIs('U') && icNextCharIs('N') && icNextCharIs('C') && icNextCharIs('T') && icNextCharIs('I') && icNextCharIs('O') && icNextCharIs('N') &&
+        return icNextIs(FUNCTION_REST, 7) &&
                 nextIsBlank();
     }
 
     final boolean isCaseToken() {
-        return icNextCharIs('A') && icNextCharIs('S') && icNextCharIs('E') &&
+        return icNextIs(CASE_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isOutToken() {
-        return icNextCharIs('U') && icNextCharIs('T') &&
+        return icNextIs(OUT_REST, 2) &&
                 nextIsBlank();
     }
 
@@ -288,77 +609,77 @@ final class SQLReader {
     }
 
     final boolean isDatabaseToken() {
-        return icNextCharIs('A') && icNextCharIs('T') && icNextCharIs('A') && icNextCharIs('B') && icNextCharIs('A') && icNextCharIs('S') && icNextCharIs('E') &&
+        return icNextIs(DATABASE_REST, 7) &&
                 nextIsBlank();
     }
 
     final boolean isCheckToken() {
-        return icNextCharIs('H') && icNextCharIs('E') && icNextCharIs('C') && icNextCharIs('K') &&
+        return icNextIs(CHECK_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isThenToken() {
-        return icNextCharIs('H') && icNextCharIs('E') && icNextCharIs('N') &&
+        return icNextIs(THEN_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isXorToken() {
-        return icNextCharIs('O') && icNextCharIs('R') &&
+        return icNextIs(XOR_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isKeyToken() {
-        return icNextCharIs('E') && icNextCharIs('Y') &&
+        return icNextIs(KEY_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isAlterToken() {
-        return icNextCharIs('L') && icNextCharIs('T') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(ALTER_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isIntoToken() {
-        return icNextCharIs('N') && icNextCharIs('T') && icNextCharIs('O') &&
+        return icNextIs(INTO_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isSetToken() {
-        return icNextCharIs('E') && icNextCharIs('T') &&
+        return icNextIs(SET_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isRepeatToken() {
-        return icNextCharIs('E') && icNextCharIs('P') && icNextCharIs('E') && icNextCharIs('A') && icNextCharIs('T') &&
+        return icNextIs(REPEAT_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isConstraintToken() {
-        return icNextCharIs('O') && icNextCharIs('N') && icNextCharIs('S') && icNextCharIs('T') && icNextCharIs('R') && icNextCharIs('A') && icNextCharIs('I') && icNextCharIs('N') && icNextCharIs('T') &&
+        return icNextIs(CONSTRAINT_REST, 8) && icNextIs(CONSTRAINT_REST2, 1) &&
                 nextIsBlank();
     }
 
     final boolean isCommentToken() {
-        return icNextCharIs('O') && icNextCharIs('M') && icNextCharIs('M') && icNextCharIs('E') && icNextCharIs('N') && icNextCharIs('T') &&
+        return icNextIs(COMMENT_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isAscToken() {
-        return icNextCharIs('S') && icNextCharIs('C') &&
+        return icNextIs(ASC_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isGroupToken() {
-        return icNextCharIs('R') && icNextCharIs('O') && icNextCharIs('U') && icNextCharIs('P') &&
+        return icNextIs(GROUP_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isOrderToken() {
-        return icNextCharIs('R') && icNextCharIs('D') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(ORDER_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isDeleteToken() {
-        return icNextCharIs('E') && icNextCharIs('L') && icNextCharIs('E') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(DELETE_REST, 5) &&
                 nextIsBlank();
     }
 
@@ -368,52 +689,52 @@ final class SQLReader {
     }
 
     final boolean isRightToken() {
-        return icNextCharIs('I') && icNextCharIs('G') && icNextCharIs('H') && icNextCharIs('T') &&
+        return icNextIs(RIGHT_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isUpdateToken() {
-        return icNextCharIs('P') && icNextCharIs('D') && icNextCharIs('A') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(UPDATE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isValuesToken() {
-        return icNextCharIs('A') && icNextCharIs('L') && icNextCharIs('U') && icNextCharIs('E') && icNextCharIs('S') &&
+        return icNextIs(VALUES_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isIntervalToken() {
-        return icNextCharIs('N') && icNextCharIs('T') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('V') && icNextCharIs('A') && icNextCharIs('L') &&
+        return icNextIs(INTERVAL_REST, 7) &&
                 nextIsBlank();
     }
 
     final boolean isFetchToken() {
-        return icNextCharIs('E') && icNextCharIs('T') && icNextCharIs('C') && icNextCharIs('H') &&
+        return icNextIs(FETCH_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isProcedureToken() {
-        return icNextCharIs('R') && icNextCharIs('O') && icNextCharIs('C') && icNextCharIs('E') && icNextCharIs('D') && icNextCharIs('U') && icNextCharIs('R') && icNextCharIs('E') &&
+        return icNextIs(PROCEDURE_REST, 8) &&
                 nextIsBlank();
     }
 
     final boolean isComputeToken() {
-        return icNextCharIs('O') && icNextCharIs('M') && icNextCharIs('P') && icNextCharIs('U') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(COMPUTE_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isRevokeToken() {
-        return icNextCharIs('E') && icNextCharIs('V') && icNextCharIs('O') && icNextCharIs('K') && icNextCharIs('E') &&
+        return icNextIs(REVOKE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isUseToken() {
-        return icNextCharIs('S') && icNextCharIs('E') &&
+        return icNextIs(USE_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isOpenToken() {
-        return icNextCharIs('P') && icNextCharIs('E') && icNextCharIs('N') &&
+        return icNextIs(OPEN_REST, 3) &&
                 nextIsBlank();
     }
 
@@ -423,32 +744,32 @@ final class SQLReader {
     }
 
     final boolean isUnionToken() {
-        return icNextCharIs('N') && icNextCharIs('I') && icNextCharIs('O') && icNextCharIs('N') &&
+        return icNextIs(UNION_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isTruncateToken() {
-        return icNextCharIs('R') && icNextCharIs('U') && icNextCharIs('N') && icNextCharIs('C') && icNextCharIs('A') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(TRUNCATE_REST, 7) &&
                 nextIsBlank();
     }
 
     final boolean isCursorToken() {
-        return icNextCharIs('U') && icNextCharIs('R') && icNextCharIs('S') && icNextCharIs('O') && icNextCharIs('R') &&
+        return icNextIs(CURSOR_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isAllToken() {
-        return icNextCharIs('L') && icNextCharIs('L') &&
+        return icNextIs(ALL_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isColumnToken() {
-        return icNextCharIs('O') && icNextCharIs('L') && icNextCharIs('U') && icNextCharIs('M') && icNextCharIs('N') &&
+        return icNextIs(COLUMN_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isLoopToken() {
-        return icNextCharIs('O') && icNextCharIs('O') && icNextCharIs('P') &&
+        return icNextIs(LOOP_REST, 3) &&
                 nextIsBlank();
     }
 
@@ -458,142 +779,142 @@ final class SQLReader {
     }
 
     final boolean isViewToken() {
-        return icNextCharIs('I') && icNextCharIs('E') && icNextCharIs('W') &&
+        return icNextIs(VIEW_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isDescToken() {
-        return icNextCharIs('E') && icNextCharIs('S') && icNextCharIs('C') &&
+        return icNextIs(DESC_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isIndexToken() {
-        return icNextCharIs('N') && icNextCharIs('D') && icNextCharIs('E') && icNextCharIs('X') &&
+        return icNextIs(INDEX_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isReplaceToken() {
-        return icNextCharIs('E') && icNextCharIs('P') && icNextCharIs('L') && icNextCharIs('A') && icNextCharIs('C') && icNextCharIs('E') &&
+        return icNextIs(REPLACE_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isDisableToken() {
-        return icNextCharIs('I') && icNextCharIs('S') && icNextCharIs('A') && icNextCharIs('B') && icNextCharIs('L') && icNextCharIs('E') &&
+        return icNextIs(DISABLE_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isNullToken() {
-        return icNextCharIs('U') && icNextCharIs('L') && icNextCharIs('L') &&
+        return icNextIs(NULL_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isForToken() {
-        return icNextCharIs('O') && icNextCharIs('R') &&
+        return icNextIs(FOR_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isUniqueToken() {
-        return icNextCharIs('N') && icNextCharIs('I') && icNextCharIs('Q') && icNextCharIs('U') && icNextCharIs('E') &&
+        return icNextIs(UNIQUE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isIterateToken() {
-        return icNextCharIs('T') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('A') && icNextCharIs('T') && icNextCharIs('E') &&
+        return icNextIs(ITERATE_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isEnableToken() {
-        return icNextCharIs('N') && icNextCharIs('A') && icNextCharIs('B') && icNextCharIs('L') && icNextCharIs('E') &&
+        return icNextIs(ENABLE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isExceptToken() {
-        return icNextCharIs('X') && icNextCharIs('C') && icNextCharIs('E') && icNextCharIs('P') && icNextCharIs('T') &&
+        return icNextIs(EXCEPT_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isTablespaceToken() {
-        return icNextCharIs('A') && icNextCharIs('B') && icNextCharIs('L') && icNextCharIs('E') && icNextCharIs('S') && icNextCharIs('P') && icNextCharIs('A') && icNextCharIs('C') && icNextCharIs('E') &&
+        return icNextIs(TABLESPACE_REST, 8) && icNextCharIs('E') &&
                 nextIsBlank();
     }
 
     final boolean isFullToken() {
-        return icNextCharIs('U') && icNextCharIs('L') && icNextCharIs('L') &&
+        return icNextIs(FULL_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isNotToken() {
-        return icNextCharIs('O') && icNextCharIs('T') &&
+        return icNextIs(NOT_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isLikeToken() {
-        return icNextCharIs('I') && icNextCharIs('K') && icNextCharIs('E') &&
+        return icNextIs(LIKE_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isAndToken() {
-        return icNextCharIs('N') && icNextCharIs('D') &&
+        return icNextIs(AND_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isEndToken() {
-        return icNextCharIs('N') && icNextCharIs('D') &&
+        return icNextIs(END_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isInsertToken() {
-        return icNextCharIs('N') && icNextCharIs('S') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('T') &&
+        return icNextIs(INSERT_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isHavingToken() {
-        return icNextCharIs('A') && icNextCharIs('V') && icNextCharIs('I') && icNextCharIs('N') && icNextCharIs('G') &&
+        return icNextIs(HAVING_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isInoutToken() {
-        return icNextCharIs('N') && icNextCharIs('O') && icNextCharIs('U') && icNextCharIs('T') &&
+        return icNextIs(INOUT_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isAnyToken() {
-        return icNextCharIs('N') && icNextCharIs('Y') &&
+        return icNextIs(ANY_REST, 2) &&
                 nextIsBlank();
     }
 
     final boolean isDropToken() {
-        return icNextCharIs('R') && icNextCharIs('O') && icNextCharIs('P') &&
+        return icNextIs(DROP_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isSomeToken() {
-        return icNextCharIs('O') && icNextCharIs('M') && icNextCharIs('E') &&
+        return icNextIs(SOME_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isForeignToken() {
-        return icNextCharIs('O') && icNextCharIs('R') && icNextCharIs('E') && icNextCharIs('I') && icNextCharIs('G') && icNextCharIs('N') &&
+        return icNextIs(FOREIGN_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isSchemaToken() {
-        return icNextCharIs('C') && icNextCharIs('H') && icNextCharIs('E') && icNextCharIs('M') && icNextCharIs('A') &&
+        return icNextIs(SCHEMA_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isSequenceToken() {
-        return icNextCharIs('E') && icNextCharIs('Q') && icNextCharIs('U') && icNextCharIs('E') && icNextCharIs('N') && icNextCharIs('C') && icNextCharIs('E') &&
+        return icNextIs(SEQUENCE_REST, 7) &&
                 nextIsBlank();
     }
 
     final boolean isLeaveToken() {
-        return icNextCharIs('E') && icNextCharIs('A') && icNextCharIs('V') && icNextCharIs('E') &&
+        return icNextIs(LEAVE_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isOuterToken() {
-        return icNextCharIs('U') && icNextCharIs('T') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(OUTER_REST, 4) &&
                 nextIsBlank();
     }
 
@@ -608,67 +929,67 @@ final class SQLReader {
     }
 
     final boolean isExistsToken() {
-        return icNextCharIs('X') && icNextCharIs('I') && icNextCharIs('S') && icNextCharIs('T') && icNextCharIs('S') &&
+        return icNextIs(EXISTS_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isPrimaryToken() {
-        return icNextCharIs('R') && icNextCharIs('I') && icNextCharIs('M') && icNextCharIs('A') && icNextCharIs('R') && icNextCharIs('Y') &&
+        return icNextIs(PRIMARY_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isIntersectToken() {
-        return icNextCharIs('N') && icNextCharIs('T') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('S') && icNextCharIs('E') && icNextCharIs('C') && icNextCharIs('T') &&
+        return icNextIs(INTERSECT_REST, 8) &&
                 nextIsBlank();
     }
 
     final boolean isUserToken() {
-        return icNextCharIs('S') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(USER_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isUntilToken() {
-        return icNextCharIs('N') && icNextCharIs('T') && icNextCharIs('I') && icNextCharIs('L') &&
+        return icNextIs(UNTIL_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isEscapeToken() {
-        return icNextCharIs('S') && icNextCharIs('C') && icNextCharIs('A') && icNextCharIs('P') && icNextCharIs('E') &&
+        return icNextIs(ESCAPE_REST, 5) &&
                 nextIsBlank();
     }
 
     final boolean isWithToken() {
-        return icNextCharIs('I') && icNextCharIs('T') && icNextCharIs('H') &&
+        return icNextIs(WITH_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isOverToken() {
-        return icNextCharIs('V') && icNextCharIs('E') && icNextCharIs('R') &&
+        return icNextIs(OVER_REST, 3) &&
                 nextIsBlank();
     }
 
     final boolean isGrantToken() {
-        return icNextCharIs('R') && icNextCharIs('A') && icNextCharIs('N') && icNextCharIs('T') &&
+        return icNextIs(GRANT_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isDeclareToken() {
-        return icNextCharIs('E') && icNextCharIs('C') && icNextCharIs('L') && icNextCharIs('A') && icNextCharIs('R') && icNextCharIs('E') &&
+        return icNextIs(DECLARE_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isWhileToken() {
-        return icNextCharIs('H') && icNextCharIs('I') && icNextCharIs('L') && icNextCharIs('E') &&
+        return icNextIs(WHILE_REST, 4) &&
                 nextIsBlank();
     }
 
     final boolean isDefaultToken() {
-        return icNextCharIs('E') && icNextCharIs('F') && icNextCharIs('A') && icNextCharIs('U') && icNextCharIs('L') && icNextCharIs('T') &&
+        return icNextIs(DEFAULT_REST, 6) &&
                 nextIsBlank();
     }
 
     final boolean isReferencesToken() {
-        return icNextCharIs('E') && icNextCharIs('F') && icNextCharIs('E') && icNextCharIs('R') && icNextCharIs('E') && icNextCharIs('N') && icNextCharIs('C') && icNextCharIs('E') && icNextCharIs('S') &&
+        return icNextIs(REFERENCES_REST, 8) && icNextCharIs('S') &&
                 nextIsBlank();
     }
 
@@ -0,0 +1,436 @@
+package io.mycat;
+
+import java.util.Arrays;
+
+/**
+ * 内置分片函数：直接用 SQLContext 中记录的常量（IN 列表的值、col = 常量、范围条件的边界）计算数据节点序号，
+ * 整数按 long 计算，字符串直接在原始buffer上按字节计算，计算过程中不装箱、不创建String
+ * 字符串常量中有转义（\ 或者连续两个引号）时不能按字节计算，和参数 ? 一样返回 UNKNOWN，由调用方按全部节点处理
+ * 用法：
+ *   ShardingFunction function = new ShardingFunction.ModLong(64);
+ *   int node = function.calculateInValue(context, valueIdx);
+ */
+public abstract class ShardingFunction {
+    public static final int UNKNOWN = -1;
+    private static final long[] POW10 = new long[19];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i-1]*10;
+    }
+
+    protected final int nodeCount;
+
+    protected ShardingFunction(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public int getNodeCount() { return nodeCount; }
+
+    public abstract int calculate(long value);
+
+    //[start, end) 为字符串的内容，不含引号
+    public abstract int calculate(byte[] buffer, int start, int end);
+
+    /*
+    * 闭区间 [low, high] 命中的节点或到 bitset 中，不能按范围裁剪时返回false
+    */
+    public boolean calculateRange(long low, long high, long[] bitset) { return false; }
+
+    public boolean calculateRange(byte[] buffer, int lowStart, int lowEnd, int highStart, int highEnd, long[] bitset) { return false; }
+
+    public int calculateInValue(SQLContext context, int valueIdx) {
+        return calculate(context, context.getInValueType(valueIdx), context.getInValueLong(valueIdx),
+                context.getInValuePos(valueIdx), context.getInValueSize(valueIdx));
+    }
+
+    //PRED_EQ 节点的常量
+    public int calculatePredicateValue(SQLContext context, int node) {
+        return calculate(context, context.getPredicateValueType(node), context.getPredicateValueLong(node),
+                context.getPredicateValuePos(node), context.getPredicateValueSize(node));
+    }
+
+    /*
+    * 第 rangeIdx 个范围条件：整数边界的开区间换算成闭区间，字符串边界按闭区间计算（多出来的节点不影响结果）
+    */
+    public boolean calculateRange(SQLContext context, int rangeIdx, long[] bitset) {
+        int flags = context.getRangeFlags(rangeIdx);
+        if ((flags & SQLContext.RANGE_STRING) != 0) {
+            if ((flags & (SQLContext.RANGE_LOW_UNBOUNDED | SQLContext.RANGE_HIGH_UNBOUNDED)) != 0)
+                return false;
+            byte[] buffer = context.getBuffer();
+            int lowStart = context.getRangeLowPos(rangeIdx);
+            int lowEnd = lowStart+context.getRangeLowSize(rangeIdx);
+            int highStart = context.getRangeHighPos(rangeIdx);
+            int highEnd = highStart+context.getRangeHighSize(rangeIdx);
+            if (hasEscape(buffer, lowStart, lowEnd, buffer[lowStart-1]) || hasEscape(buffer, highStart, highEnd, buffer[highStart-1]))
+                return false;
+            return calculateRange(buffer, lowStart, lowEnd, highStart, highEnd, bitset);
+        }
+        long low = Long.MIN_VALUE;
+        long high = Long.MAX_VALUE;
+        if ((flags & SQLContext.RANGE_LOW_UNBOUNDED) == 0) {
+            low = context.getRangeLow(rangeIdx);
+            if ((flags & SQLContext.RANGE_LOW_INCLUSIVE) == 0) {
+                if (low == Long.MAX_VALUE)
+                    return true;
+                low++;
+            }
+        }
+        if ((flags & SQLContext.RANGE_HIGH_UNBOUNDED) == 0) {
+            high = context.getRangeHigh(rangeIdx);
+            if ((flags & SQLContext.RANGE_HIGH_INCLUSIVE) == 0) {
+                if (high == Long.MIN_VALUE)
+                    return true;
+                high--;
+            }
+        }
+        return low > high || calculateRange(low, high, bitset);
+    }
+
+    //pos/size 为 SQLContext 中记录的常量，字符串包括两侧引号
+    private int calculate(SQLContext context, byte type, long value, int pos, int size) {
+        switch (type) {
+            case SQLContext.IN_VALUE_LONG:
+                return calculate(value);
+            case SQLContext.IN_VALUE_STRING:
+                byte[] buffer = context.getBuffer();
+                if (hasEscape(buffer, pos+1, pos+size-1, buffer[pos]))
+                    return UNKNOWN;
+                return calculate(buffer, pos+1, pos+size-1);
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    static boolean hasEscape(byte[] buffer, int start, int end, byte quote) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '\\' || buffer[i] == quote)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+    * 十进制整数，可以带符号，不是整数或者超出 long 范围时返回 Long.MIN_VALUE
+    */
+    static long parseLong(byte[] buffer, int start, int end) {
+        boolean negative = start < end && buffer[start] == '-';
+        if (start < end && (buffer[start] == '-' || buffer[start] == '+'))
+            start++;
+        if (start == end || end-start > 18)
+            return Long.MIN_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i]-'0';
+            if (digit < 0 || digit > 9)
+                return Long.MIN_VALUE;
+            value = value*10+digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /*
+    * 与 new String(buffer, start, end-start, UTF_8).hashCode() 相同，按 UTF-16 编码单元计算
+    */
+    static int stringHash(byte[] buffer, int start, int end) {
+        int h = 0;
+        int i = start;
+        while (i < end) {
+            int c = buffer[i++] & 0xFF;
+            if (c >= 0xF0 && i+2 < end) {
+                int cp = ((c & 0x07)<<18) | ((buffer[i] & 0x3F)<<12) | ((buffer[i+1] & 0x3F)<<6) | (buffer[i+2] & 0x3F);
+                i += 3;
+                h = 31*h+(0xD800+((cp-0x10000)>>>10)); //高位代理
+                c = 0xDC00+((cp-0x10000) & 0x3FF);
+            } else if (c >= 0xE0 && i+1 < end) {
+                c = ((c & 0x0F)<<12) | ((buffer[i] & 0x3F)<<6) | (buffer[i+1] & 0x3F);
+                i += 2;
+            } else if (c >= 0xC0 && i < end) {
+                c = ((c & 0x1F)<<6) | (buffer[i] & 0x3F);
+                i++;
+            }
+            h = 31*h+c;
+        }
+        return h;
+    }
+
+    //与 Long.toString(value).hashCode() 相同
+    static int decimalHash(long value) {
+        int h = 0;
+        long n = value;
+        if (n < 0)
+            h = '-';
+        else
+            n = -n; //按负数计算，Long.MIN_VALUE 不会溢出
+        int digits = 1;
+        while (digits < POW10.length && n <= -POW10[digits])
+            digits++;
+        for (int i = digits-1; i >= 0; i--)
+            h = 31*h+('0'-(int) (n/POW10[i]%10));
+        return h;
+    }
+
+    /*
+    * 从 from 开始的 count 个节点（超过 nodeCount 时回到0）
+    */
+    void setCyclic(long[] bitset, int from, long count) {
+        if (count >= nodeCount) {
+            PartitionPruner.setBits(bitset, 0, nodeCount-1);
+        } else if (from+count <= nodeCount) {
+            PartitionPruner.setBits(bitset, from, from+(int) count-1);
+        } else {
+            PartitionPruner.setBits(bitset, from, nodeCount-1);
+            PartitionPruner.setBits(bitset, 0, from+(int) count-1-nodeCount);
+        }
+    }
+
+    static long mix64(long h) { //MurmurHash3 的 fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 整数取模，字符串按十进制整数解析；范围条件跨度小于节点数时只命中其中的节点
+     */
+    public static final class ModLong extends ShardingFunction {
+        public ModLong(int nodeCount) {
+            super(nodeCount);
+        }
+
+        @Override
+        public int calculate(long value) {
+            return (int) Math.floorMod(value, (long) nodeCount);
+        }
+
+        @Override
+        public int calculate(byte[] buffer, int start, int end) {
+            long value = parseLong(buffer, start, end);
+            return value == Long.MIN_VALUE ? UNKNOWN : calculate(value);
+        }
+
+        @Override
+        public boolean calculateRange(long low, long high, long[] bitset) {
+            long span = high-low; //跨度超过 long 范围时为负数
+            setCyclic(bitset, calculate(low), span < 0 || span >= nodeCount ? nodeCount : span+1);
+            return true;
+        }
+    }
+
+    /**
+     * 按 String.hashCode() 取模，和原来用 String 计算的规则结果一致；整数按十进制字符串计算
+     */
+    public static final class HashMod extends ShardingFunction {
+        public HashMod(int nodeCount) {
+            super(nodeCount);
+        }
+
+        @Override
+        public int calculate(long value) {
+            return (decimalHash(value) & Integer.MAX_VALUE)%nodeCount;
+        }
+
+        @Override
+        public int calculate(byte[] buffer, int start, int end) {
+            return (stringHash(buffer, start, end) & Integer.MAX_VALUE)%nodeCount;
+        }
+    }
+
+    /**
+     * 范围映射：第 i 段为 [starts[i], starts[i+1])，属于 nodes[i]，最后一段到正无穷；小于 starts[0] 的值属于 defaultNode（可以为 UNKNOWN）
+     */
+    public static final class RangeMap extends ShardingFunction {
+        private final long[] starts;
+        private final int[] nodes;
+        private final int defaultNode;
+
+        public RangeMap(long[] starts, int[] nodes, int defaultNode) {
+            super(Math.max(Arrays.stream(nodes).max().orElse(-1), defaultNode)+1);
+            this.starts = starts;
+            this.nodes = nodes;
+            this.defaultNode = defaultNode;
+        }
+
+        @Override
+        public int calculate(long value) {
+            return value < starts[0] ? defaultNode : nodes[PartitionPruner.partitionOf(starts, value)];
+        }
+
+        @Override
+        public int calculate(byte[] buffer, int start, int end) {
+            long value = parseLong(buffer, start, end);
+            return value == Long.MIN_VALUE ? UNKNOWN : calculate(value);
+        }
+
+        @Override
+        public boolean calculateRange(long low, long high, long[] bitset) {
+            if (low < starts[0]) {
+                if (defaultNode != UNKNOWN)
+                    bitset[defaultNode>>>6] |= 1L << defaultNode;
+                if (high < starts[0])
+                    return true;
+                low = starts[0];
+            }
+            for (int i = PartitionPruner.partitionOf(starts, low), last = PartitionPruner.partitionOf(starts, high); i <= last; i++)
+                bitset[nodes[i]>>>6] |= 1L << nodes[i];
+            return true;
+        }
+    }
+
+    /**
+     * 按日期分区：从起始日期开始每 step 天（或月）一个分区，分区依次循环分配到各个节点；
+     * 字符串为 yyyy-MM-dd 开头（允许 / 分隔，后面可以有时间），整数为 yyyyMMdd，早于起始日期的返回 UNKNOWN
+     */
+    public static final class DatePartition extends ShardingFunction {
+        public static final int DAY = 1;
+        public static final int MONTH = 2;
+        private final int unit;
+        private final int step;
+        private final long begin;
+
+        public DatePartition(int unit, int beginYear, int beginMonth, int beginDay, int step, int nodeCount) {
+            super(nodeCount);
+            this.unit = unit;
+            this.step = step;
+            this.begin = period(beginYear*10000+beginMonth*100+beginDay);
+        }
+
+        @Override
+        public int calculate(long value) {
+            if (value < 0 || value > 99991231)
+                return UNKNOWN;
+            return partition(period((int) value));
+        }
+
+        @Override
+        public int calculate(byte[] buffer, int start, int end) {
+            return partition(period(parseDate(buffer, start, end)));
+        }
+
+        @Override
+        public boolean calculateRange(long low, long high, long[] bitset) {
+            if (low < 0 || high > 99991231)
+                return false;
+            return range(period((int) low), period((int) high), bitset);
+        }
+
+        @Override
+        public boolean calculateRange(byte[] buffer, int lowStart, int lowEnd, int highStart, int highEnd, long[] bitset) {
+            return range(period(parseDate(buffer, lowStart, lowEnd)), period(parseDate(buffer, highStart, highEnd)), bitset);
+        }
+
+        private int partition(long period) {
+            if (period == Long.MIN_VALUE || period < begin)
+                return UNKNOWN;
+            return (int) ((period-begin)/step%nodeCount);
+        }
+
+        private boolean range(long low, long high, long[] bitset) {
+            if (low == Long.MIN_VALUE || high == Long.MIN_VALUE)
+                return false;
+            if (high < begin || low > high)
+                return true;
+            long first = (Math.max(low, begin)-begin)/step;
+            long last = (high-begin)/step;
+            setCyclic(bitset, (int) (first%nodeCount), last-first+1);
+            return true;
+        }
+
+        //yyyyMMdd 换算成从 1970-01-01 开始的天数或者月数，日期不合法时返回 Long.MIN_VALUE
+        private long period(int date) {
+            int year = date/10000;
+            int month = date/100%100;
+            int day = date%100;
+            if (date < 0 || month < 1 || month > 12 || day < 1 || day > 31)
+                return Long.MIN_VALUE;
+            return unit == MONTH ? (year-1970)*12L+month-1 : epochDay(year, month, day);
+        }
+
+        //yyyy-MM-dd 解析为 yyyyMMdd，格式不对时返回-1
+        static int parseDate(byte[] buffer, int start, int end) {
+            int date = 0;
+            int field = 0;
+            int digits = 0;
+            int value = 0;
+            int i = start;
+            for (; i < end && field < 3; i++) {
+                byte c = buffer[i];
+                if (c >= '0' && c <= '9') {
+                    value = value*10+(c-'0');
+                    if (++digits > (field == 0 ? 4 : 2))
+                        return -1;
+                } else if ((c == '-' || c == '/') && field < 2 && digits > 0) {
+                    date = date*100+value;
+                    field++;
+                    digits = value = 0;
+                } else if (field == 2 && digits > 0 && (c == ' ' || c == 'T')) {
+                    break;
+                } else {
+                    return -1;
+                }
+            }
+            if (field != 2 || digits == 0)
+                return -1;
+            return date*100+value;
+        }
+
+        //公历日期到 1970-01-01 的天数
+        static long epochDay(int year, int month, int day) {
+            long y = month <= 2 ? year-1 : year;
+            long era = (y >= 0 ? y : y-399)/400;
+            long yoe = y-era*400;
+            long doy = (153*(month > 2 ? month-3 : month+9)+2)/5+day-1;
+            long doe = yoe*365+yoe/4-yoe/100+doy;
+            return era*146097+doe-719468;
+        }
+    }
+
+    /**
+     * 一致性哈希：每个节点在环上有 virtualNodes 个虚拟节点，值哈希后顺时针找到第一个虚拟节点；
+     * 能解析为整数的字符串按整数计算，保证 id = 5 和 id = '5' 落在同一个节点
+     */
+    public static final class ConsistentHash extends ShardingFunction {
+        private final long[] ring;
+        private final int[] ringNodes;
+
+        public ConsistentHash(int nodeCount, int virtualNodes) {
+            super(nodeCount);
+            int size = nodeCount*virtualNodes;
+            long[] hashes = new long[size];
+            for (int i = 0; i < size; i++)
+                hashes[i] = mix64(((long) (i/virtualNodes)<<32) | (i%virtualNodes));
+            ring = hashes.clone();
+            Arrays.sort(ring);
+            ringNodes = new int[size];
+            for (int i = 0; i < size; i++)
+                ringNodes[Arrays.binarySearch(ring, hashes[i])] = i/virtualNodes;
+        }
+
+        @Override
+        public int calculate(long value) {
+            return lookup(mix64(value));
+        }
+
+        @Override
+        public int calculate(byte[] buffer, int start, int end) {
+            long value = parseLong(buffer, start, end);
+            if (value != Long.MIN_VALUE)
+                return calculate(value);
+            long h = 0xcbf29ce484222325L; //FNV-1a
+            for (int i = start; i < end; i++)
+                h = (h ^ (buffer[i] & 0xFF))*0x100000001b3L;
+            return lookup(mix64(h));
+        }
+
+        private int lookup(long hash) {
+            int idx = Arrays.binarySearch(ring, hash);
+            if (idx < 0)
+                idx = -idx-1;
+            return ringNodes[idx == ring.length ? 0 : idx];
+        }
+    }
+}
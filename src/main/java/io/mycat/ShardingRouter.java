@@ -0,0 +1,73 @@
+package io.mycat;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把分片函数接到 PredicateEvaluator 上：本表分片字段上的 col = 常量、IN 列表和范围条件
+ * 由分片函数换算成数据节点，其他字段的条件按全部节点处理
+ * 字段名相同还不够，字段必须能解析到本表（见 isShardingColumn），比如 FROM t, u WHERE u.id = 2 不能裁剪 t
+ * 一个表一个实例，解析、谓词求值到分片计算整个过程不分配内存
+ */
+public class ShardingRouter implements PredicateEvaluator.AtomRouter {
+    private final long tableHash;
+    private final long columnHash;
+    private final ShardingFunction function;
+
+    public ShardingRouter(String table, String column, ShardingFunction function) {
+        byte[] name = table.getBytes(StandardCharsets.UTF_8); //和 sql 的 UTF-8 字节比较，不能用平台默认编码
+        this.tableHash = TokenHash.hash(name, 0, name.length);
+        name = column.getBytes(StandardCharsets.UTF_8);
+        this.columnHash = TokenHash.hash(name, 0, name.length);
+        this.function = function;
+    }
+
+    @Override
+    public boolean route(SQLContext context, int node, long[] bitset) {
+        int arg = context.getPredicateArg(node);
+        switch (context.getPredicateOp(node)) {
+            case SQLContext.PRED_EQ:
+                if (!isShardingColumn(context, node, arg))
+                    return false;
+                return setNode(function.calculatePredicateValue(context, node), bitset);
+            case SQLContext.PRED_IN:
+                if (!isShardingColumn(context, node, context.getInListColumn(arg)))
+                    return false;
+                for (int i = context.getInListFirstValue(arg), end = i+context.getInListValueCount(arg); i < end; i++) {
+                    if (!setNode(function.calculateInValue(context, i), bitset))
+                        return false;
+                }
+                return true;
+            case SQLContext.PRED_RANGE:
+                return isShardingColumn(context, node, context.getRangeColumn(arg)) && function.calculateRange(context, arg, bitset);
+            default:
+                return false;
+        }
+    }
+
+    /*
+    * 字段名是分片字段，并且按限定名（或者scope中唯一的表）解析到的是谓词所在scope中的本表；
+    * 不能确定所属的表、属于外层scope（关联子查询）或者本表在该scope中出现多次（自连接）时都按全部节点处理
+    */
+    private boolean isShardingColumn(SQLContext context, int node, int colIdx) {
+        if (colIdx < 0 || context.getColumnHash(colIdx) != columnHash)
+            return false;
+        int tblIdx = context.getColumnTable(colIdx);
+        if (tblIdx < 0 || context.getTableHash(tblIdx) != tableHash)
+            return false;
+        int scope = context.getTableScope(tblIdx);
+        if (scope != context.getPredicateScope(context.getPredicateOf(node)))
+            return false;
+        for (int i = 0, n = context.getTableCount(); i < n; i++) {
+            if (i != tblIdx && context.getTableScope(i) == scope && context.getTableHash(i) == tableHash)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean setNode(int node, long[] bitset) {
+        if (node == ShardingFunction.UNKNOWN)
+            return false;
+        bitset[node>>>6] |= 1L << node;
+        return true;
+    }
+}
@@ -0,0 +1,241 @@
+package io.mycat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 路由预过滤：把配置的分片表/全局表名编译成 Aho-Corasick 自动机，在原始sql上扫描一遍，判断语句是否用到了这些表，
+ * 只用到默认库普通表的语句可以不走完整的解析和路由；与 SQLParser 的状态机无关
+ * 忽略大小写，只匹配完整的标识符（前后都不是标识符字符，schema.tbl、`tbl` 都可以匹配），跳过字符串和注释
+ * 这是一个预过滤：同名的字段、变量也会被匹配上；双引号按字符串处理（MySQL 默认）；
+ * 以 /*! 开头的可执行注释（比如 mysqldump 的 ALTER TABLE ... DISABLE KEYS）和以 /*+ 开头的优化器提示会被服务器执行或使用，
+ * 其中的内容按sql扫描，注释的结束标记只是普通的非标识符字符
+ * 用法：
+ *   TableNameScanner scanner = new TableNameScanner(new String[]{"tbl_order", "tbl_user"});
+ *   long[] hits = new long[scanner.words()];
+ *   if (scanner.scan(sql, 0, sql.length, hits) > 0) ... //hits 中第 i 位为第 i 个表名
+ */
+public class TableNameScanner {
+    public static final int NOT_FOUND = -1;
+    //字符类别：0 为非标识符字符，数字、字母（忽略大小写）、_、$ 各一类，非ASCII字节合为一类（匹配后按字节确认）
+    private static final int CLASSES = 40;
+    private static final byte[] charClass = new byte[256];
+    static {
+        for (int c = '0'; c <= '9'; c++) charClass[c] = (byte) (c-'0'+1);
+        for (int c = 'a'; c <= 'z'; c++) charClass[c] = charClass[c-32] = (byte) (c-'a'+11);
+        charClass['_'] = 37;
+        charClass['$'] = 38;
+        for (int c = 0x80; c < 0x100; c++) charClass[c] = 39;
+    }
+
+    private final byte[][] patterns;
+    private final boolean[] verify; //含非ASCII字节的表名，匹配后需要按字节确认
+    private int[] delta; //状态转移表，记录格式：[{next state for class 0..CLASSES-1}]
+    private int[] fail;
+    private int[] output; //每个状态上第一个以它结尾的表名，-1为没有
+    private int[] outputNext; //同一个状态上的下一个表名
+    private int[] dictLink; //失败链上最近一个有输出的状态，-1为没有
+    private int stateCount;
+
+    public TableNameScanner(String[] names) {
+        patterns = new byte[names.length][];
+        verify = new boolean[names.length];
+        delta = new int[64*CLASSES];
+        output = new int[64];
+        stateCount = 1;
+        Arrays.fill(output, -1);
+        outputNext = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+            addPattern(i, names[i].getBytes(StandardCharsets.UTF_8));
+        compile();
+    }
+
+    public int words() { return (patterns.length+63)>>>6; }
+
+    public int getStateCount() { return stateCount; }
+
+    /*
+    * 扫描 [start, end)，命中的表名序号置位到 bitset 中，返回命中的次数（同一个表出现多次会重复计数）
+    */
+    public int scan(byte[] sql, int start, int end, long[] bitset) {
+        int count = 0;
+        int state = 0;
+        int identStart = start;
+        int i = start;
+        while (i < end) {
+            byte b = sql[i];
+            switch (b) {
+                case '\'':
+                case '"':
+                    i = skipQuote(sql, i, end);
+                    state = 0;
+                    continue;
+                case '#':
+                    i = skipLine(sql, i, end);
+                    state = 0;
+                    continue;
+                case '-':
+                    if (i+2 < end && sql[i+1] == '-' && (sql[i+2] == ' ' || sql[i+2] == '\t' || sql[i+2] == '\r' || sql[i+2] == '\n')) {
+                        i = skipLine(sql, i, end);
+                        state = 0;
+                        continue;
+                    }
+                    break;
+                case '/':
+                    if (i+1 < end && sql[i+1] == '*') {
+                        i = i+2 < end && (sql[i+2] == '!' || sql[i+2] == '+') ? executableCommentBody(sql, i, end) : skipComment(sql, i, end);
+                        identStart = i; //版本号之后可以直接是标识符
+                        state = 0;
+                        continue;
+                    }
+                    break;
+            }
+            int c = charClass[b & 0xFF];
+            if (c == 0) {
+                state = 0;
+                i++;
+                continue;
+            }
+            if (state == 0 && (i == start || charClass[sql[i-1] & 0xFF] == 0))
+                identStart = i;
+            state = delta[state*CLASSES+c];
+            i++;
+            if (i < end && charClass[sql[i] & 0xFF] != 0)
+                continue; //标识符还没结束
+            for (int s = output[state] >= 0 ? state : dictLink[state]; s > 0; s = dictLink[s]) {
+                for (int p = output[s]; p >= 0; p = outputNext[p]) {
+                    if (patterns[p].length == i-identStart && (!verify[p] || equalsIgnoreCase(patterns[p], sql, identStart))) {
+                        bitset[p>>>6] |= 1L << p;
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    //第一个命中的表名序号，没有时返回 NOT_FOUND；bitset 会先清空
+    public int first(byte[] sql, int start, int end, long[] bitset) {
+        Arrays.fill(bitset, 0L);
+        if (scan(sql, start, end, bitset) == 0)
+            return NOT_FOUND;
+        for (int w = 0; w < bitset.length; w++) {
+            if (bitset[w] != 0)
+                return (w<<6)+Long.numberOfTrailingZeros(bitset[w]);
+        }
+        return NOT_FOUND;
+    }
+
+    private void addPattern(int idx, byte[] name) {
+        patterns[idx] = name;
+        int state = 0;
+        for (byte b : name) {
+            int c = charClass[b & 0xFF];
+            if (c == 0)
+                throw new IllegalArgumentException("not an identifier : " + new String(name, StandardCharsets.UTF_8));
+            if (b < 0)
+                verify[idx] = true;
+            int next = delta[state*CLASSES+c];
+            if (next == 0) {
+                next = newState();
+                delta[state*CLASSES+c] = next;
+            }
+            state = next;
+        }
+        outputNext[idx] = output[state];
+        output[state] = idx;
+    }
+
+    private int newState() {
+        if (stateCount == output.length) {
+            delta = Arrays.copyOf(delta, (stateCount<<1)*CLASSES);
+            output = Arrays.copyOf(output, stateCount<<1);
+            Arrays.fill(output, stateCount, output.length, -1);
+        }
+        return stateCount++;
+    }
+
+    /*
+    * 按广度优先计算失败指针，并把转移表补全为DFA：没有的转移取失败状态的转移；状态0的出边都不会回到自身以外
+    */
+    private void compile() {
+        fail = new int[stateCount];
+        dictLink = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 1; c < CLASSES; c++) {
+            int next = delta[c];
+            if (next != 0) {
+                fail[next] = 0;
+                dictLink[next] = -1;
+                queue[tail++] = next;
+            }
+        }
+        dictLink[0] = -1;
+        while (head < tail) {
+            int state = queue[head++];
+            for (int c = 1; c < CLASSES; c++) {
+                int next = delta[state*CLASSES+c];
+                if (next != 0) {
+                    int f = delta[fail[state]*CLASSES+c];
+                    fail[next] = f;
+                    dictLink[next] = output[f] >= 0 ? f : dictLink[f];
+                    queue[tail++] = next;
+                } else {
+                    delta[state*CLASSES+c] = delta[fail[state]*CLASSES+c];
+                }
+            }
+        }
+    }
+
+    private static boolean equalsIgnoreCase(byte[] pattern, byte[] sql, int pos) {
+        for (int i = 0; i < pattern.length; i++) {
+            int a = pattern[i];
+            int b = sql[pos+i];
+            if (a != b && ((a ^ b) != 0x20 || (a | 0x20) < 'a' || (a | 0x20) > 'z'))
+                return false;
+        }
+        return true;
+    }
+
+    //返回结束引号之后的位置，\ 转义和连续两个引号都在这里处理
+    private static int skipQuote(byte[] sql, int pos, int end) {
+        byte quote = sql[pos++];
+        while (pos < end) {
+            byte b = sql[pos++];
+            if (b == '\\') {
+                pos++;
+            } else if (b == quote) {
+                if (pos < end && sql[pos] == quote)
+                    pos++;
+                else
+                    return pos;
+            }
+        }
+        return end;
+    }
+
+    private static int skipLine(byte[] sql, int pos, int end) {
+        while (pos < end && sql[pos] != '\n')
+            pos++;
+        return pos;
+    }
+
+    //可执行注释 /*!50001 ... 跳过开头和版本号，返回注释内容开始的位置
+    private static int executableCommentBody(byte[] sql, int pos, int end) {
+        boolean versioned = sql[pos+2] == '!';
+        pos += 3;
+        while (versioned && pos < end && sql[pos] >= '0' && sql[pos] <= '9')
+            pos++;
+        return pos;
+    }
+
+    private static int skipComment(byte[] sql, int pos, int end) {
+        for (pos += 2; pos+1 < end; pos++) {
+            if (sql[pos] == '*' && sql[pos+1] == '/')
+                return pos+2;
+        }
+        return end;
+    }
+}
@@ -1,9 +1,50 @@
 package io.mycat;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Created by Fanfan on 2017/2/27.
  */
 public class TokenHash {
+    //与 MatchMethodGenerator.genHash 相同的 BKDR 哈希，忽略大小写，反引号等非标识符字符不参与计算
+    private static final byte[] shrinkCharTbl = new byte[128];
+    static {
+        shrinkCharTbl['$'] = 1;
+        for (int c = '0'; c <= '9'; c++) shrinkCharTbl[c] = (byte)(c-'0'+2);
+        for (int c = 'A'; c <= 'Z'; c++) shrinkCharTbl[c] = (byte)(c-'A'+12);
+        for (int c = 'a'; c <= 'z'; c++) shrinkCharTbl[c] = (byte)(c-'a'+12);
+        shrinkCharTbl['_'] = 38;
+    }
+
+    public static long hash(byte[] sql, int start, int end) {
+        long hash = 0;
+        int c;
+        for (; start < end; start++) {
+            c = sql[start];
+            c = c < 0 ? c & 0xFF : shrinkCharTbl[c]; //非ascii字符直接用字节值，不会和 1~38 冲突
+            if (c != 0)
+                hash = hash*41 + c;
+        }
+        return hash;
+    }
+
+    /*
+    * hash 是否为 MySQL 保留字，ACTION、NAME、STATUS 这类可以作为名字使用的非保留字返回 false
+    */
+    public static boolean isKeyword(long hash) {
+        for (int i = slot(hash); ; i = (i+1) & (KEYWORDS.length-1)) {
+            long keyword = KEYWORDS[i];
+            if (keyword == hash)
+                return hash != 0;
+            if (keyword == 0)
+                return false;
+        }
+    }
+
+    private static int slot(long hash) {
+        return (int)((hash ^ hash>>>29) * 0x9E3779B97F4A7C15L >>> 53); //11位
+    }
+
     public static final long ACCESSIBLE = 0xe5d3fcdb27864L;
     public static final long ACCOUNT = 0xda8af7222L;
     public static final long ACTION = 0x555aaeb8L;
@@ -207,6 +248,7 @@ public class TokenHash {
     public static final long FOR = 0x73e8L;
     public static final long FORMAT = 0x79e5364bL;
     public static final long FOUND = 0x2f92e2bL;
+    public static final long FOUND_ROWS = 0x148861eb6e43e8L;
     public static final long FRAC_SECOND = 0x34cc1d80f5a547cL;
     public static final long FROM = 0x12a378L;
     public static final long FULL = 0x12b6afL;
@@ -215,6 +257,7 @@ public class TokenHash {
     public static final long GET = 0x78e1L;
     public static final long GENERAL = 0x145b13d23bL;
     public static final long GENERATED = 0x85aa0d27ac92L;
+    public static final long GET_LOCK = 0x342c34a413cL;
     public static final long GROUP_REPLICATION = 0x12b2aedbe6582c25L;
     public static final long GEOMETRYCOLLECTION = 0xb9c0080177903696L;
     public static final long GEOMETRY = 0x3429e6041bcL;
@@ -274,6 +317,7 @@ public class TokenHash {
     public static final long KILL = 0x17aa00L;
     public static final long LANGUAGE = 0x420e34e9f9cL;
     public static final long LAST = 0x1883d8L;
+    public static final long LAST_INSERT_ID = 0xb7d9f84aaa41c6eL;
     public static final long LEADING = 0x19e08635c1L;
     public static final long LEAVES = 0xa19357aaL;
     public static final long LEAVE = 0x3f0dcacL;
@@ -403,6 +447,7 @@ public class TokenHash {
     public static final long OUTER = 0x48384b6L;
     public static final long OUTFILE = 0x1da39b44f5L;
     public static final long OUT = 0xaff9L;
+    public static final long OVER = 0x1c3328L;
     public static final long OWNER = 0x48577c2L;
     public static final long PACK_KEYS = 0xc644e461d3b9L;
     public static final long PAGE = 0x1cb6c1L;
@@ -456,6 +501,8 @@ public class TokenHash {
     public static final long RELAY_LOG_POS = 0xf759628c80229246L;
     public static final long RELAY_THREAD = 0xe091ca3596e46bd4L;
     public static final long RELEASE = 0x20852662ceL;
+    public static final long RELEASE_ALL_LOCKS = 0xe9b541940c7deddfL;
+    public static final long RELEASE_LOCK = 0xe091e2f89dc34cd1L;
     public static final long RELOAD = 0xcb0dae29L;
     public static final long REMOVE = 0xcb0ebec0L;
     public static final long RENAME = 0xcb0f6e9aL;
@@ -649,6 +696,7 @@ public class TokenHash {
     public static final long WHEN = 0x2440feL;
     public static final long WHERE = 0x5ce6962L;
     public static final long WHILE = 0x5ce82b0L;
+    public static final long WINDOW = 0xee431ba2L;
     public static final long WITH = 0x2449f0L;
     public static final long WITH_CUBE = 0xfa98514febb9L;
     public static final long WITH_ROLLUP = 0x66d822e54683db6L;
@@ -679,4 +727,45 @@ public class TokenHash {
     public static final long SQL_TSI_QUARTER = 0xe9ec207893081b87L;
     public static final long SQL_TSI_YEAR = 0xea71ed7ecec4f35bL;
 
+    //MySQL 5.7 的保留字，NAME、STATUS、TYPE、USER、DATE 这类非保留字可以直接作为表名列名，不算关键字
+    private static final String[] RESERVED_WORDS = {
+            "ACCESSIBLE", "ADD", "ALL", "ALTER", "ANALYZE", "AND", "AS", "ASC", "ASENSITIVE", "BEFORE", "BETWEEN",
+            "BIGINT", "BINARY", "BLOB", "BOTH", "BY", "CALL", "CASCADE", "CASE", "CHANGE", "CHAR", "CHARACTER",
+            "CHECK", "COLLATE", "COLUMN", "CONDITION", "CONSTRAINT", "CONTINUE", "CONVERT", "CREATE", "CROSS",
+            "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "CURRENT_USER", "CURSOR", "DATABASE", "DATABASES",
+            "DAY_HOUR", "DAY_MICROSECOND", "DAY_MINUTE", "DAY_SECOND", "DEC", "DECIMAL", "DECLARE", "DEFAULT",
+            "DELAYED", "DELETE", "DESC", "DESCRIBE", "DETERMINISTIC", "DISTINCT", "DISTINCTROW", "DIV", "DOUBLE",
+            "DROP", "DUAL", "EACH", "ELSE", "ELSEIF", "ENCLOSED", "ESCAPED", "EXISTS", "EXIT", "EXPLAIN", "FALSE",
+            "FETCH", "FLOAT", "FLOAT4", "FLOAT8", "FOR", "FORCE", "FOREIGN", "FROM", "FULLTEXT", "GENERATED", "GET",
+            "GRANT", "GROUP", "HAVING", "HIGH_PRIORITY", "HOUR_MICROSECOND", "HOUR_MINUTE", "HOUR_SECOND", "IF",
+            "IGNORE", "IN", "INDEX", "INFILE", "INNER", "INOUT", "INSENSITIVE", "INSERT", "INT", "INT1", "INT2",
+            "INT3", "INT4", "INT8", "INTEGER", "INTERVAL", "INTO", "IO_AFTER_GTIDS", "IO_BEFORE_GTIDS", "IS",
+            "ITERATE", "JOIN", "KEY", "KEYS", "KILL", "LEADING", "LEAVE", "LEFT", "LIKE", "LIMIT", "LINEAR", "LINES",
+            "LOAD", "LOCALTIME", "LOCALTIMESTAMP", "LOCK", "LONG", "LONGBLOB", "LONGTEXT", "LOOP", "LOW_PRIORITY",
+            "MASTER_BIND", "MASTER_SSL_VERIFY_SERVER_CERT", "MATCH", "MAXVALUE", "MEDIUMBLOB", "MEDIUMINT",
+            "MEDIUMTEXT", "MIDDLEINT", "MINUTE_MICROSECOND", "MINUTE_SECOND", "MOD", "MODIFIES", "NATURAL", "NOT",
+            "NO_WRITE_TO_BINLOG", "NULL", "NUMERIC", "ON", "OPTIMIZE", "OPTIMIZER_COSTS", "OPTION", "OPTIONALLY", "OR",
+            "ORDER", "OUT", "OUTER", "OUTFILE", "PARTITION", "PRECISION", "PRIMARY", "PROCEDURE", "PURGE", "RANGE",
+            "READ", "READS", "READ_WRITE", "REAL", "REFERENCES", "REGEXP", "RELEASE", "RENAME", "REPEAT", "REPLACE",
+            "REQUIRE", "RESIGNAL", "RESTRICT", "RETURN", "REVOKE", "RIGHT", "RLIKE", "SCHEMA", "SCHEMAS",
+            "SECOND_MICROSECOND", "SELECT", "SENSITIVE", "SEPARATOR", "SET", "SHOW", "SIGNAL", "SMALLINT", "SPATIAL",
+            "SPECIFIC", "SQL", "SQLEXCEPTION", "SQLSTATE", "SQLWARNING", "SQL_BIG_RESULT", "SQL_CALC_FOUND_ROWS",
+            "SQL_SMALL_RESULT", "SSL", "STARTING", "STORED", "STRAIGHT_JOIN", "TABLE", "TERMINATED", "THEN",
+            "TINYBLOB", "TINYINT", "TINYTEXT", "TO", "TRAILING", "TRIGGER", "TRUE", "UNDO", "UNION", "UNIQUE",
+            "UNLOCK", "UNSIGNED", "UPDATE", "USAGE", "USE", "USING", "UTC_DATE", "UTC_TIME", "UTC_TIMESTAMP", "VALUES",
+            "VARBINARY", "VARCHAR", "VARCHARACTER", "VARYING", "VIRTUAL", "WHEN", "WHERE", "WHILE", "WITH", "WRITE",
+            "XOR", "YEAR_MONTH", "ZEROFILL"
+    };
+
+    private static final long[] KEYWORDS = new long[2048]; //保留字哈希，开放寻址，0 为空位（装填率1/8左右，二分查找的分支预测失败比这里多）
+    static {
+        for (String word : RESERVED_WORDS) {
+            byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            long hash = hash(bytes, 0, bytes.length);
+            int i = slot(hash);
+            while (KEYWORDS[i] != 0 && KEYWORDS[i] != hash)
+                i = (i+1) & (KEYWORDS.length-1);
+            KEYWORDS[i] = hash;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package io.mycat;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * 不做范围检查的字节读取，堆内数组和堆外内存走同一个 UNSAFE.getByte(base, offset)：
+ *   堆内数组 base 为数组本身，offset 为 ARRAY_BYTE_BASE_OFFSET + pos（数组对象头之后才是数据，64位压缩指针下是16字节，
+ *   NewSQLParser 注释里“往后偏移16位”就是这个）；堆外内存 base 为 null，offset 为绝对地址
+ * 范围由调用方的循环条件保证，不再有 JVM 的隐式越界检查；调试时用 -Dmycat.unsafe.checked=true 打开每次读取的检查
+ * 拿不到 Unsafe 时退化为普通数组访问（堆外内存先复制到数组中），调用方代码不变
+ */
+final class UnsafeReader {
+    static final boolean CHECKED = Boolean.getBoolean("mycat.unsafe.checked");
+    static final Unsafe UNSAFE;
+    static final long BYTE_ARRAY_OFFSET;
+    private static final long ADDRESS_OFFSET; //Buffer.address 字段，直接内存的起始地址
+
+    static {
+        Unsafe unsafe = null;
+        long addressOffset = -1;
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            addressOffset = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (Throwable e) {
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+        BYTE_ARRAY_OFFSET = unsafe == null ? 0 : Unsafe.ARRAY_BYTE_BASE_OFFSET;
+        ADDRESS_OFFSET = addressOffset;
+    }
+
+    private Object base;
+    private long offset;
+    private int length;
+    private byte[] array; //没有 Unsafe 时使用
+    private int arrayStart;
+
+    final void init(byte[] sql) {
+        init(sql, 0, sql.length);
+    }
+
+    final void init(byte[] sql, int start, int length) {
+        if (start < 0 || length < 0 || start+length > sql.length)
+            throw new IndexOutOfBoundsException("start : " + start + ", length : " + length + ", array length : " + sql.length);
+        this.base = sql;
+        this.offset = BYTE_ARRAY_OFFSET+start;
+        this.length = length;
+        this.array = sql;
+        this.arrayStart = start;
+    }
+
+    /*
+    * 读取 [position, limit)，不改变 buffer 的 position
+    */
+    final void init(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            init(buffer.array(), buffer.arrayOffset()+buffer.position(), buffer.remaining());
+        } else if (UNSAFE != null && buffer.isDirect()) {
+            init(UNSAFE.getLong(buffer, ADDRESS_OFFSET)+buffer.position(), buffer.remaining());
+        } else {
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            init(copy);
+        }
+    }
+
+    /*
+    * 堆外内存，address 开始的 length 个字节在解析期间必须有效
+    */
+    final void init(long address, int length) {
+        if (UNSAFE == null)
+            throw new UnsupportedOperationException("sun.misc.Unsafe is not available");
+        this.base = null;
+        this.offset = address;
+        this.length = length;
+        this.array = null;
+        this.arrayStart = 0;
+    }
+
+    final int length() {
+        return length;
+    }
+
+    final byte get(int pos) {
+        if (CHECKED && (pos < 0 || pos >= length))
+            throw new IndexOutOfBoundsException("pos : " + pos + ", length : " + length);
+        if (UNSAFE == null)
+            return array[arrayStart+pos];
+        return UNSAFE.getByte(base, offset+pos);
+    }
+}
@@ -0,0 +1,79 @@
+package io.mycat;
+
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长 sql 在各提取级别下的解析速度，对比提前结束扫描、跳过子句节省的时间
+ */
+@BenchmarkMode(Mode.Throughput)//基准测试类型
+@OutputTimeUnit(TimeUnit.SECONDS)//基准测试结果的时间类型
+@Warmup(iterations = 10)//预热的迭代次数
+@Threads(1)//测试线程数量
+@State(Scope.Thread)//该状态为每个线程独享
+//度量:iterations进行测试的轮次，time每轮进行的时长，timeUnit时长单位,batchSize批次数量
+@Measurement(iterations = 10, time = -1, timeUnit = TimeUnit.SECONDS, batchSize = -1)
+public class ExtractLevelBenchmark {
+    SQLParser parser;
+    SQLContext context;
+    byte[] selectBytes; //带长 IN 列表、子查询、GROUP BY/ORDER BY/LIMIT 的查询
+    byte[] insertBytes; //多行 VALUES 的插入
+
+    //run
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ExtractLevelBenchmark.class.getSimpleName())
+                .forks(1)
+                //.output("ExtractLevelBenchmark.log")//输出信息到文件
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void init() {
+        StringBuilder select = new StringBuilder("SELECT a.id, a.name, count(*), sum(b.amount) FROM `db1`.`tbl_A` a LEFT JOIN tbl_B b ON a.id = b.a_id WHERE a.status = 1 AND a.id IN (");
+        for (int i = 0; i < 500; i++)
+            select.append(i == 0 ? "" : ", ").append(100000+i);
+        select.append(") AND b.created BETWEEN '2017-01-01' AND '2017-02-01' AND a.type IN (SELECT type FROM tbl_C WHERE flag = 'x') ")
+                .append("GROUP BY a.id, a.name HAVING count(*) > 1 ORDER BY a.name DESC, a.id LIMIT 100, 20");
+        selectBytes = select.toString().getBytes(StandardCharsets.UTF_8);
+        StringBuilder insert = new StringBuilder("INSERT INTO tbl_A (id, name, status, created) VALUES ");
+        for (int i = 0; i < 500; i++)
+            insert.append(i == 0 ? "" : ", ").append('(').append(i).append(", 'name_").append(i).append("', 1, '2017-01-22 10:00:00')");
+        insertBytes = insert.toString().getBytes(StandardCharsets.UTF_8);
+        parser = new SQLParser();
+        context = new SQLContext();
+        System.out.println("=> init");
+    }
+
+    @Benchmark
+    public void SelectTypeOnly() { parser.parse(selectBytes, context, SQLParser.EXTRACT_TYPE_ONLY);}
+
+    @Benchmark
+    public void SelectTables() { parser.parse(selectBytes, context, SQLParser.EXTRACT_TABLES);}
+
+    @Benchmark
+    public void SelectLimit() { parser.parse(selectBytes, context, SQLParser.EXTRACT_LIMIT);}
+
+    @Benchmark
+    public void SelectConditions() { parser.parse(selectBytes, context, SQLParser.EXTRACT_CONDITIONS);}
+
+    @Benchmark
+    public void SelectFull() { parser.parse(selectBytes, context, SQLParser.EXTRACT_FULL);}
+
+    @Benchmark
+    public void InsertTypeOnly() { parser.parse(insertBytes, context, SQLParser.EXTRACT_TYPE_ONLY);}
+
+    @Benchmark
+    public void InsertTables() { parser.parse(insertBytes, context, SQLParser.EXTRACT_TABLES);}
+
+    @Benchmark
+    public void InsertFull() { parser.parse(insertBytes, context, SQLParser.EXTRACT_FULL);}
+}
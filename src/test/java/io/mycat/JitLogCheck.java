@@ -0,0 +1,86 @@
+package io.mycat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在子进程中用 -XX:+PrintCompilation -XX:+PrintInlining 反复解析几条 sql，检查 JIT 日志：
+ *   逐字节执行的方法（SQLReader 的读取方法、BASIC_PARSER 及跳过注释、字符串的方法）在热点调用处不能因为太大而不被内联（hot method too big）；
+ *   io.mycat 下的方法不能被跳过编译（超过 -XX:HugeMethodLimit 的方法不会被编译，只能解释执行）；
+ *   parseBuffer 要有一次完整的（不是 OSR 的）C2 编译
+ * 状态处理方法（TblNameParser、PredicateParser 等）每个子句才进入一次，不内联到 parseBuffer 中也没有关系
+ * JIT 日志和 JVM 版本、参数（比如 -XX:-TieredCompilation）、机器负载有关，不放在默认的单元测试中，修改热点方法之后手动运行：
+ *   java -cp ... io.mycat.JitLogCheck check
+ * 直接运行 main 可以看到完整的日志：java -XX:+UnlockDiagnosticVMOptions -XX:+PrintCompilation -XX:+PrintInlining io.mycat.JitLogCheck
+ */
+public class JitLogCheck {
+    static final String[] HOT_METHODS = {"io.mycat.SQLReader::", "io.mycat.SQLParser::BasicParser ", "io.mycat.SQLParser::keyword ", "io.mycat.SQLParser::findNextToken ",
+            "io.mycat.SQLParser::QuoteString ", "io.mycat.SQLParser::SharpComment ", "io.mycat.SQLParser::DoubleDashComment ",
+            "io.mycat.SQLParser::MultiLineComment ", "io.mycat.SQLParser::openParen ", "io.mycat.SQLParser::closeParen ", "io.mycat.SQLParser::comma "};
+    static final String[] SQLS = {
+            "SELECT a FROM ab             , ee.ff AS f,(SELECT a FROM `schema_bb`.`tbl_bb`,(SELECT a FROM ccc AS c, `dddd`));",
+            "select count(*), b from tbl_A a left join tbl_B b on a.id = b.id where a.x in (1, 2, 3) and b.y between 1 and 5 group by b order by 1 desc limit 10",
+            "insert into tbl_A (a, b) values (1, 'x') /* comment */",
+            "update tbl_A set a = 1 where id = 3 -- comment\n"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("check")) {
+            List<String> problems = check(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+            for (String problem : problems)
+                System.out.println(problem);
+            System.out.println(problems.isEmpty() ? "OK" : problems.size() + " problems");
+            System.exit(problems.isEmpty() ? 0 : 1);
+        }
+        int loops = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        byte[][] sqls = new byte[SQLS.length][];
+        for (int i = 0; i < SQLS.length; i++)
+            sqls[i] = SQLS[i].getBytes(StandardCharsets.UTF_8);
+        SQLParser parser = new SQLParser();
+        SQLContext context = new SQLContext();
+        for (int i = 0; i < loops; i++)
+            parser.parse(sqls[i % sqls.length], context);
+    }
+
+    /*
+    * 返回日志中有问题的行；当前 JVM 不支持这些参数（不是 HotSpot）、日志格式不认识时返回空；
+    * 关闭分层编译时日志中没有编译级别一列，parseBuffer 的编译记录按没有级别处理
+    */
+    static List<String> check(int loops) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-XX:+UnlockDiagnosticVMOptions", "-XX:+PrintCompilation", "-XX:+PrintInlining",
+                "-cp", System.getProperty("java.class.path"), JitLogCheck.class.getName(), String.valueOf(loops))
+                .redirectErrorStream(true)
+                .start();
+        List<String> problems = new ArrayList<>();
+        boolean compiled = false;
+        boolean hotspot = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.contains("io.mycat."))
+                    continue;
+                hotspot = true;
+                if (line.contains("COMPILE SKIPPED")) {
+                    problems.add(line.trim());
+                } else if (line.contains("hot method too big")) {
+                    for (String method : HOT_METHODS) {
+                        if (line.contains(method))
+                            problems.add(line.trim());
+                    }
+                } else if (line.matches("\\s*\\d+\\s+\\d+\\s+[sbn! ]*(4\\s+)?io\\.mycat\\.SQLParser::parseBuffer .*")) { //没有 % 标记，不是 OSR
+                    compiled = true;
+                }
+            }
+        }
+        if (process.waitFor() != 0 || !hotspot)
+            return problems;
+        if (!compiled)
+            problems.add("io.mycat.SQLParser::parseBuffer is not compiled by C2");
+        return problems;
+    }
+}
@@ -0,0 +1,75 @@
+package io.mycat;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关键字剩余部分的比较：逐字节 icNextCharIs 与 icNextIs 一次比较8个字节
+ * 每个单词的第一个字符已经匹配，命中与不命中（在不同位置失败）的单词混在一起，分支预测不容易全部猜对
+ * 看分支预测失败次数：加上 .addProfiler("perfnorm")（需要 linux perf）
+ */
+@BenchmarkMode(Mode.AverageTime)//基准测试类型
+@OutputTimeUnit(TimeUnit.NANOSECONDS)//基准测试结果的时间类型
+@Warmup(iterations = 10)//预热的迭代次数
+@Threads(1)//测试线程数量
+@State(Scope.Thread)//该状态为每个线程独享
+//度量:iterations进行测试的轮次，time每轮进行的时长，timeUnit时长单位,batchSize批次数量
+@Measurement(iterations = 10, time = -1, timeUnit = TimeUnit.SECONDS, batchSize = -1)
+public class KeywordBenchmark {
+    static final long DISTINCT_REST = SQLReader.keyword("ISTINCT");
+    SQLReader reader;
+    int[] starts;
+    byte[] src;
+
+    //run
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(KeywordBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void init() {
+        String words = "distinct DISTINCT distinguish Distinct dist district DISTINCTROW distinct ";
+        src = words.getBytes(StandardCharsets.UTF_8);
+        reader = new SQLReader();
+        reader.init(src);
+        int count = 0;
+        starts = new int[8];
+        for (int i = 0; i < src.length; i++) {
+            if (i == 0 || src[i-1] == ' ')
+                starts[count++] = i;
+        }
+    }
+
+    @Benchmark
+    public int ScalarTest() {
+        int hits = 0;
+        for (int start : starts) {
+            reader.setPos(start);
+            if (reader.icNextCharIs('I') && reader.icNextCharIs('S') && reader.icNextCharIs('T') && reader.icNextCharIs('I') &&
+                    reader.icNextCharIs('N') && reader.icNextCharIs('C') && reader.icNextCharIs('T') && reader.nextIsBlank())
+                hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int SWARTest() {
+        int hits = 0;
+        for (int start : starts) {
+            reader.setPos(start);
+            if (reader.icNextIs(DISTINCT_REST, 7) && reader.nextIsBlank())
+                hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,71 @@
+package io.mycat;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 谓词树路由：1024个数据节点按 id 范围分片，每个节点1000个值
+ */
+@BenchmarkMode(Mode.Throughput)//基准测试类型
+@OutputTimeUnit(TimeUnit.SECONDS)//基准测试结果的时间类型
+@Warmup(iterations = 10)//预热的迭代次数
+@Threads(1)//测试线程数量
+@State(Scope.Thread)//该状态为每个线程独享
+//度量:iterations进行测试的轮次，time每轮进行的时长，timeUnit时长单位,batchSize批次数量
+@Measurement(iterations = 10, time = -1, timeUnit = TimeUnit.SECONDS, batchSize = -1)
+public class PredicateBenchmark {
+    static final int DATANODE_COUNT = 1024;
+    SQLParser parser;
+    SQLContext context;
+    PredicateEvaluator evaluator;
+    PredicateEvaluator.AtomRouter router;
+    long[] nodes;
+    byte[] srcBytes;
+
+    //run
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PredicateBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void init() {
+        String src = "SELECT * FROM orders o WHERE (o.id = 1024 OR o.id = 5000 OR o.id IN (70000, 80000, 90000)) " +
+                "AND (o.id BETWEEN 1000 AND 99999 OR o.status = 'paid' AND (o.id < 3000 OR o.id >= 1000000)) " +
+                "AND o.user_id > 10 AND NOT (o.id > 500000) AND o.created_at >= '2017-01-01'";
+        srcBytes = src.getBytes(StandardCharsets.UTF_8);
+        parser = new SQLParser();
+        context = new SQLContext();
+        evaluator = new PredicateEvaluator(DATANODE_COUNT);
+        long[] starts = new long[DATANODE_COUNT];
+        int[] datanodes = new int[DATANODE_COUNT];
+        for (int i = 0; i < DATANODE_COUNT; i++) {
+            starts[i] = i*1000L;
+            datanodes[i] = i;
+        }
+        router = new ShardingRouter("orders", "id", new ShardingFunction.RangeMap(starts, datanodes, ShardingFunction.UNKNOWN));
+        nodes = new long[evaluator.words()];
+        parser.parse(srcBytes, context);
+        System.out.println("=> init, hit nodes : " + evaluator.evaluateScope(context, 0, router, nodes));
+    }
+
+    @Benchmark
+    public int EvaluateTest() {
+        return evaluator.evaluateScope(context, 0, router, nodes);
+    }
+
+    @Benchmark
+    public int ParseAndEvaluateTest() {
+        parser.parse(srcBytes, context);
+        return evaluator.evaluateScope(context, 0, router, nodes);
+    }
+}
@@ -0,0 +1,69 @@
+package io.mycat;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100k 个表的路由表查找，与先 getTableName 再查 HashMap<String, ...> 对比
+ */
+@BenchmarkMode(Mode.AverageTime)//基准测试类型
+@OutputTimeUnit(TimeUnit.NANOSECONDS)//基准测试结果的时间类型
+@Warmup(iterations = 10)//预热的迭代次数
+@Threads(1)//测试线程数量
+@State(Scope.Thread)//该状态为每个线程独享
+//度量:iterations进行测试的轮次，time每轮进行的时长，timeUnit时长单位,batchSize批次数量
+@Measurement(iterations = 10, time = -1, timeUnit = TimeUnit.SECONDS, batchSize = -1)
+public class RoutingTableBenchmark {
+    static final int TABLE_COUNT = 100000;
+    RoutingTable routingTable;
+    HashMap<String, Integer> hashMap;
+    SQLContext context;
+
+    //run
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RoutingTableBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void init() {
+        routingTable = new RoutingTable(TABLE_COUNT);
+        hashMap = new HashMap<>();
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            routingTable.put("tbl_order_" + i, i);
+            hashMap.put("tbl_order_" + i, i);
+        }
+        context = new SQLContext();
+        new SQLParser().parse("SELECT * FROM tbl_order_65536 o JOIN tbl_user u ON o.uid = u.id".getBytes(StandardCharsets.UTF_8), context);
+    }
+
+    @Benchmark
+    public int RoutingTableHitTest() {
+        return routingTable.get(context, 0);
+    }
+
+    @Benchmark
+    public int RoutingTableMissTest() {
+        return routingTable.get(context, 1);
+    }
+
+    @Benchmark
+    public Integer HashMapHitTest() {
+        return hashMap.get(context.getTableName(0));
+    }
+
+    @Benchmark
+    public Integer HashMapMissTest() {
+        return hashMap.get(context.getTableName(1));
+    }
+}
@@ -11,6 +11,7 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +28,7 @@ public class SQLBenchmark {
     NewSQLParser newSQLParser;
     NewUnsafeSQLParser unsafeSQLParser;
     byte[] srcBytes;
+    byte[] paddedBytes; //后面预留了哨兵区
     String src;
 
     //run
@@ -35,6 +37,7 @@ public class SQLBenchmark {
                 .include(SQLBenchmark.class.getSimpleName())
                 .forks(1)
                 //.output("SQLBenchmark.log")//输出信息到文件
+                //.jvmArgsAppend("-XX:+UnlockDiagnosticVMOptions", "-XX:+PrintCompilation", "-XX:+PrintInlining")//查看 JIT 编译和内联情况，自动检查见 JitLogCheck
                 .build();
         new Runner(opt).run();
     }
@@ -43,26 +46,32 @@ public class SQLBenchmark {
     public void init() {
         src = "SELECT a FROM ab             , ee.ff AS f,(SELECT a FROM `schema_bb`.`tbl_bb`,(SELECT a FROM ccc AS c, `dddd`));";
         srcBytes = src.getBytes(StandardCharsets.UTF_8);//20794
+        paddedBytes = Arrays.copyOf(srcBytes, srcBytes.length+SQLReader.SENTINEL_PADDING);
         parser = new SQLParser();
         context = new SQLContext();
         newSQLParser = new NewSQLParser();
         newSQLParser.init();
-//        unsafeSQLParser = new NewUnsafeSQLParser();
-//        unsafeSQLParser.init();
+        unsafeSQLParser = new NewUnsafeSQLParser();
+        unsafeSQLParser.init();
         System.out.println("=> init");
     }
 
     @Benchmark
     public void NewSqQLParserTest() { newSQLParser.tokenize(srcBytes);}
 
-//    @Benchmark
-//    public void UnsafeSqQLParserTest() { unsafeSQLParser.tokenize(srcBytes);}
+    @Benchmark
+    public void UnsafeSqQLParserTest() { unsafeSQLParser.tokenize(srcBytes);}
 
     @Benchmark
     public void SQLParserTest() {
         parser.parse(srcBytes, context);
     }
 
+    @Benchmark
+    public void SQLParserSentinelTest() {
+        parser.parse(paddedBytes, srcBytes.length, context);
+    }
+
 //    @Benchmark
 //    public void DruidTest() {
 //        List<SQLStatement> stmtList = SQLUtils.parseStatements(src, "mysql");
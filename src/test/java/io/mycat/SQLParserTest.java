@@ -4,7 +4,9 @@ import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 /**
@@ -237,6 +239,1125 @@ public class SQLParserTest extends TestCase {
         assertEquals("tbl_A", context.getTableName(0));
     }
 
+    @Test
+    public void testSetSessionAffinity() {
+        parser.parse("SET @uid = 10, @@sql_mode = '';".getBytes(), context);
+        assertEquals(SQLContext.SET_SQL, context.getSQLType());
+        assertEquals(SQLContext.AFFINITY_USER_VARIABLE, context.getSessionAffinity());
+
+        parser.parse("SET NAMES utf8mb4;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_SESSION_VARIABLE, context.getSessionAffinity());
+
+        parser.parse("SET SESSION wait_timeout = 100;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_SESSION_VARIABLE, context.getSessionAffinity());
+
+        parser.parse("SET GLOBAL wait_timeout = 100;".getBytes(), context);
+        assertFalse(context.hasSessionAffinity());
+
+        parser.parse("SET @@global.wait_timeout = 100;".getBytes(), context);
+        assertFalse(context.hasSessionAffinity());
+    }
+
+    @Test
+    public void testUpdateSetNoSessionAffinity() {
+        String sql = "UPDATE tbl_A SET name = 'kaiz' WHERE id = 1;";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(SQLContext.UPDATE_SQL, context.getSQLType());
+        assertFalse(context.hasSessionAffinity());
+    }
+
+    @Test
+    public void testSessionFunctionAffinity() {
+        parser.parse("SELECT GET_LOCK('lock1', 10);".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_GET_LOCK, context.getSessionAffinity());
+
+        parser.parse("select last_insert_id();".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_LAST_INSERT_ID, context.getSessionAffinity());
+
+        parser.parse("SELECT FOUND_ROWS();".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_FOUND_ROWS, context.getSessionAffinity());
+
+        parser.parse("SELECT found_col FROM tbl_A WHERE id = @uid;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_USER_VARIABLE, context.getSessionAffinity());
+        assertEquals("tbl_A", context.getTableName(0));
+    }
+
+    @Test
+    public void testStatementSessionAffinity() {
+        parser.parse("CREATE TEMPORARY TABLE tmp_A (id INT);".getBytes(), context);
+        assertEquals(SQLContext.CREATE_SQL, context.getSQLType());
+        assertEquals(SQLContext.AFFINITY_TEMPORARY_TABLE, context.getSessionAffinity());
+
+        parser.parse("PREPARE stmt1 FROM 'SELECT 1';".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_PREPARE, context.getSessionAffinity());
+        assertEquals(SQLContext.PREPARE_SQL, context.getSQLType());
+        assertEquals(0, context.getTableCount()); //语句文本不是表名
+
+        parser.parse("PREPARE stmt1 FROM \"SELECT * FROM tbl_A WHERE id = ?\";".getBytes(), context);
+        assertEquals(0, context.getTableCount());
+
+        parser.parse("LOCK TABLES tbl_A READ;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_LOCK_TABLES, context.getSessionAffinity());
+
+        parser.parse("BEGIN".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_TRANSACTION, context.getSessionAffinity());
+
+        parser.parse("begin;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_TRANSACTION, context.getSessionAffinity());
+
+        parser.parse("START TRANSACTION;".getBytes(), context);
+        assertEquals(SQLContext.AFFINITY_TRANSACTION, context.getSessionAffinity());
+
+        parser.parse("SELECT * FROM tbl_A;".getBytes(), context);
+        assertFalse(context.hasSessionAffinity());
+    }
+
+    @Test
+    public void testReadOnlySelect() {
+        parser.parse("SELECT * FROM tbl_A WHERE id = 1 ORDER BY id LIMIT 10;".getBytes(), context);
+        assertTrue(context.isReadOnly());
+
+        parser.parse("SHOW TABLES;".getBytes(), context);
+        assertTrue(context.isReadOnly());
+
+        parser.parse("SELECT FOUND_ROWS();".getBytes(), context);
+        assertFalse(context.isReadOnly());
+
+        parser.parse("DELETE FROM tbl_A WHERE id = 1;".getBytes(), context);
+        assertFalse(context.isReadOnly());
+    }
+
+    @Test
+    public void testLockingRead() {
+        parser.parse("SELECT * FROM tbl_A WHERE id = 1 FOR UPDATE".getBytes(), context);
+        assertEquals(SQLContext.SELECT_SQL, context.getSQLType());
+        assertEquals(SQLContext.MASTER_FOR_UPDATE, context.getMasterReasons());
+        assertEquals(1, context.getTableCount());
+        assertFalse(context.isReadOnly());
+
+        parser.parse("select * from tbl_A where id = 1 for share nowait;".getBytes(), context);
+        assertEquals(SQLContext.MASTER_FOR_SHARE, context.getMasterReasons());
+
+        parser.parse("SELECT * FROM tbl_A WHERE id = 1 LOCK IN SHARE MODE;".getBytes(), context);
+        assertEquals(SQLContext.SELECT_SQL, context.getSQLType());
+        assertEquals(SQLContext.MASTER_LOCK_IN_SHARE_MODE, context.getMasterReasons());
+        assertFalse(context.hasSessionAffinity());
+
+        parser.parse("select * from tbl_A where id in (select id from tbl_B for update)".getBytes(), context);
+        assertEquals(SQLContext.MASTER_FOR_UPDATE, context.getMasterReasons());
+        assertFalse(context.isReadOnly());
+
+        parser.parse("select * from (select id from tbl_B for share) x where x.id = 1".getBytes(), context);
+        assertEquals(SQLContext.MASTER_FOR_SHARE, context.getMasterReasons());
+        assertEquals(1, context.getTableCount());
+
+        parser.parse("select * from tbl_A where id = 1 for update skip locked".getBytes(), context);
+        assertEquals(SQLContext.MASTER_FOR_UPDATE, context.getMasterReasons());
+        parser.parse("select * from tbl_A a where id = 1 for update of a nowait".getBytes(), context);
+        assertEquals(SQLContext.MASTER_FOR_UPDATE, context.getMasterReasons());
+    }
+
+    @Test
+    public void testSelectInto() {
+        parser.parse("SELECT id INTO @uid FROM tbl_A WHERE name = 'kaiz';".getBytes(), context);
+        assertEquals(SQLContext.MASTER_SELECT_INTO, context.getMasterReasons());
+        assertEquals(1, context.getTableCount());
+        assertEquals("tbl_A", context.getTableName(0));
+
+        parser.parse("SELECT id FROM tbl_A INTO OUTFILE '/tmp/tbl_A.txt';".getBytes(), context);
+        assertEquals(SQLContext.MASTER_SELECT_INTO, context.getMasterReasons());
+        assertEquals(1, context.getTableCount());
+    }
+
+    @Test
+    public void testSideEffectFunction() {
+        parser.parse("SELECT RELEASE_LOCK('lock1');".getBytes(), context);
+        assertEquals(SQLContext.MASTER_SIDE_EFFECT, context.getMasterReasons());
+
+        parser.parse("SELECT release_all_locks();".getBytes(), context);
+        assertEquals(SQLContext.MASTER_SIDE_EFFECT, context.getMasterReasons());
+
+        parser.parse("SELECT GET_LOCK('lock1', 10);".getBytes(), context);
+        assertEquals(SQLContext.MASTER_SIDE_EFFECT, context.getMasterReasons());
+
+        parser.parse("REPLACE INTO tbl_A (id) VALUES (1);".getBytes(), context);
+        assertEquals(SQLContext.REPLACE_SQL, context.getSQLType());
+        assertEquals("tbl_A", context.getTableName(0));
+    }
+
+    @Test
+    public void testSimpleSelectFeatures() {
+        parser.parse("SELECT id, name FROM tbl_A WHERE id = 1;".getBytes(), context);
+        assertEquals(0L, context.getFeatures());
+        assertFalse(context.hasFeature(SQLContext.FEATURE_MERGE_MASK));
+
+        parser.parse("SELECT count, max_id FROM tbl_A;".getBytes(), context);
+        assertEquals(0L, context.getFeatures());
+    }
+
+    @Test
+    public void testSelectFeatures() {
+        String sql = "SELECT DISTINCT a.type, COUNT(*), max(b.price) FROM tbl_A a JOIN tbl_B b ON a.id = b.id " +
+                "WHERE a.id IN (SELECT id FROM tbl_C) GROUP BY a.type HAVING COUNT(*) > 1 ORDER BY a.type LIMIT 10;";
+        parser.parse(sql.getBytes(), context);
+        long expected = SQLContext.FEATURE_JOIN | SQLContext.FEATURE_SUBQUERY | SQLContext.FEATURE_GROUP_BY |
+                SQLContext.FEATURE_ORDER_BY | SQLContext.FEATURE_DISTINCT | SQLContext.FEATURE_AGGREGATE |
+                SQLContext.FEATURE_HAVING | SQLContext.FEATURE_LIMIT;
+        assertEquals(expected, context.getFeatures());
+        assertEquals(3, context.getTableCount());
+
+        parser.parse("SELECT a FROM tbl_A UNION ALL SELECT a FROM tbl_B;".getBytes(), context);
+        assertEquals(SQLContext.FEATURE_UNION, context.getFeatures());
+
+        parser.parse("SELECT a, ROW_NUMBER() OVER(ORDER BY a) FROM tbl_A, tbl_B;".getBytes(), context);
+        assertTrue(context.hasFeature(SQLContext.FEATURE_WINDOW));
+        assertTrue(context.hasFeature(SQLContext.FEATURE_JOIN));
+        assertFalse(context.hasFeature(SQLContext.FEATURE_SUBQUERY));
+
+        parser.parse("SELECT GROUP_CONCAT(name) FROM tbl_A;".getBytes(), context);
+        assertEquals(SQLContext.FEATURE_AGGREGATE, context.getFeatures());
+    }
+
+    @Test
+    public void testNewSQLParserFeatures() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        byte[] bytes = "SELECT DISTINCT a FROM tbl_A WHERE id IN (SELECT id FROM tbl_B) GROUP BY a ORDER BY sum(b) LIMIT 1".getBytes();
+        newParser.tokenize(bytes);
+        context.setCurBuffer(bytes);
+        newParser.firstParse(context);
+        long expected = SQLContext.FEATURE_SUBQUERY | SQLContext.FEATURE_GROUP_BY | SQLContext.FEATURE_ORDER_BY |
+                SQLContext.FEATURE_DISTINCT | SQLContext.FEATURE_AGGREGATE | SQLContext.FEATURE_LIMIT;
+        assertEquals(expected, context.getFeatures());
+        assertEquals(SQLContext.SELECT_SQL, context.getSQLType());
+
+        //GROUP_CONCAT 两个解析器都算聚合
+        bytes = "SELECT a, GROUP_CONCAT(b ORDER BY b) FROM tbl_A GROUP BY a".getBytes();
+        SQLContext tokenContext = new SQLContext();
+        newParser.tokenize(bytes);
+        tokenContext.setCurBuffer(bytes);
+        newParser.firstParse(tokenContext);
+        parser.parse(bytes, context);
+        assertTrue(tokenContext.hasFeature(SQLContext.FEATURE_AGGREGATE));
+        assertEquals(context.getFeatures(), tokenContext.getFeatures());
+    }
+
+    @Test
+    public void testSubqueryScope() {
+        String sql = "DELETE FROM posts WHERE id not in (SELECT * FROM (SELECT id FROM posts ORDER BY timestamp desc limit 0, 15) as t) LIMIT ?, ?;";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getTableCount());
+        assertEquals(3, context.getScopeCount());
+        assertEquals(0, context.getTableScope(0));
+        assertEquals(2, context.getTableScope(1));
+        assertEquals(0, context.getScopeParent(1));
+        assertEquals(1, context.getScopeParent(2));
+        assertFalse(context.isDerivedScope(1));
+        assertTrue(context.isDerivedScope(2));
+        assertEquals("t", context.getScopeAlias(2));
+        assertEquals("(SELECT id FROM posts ORDER BY timestamp desc limit 0, 15)",
+                sql.substring(context.getScopeStart(2), context.getScopeEnd(2)));
+        assertEquals(0, context.getLimitOffset(2));
+        assertEquals(15, context.getLimitCount(2));
+        assertEquals(SQLContext.LIMIT_NONE, context.getLimitCount(1));
+        assertEquals(SQLContext.LIMIT_PARAM, context.getLimitOffset(0));
+        assertEquals(SQLContext.LIMIT_PARAM, context.getLimitCount(0));
+        assertEquals(0, context.getCurScope());
+    }
+
+    @Test
+    public void testSubqueryScopeSingleLimit() {
+        String sql = "SELECT * FROM (SELECT * FROM t LIMIT 5) x LIMIT 10";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getScopeCount());
+        assertEquals("x", context.getScopeAlias(1));
+        assertEquals(0, context.getLimitOffset(0));
+        assertEquals(10, context.getLimitCount(0));
+        assertEquals(0, context.getLimitOffset(1));
+        assertEquals(5, context.getLimitCount(1));
+
+        sql = "SELECT * FROM t WHERE a IN (SELECT b FROM u LIMIT 3) LIMIT 7";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getScopeCount());
+        assertEquals(7, context.getLimitCount(0));
+        assertEquals(3, context.getLimitCount(1));
+        assertEquals(1, context.getTableScope(1));
+        assertEquals(0, context.getCurScope());
+    }
+
+    @Test
+    public void testNestSelectScope() {
+        String sql = "SELECT a FROM ab a1, ee.ff AS f,(SELECT a FROM `schema_bb`.`tbl_bb`,(SELECT a FROM ccc AS c, `dddd`) d) AS x, gg LIMIT 10 OFFSET 20";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(6, context.getTableCount());
+        assertEquals("f", context.getTableAlias(1));
+        assertEquals(null, context.getTableAlias(2));
+        assertEquals("c", context.getTableAlias(3));
+        assertEquals("gg", context.getTableName(5));
+        assertEquals(0, context.getTableScope(1));
+        assertEquals(1, context.getTableScope(2));
+        assertEquals(2, context.getTableScope(3));
+        assertEquals(2, context.getTableScope(4));
+        assertEquals(0, context.getTableScope(5));
+        assertEquals("x", context.getScopeAlias(1));
+        assertEquals(20, context.getLimitOffset(0));
+        assertEquals(10, context.getLimitCount(0));
+    }
+
+    @Test
+    public void testInsertColumnList() {
+        String sql = "INSERT INTO tbl_A(a, b) SELECT a, b FROM tbl_B LIMIT 95,-1";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getTableCount());
+        assertEquals("tbl_A", context.getTableName(0));
+        assertEquals("tbl_B", context.getTableName(1));
+        assertEquals(95, context.getLimitOffset(0));
+        assertEquals(SQLContext.LIMIT_NONE, context.getLimitCount(0));
+    }
+
+    @Test
+    public void testQualifiedColumn() {
+        String sql = "SELECT a.name FROM tbl_A a JOIN tbl_B AS b ON a.id = b.a_id WHERE a.status = 1 AND b.`type` IN (1, 2) LIMIT 10";
+        parser.parse(sql.getBytes(), context);
+        assertEquals("a", context.getTableAlias(0));
+        assertEquals("b", context.getTableAlias(1));
+        assertEquals(4, context.getColumnCount());
+        assertEquals("id", context.getColumnName(0));
+        assertEquals(0, context.getColumnTable(0));
+        assertEquals("a_id", context.getColumnName(1));
+        assertEquals(1, context.getColumnTable(1));
+        assertEquals("status", context.getColumnName(2));
+        assertEquals(0, context.getColumnTable(2));
+        assertEquals("type", context.getColumnName(3));
+        assertEquals(1, context.getColumnTable(3));
+        assertEquals(10, context.getLimitCount(0));
+    }
+
+    @Test
+    public void testCorrelatedColumn() {
+        String sql = "SELECT * FROM tbl_A a WHERE a.id IN (SELECT c.a_id FROM tbl_C c WHERE c.ref = a.ref) AND flag = 'x'";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(4, context.getColumnCount());
+        assertEquals(0, context.getColumnTable(0));
+        assertEquals(1, context.getColumnTable(1));
+        assertEquals(1, context.getColumnScope(1));
+        assertEquals(0, context.getColumnTable(2)); //关联子查询中引用外层的表
+        assertEquals(1, context.getColumnScope(2));
+        assertEquals("flag", context.getColumnName(3));
+        assertEquals(0, context.getColumnTable(3));
+        assertEquals(0, context.getColumnScope(3));
+    }
+
+    @Test
+    public void testUnqualifiedColumn() {
+        parser.parse("SELECT * FROM tbl_A, tbl_B WHERE tbl_A.id = tbl_B.id AND name = ?".getBytes(), context);
+        assertEquals(3, context.getColumnCount());
+        assertEquals(0, context.getColumnTable(0));
+        assertEquals(1, context.getColumnTable(1));
+        assertEquals(-1, context.getColumnTable(2)); //多个表时无法确定
+        parser.parse("DELETE FROM tbl_A WHERE id = ? AND name LIKE 'a%'".getBytes(), context);
+        assertEquals(2, context.getColumnCount());
+        assertEquals(0, context.getColumnTable(1));
+        parser.parse("INSERT INTO tbl_A (id) VALUES (1) ON DUPLICATE KEY UPDATE id = 2".getBytes(), context);
+        assertEquals(1, context.getTableCount());
+        assertEquals(SQLContext.INSERT_SQL, context.getSQLType());
+    }
+
+    @Test
+    public void testJoinEdge() {
+        String sql = "SELECT * FROM orders o LEFT JOIN order_item i ON o.id = i.order_id AND i.x > 1 " +
+                "RIGHT OUTER JOIN customer USING (cid) WHERE o.uid = 1";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getJoinCount());
+        assertEquals(0, context.getJoinLeftTable(0));
+        assertEquals("id", context.getColumnName(context.getJoinLeftColumn(0)));
+        assertEquals(1, context.getJoinRightTable(0));
+        assertEquals("order_id", context.getColumnName(context.getJoinRightColumn(0)));
+        assertEquals(SQLContext.JOIN_LEFT, context.getJoinType(0));
+        assertEquals(1, context.getJoinLeftTable(1));
+        assertEquals(2, context.getJoinRightTable(1));
+        assertEquals("cid", context.getColumnName(context.getJoinRightColumn(1)));
+        assertEquals(SQLContext.JOIN_RIGHT, context.getJoinType(1));
+
+        parser.parse("SELECT * FROM a, b WHERE a.id = b.id AND a.k + 1 = b.k AND a.t = 'x'".getBytes(), context);
+        assertEquals(1, context.getJoinCount());
+        assertEquals(SQLContext.JOIN_WHERE, context.getJoinType(0));
+
+        parser.parse("SELECT * FROM a JOIN (SELECT id FROM b) t USING (id) JOIN c ON (c.id = a.id)".getBytes(), context);
+        assertEquals(1, context.getJoinCount()); //派生表一侧无法确定实际的表
+        assertEquals(2, context.getJoinLeftTable(0));
+        assertEquals(0, context.getJoinRightTable(0));
+        assertEquals(SQLContext.JOIN_INNER, context.getJoinType(0));
+    }
+
+    @Test
+    public void testMergeHint() {
+        String sql = "SELECT uid, COUNT(*) AS cnt, SUM(IFNULL(amount, 0)) / COUNT(DISTINCT oid) FROM orders " +
+                "GROUP BY uid, DATE(ts) HAVING MAX(ts) > ? ORDER BY cnt DESC, uid LIMIT 10";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getGroupByCount());
+        assertEquals("uid", context.getGroupByExpr(0));
+        assertEquals("DATE(ts)", context.getGroupByExpr(1));
+        assertEquals(2, context.getOrderByCount());
+        assertEquals("cnt", context.getOrderByExpr(0));
+        assertEquals(SQLContext.ORDER_DESC, context.getOrderByDirection(0));
+        assertEquals("uid", context.getOrderByExpr(1));
+        assertEquals(SQLContext.ORDER_ASC, context.getOrderByDirection(1));
+        assertEquals(4, context.getAggregateCount());
+        assertEquals(SQLContext.AGG_COUNT, context.getAggregateKind(0));
+        assertEquals(1, context.getAggregateSelectItem(0));
+        assertEquals("SUM(IFNULL(amount, 0))", context.getAggregateExpr(1));
+        assertEquals(2, context.getAggregateSelectItem(1));
+        assertEquals(SQLContext.AGG_COUNT | SQLContext.AGG_DISTINCT, context.getAggregateKind(2));
+        assertEquals(2, context.getAggregateSelectItem(2));
+        assertEquals(SQLContext.AGG_MAX, context.getAggregateKind(3));
+        assertEquals(-1, context.getAggregateSelectItem(3));
+        assertEquals(10, context.getLimitCount(0));
+
+        sql = "SELECT a, ROW_NUMBER() OVER (ORDER BY b) FROM t ORDER BY (SELECT MAX(x) FROM u), a DESC";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getTableCount());
+        assertEquals(1, context.getOrderByCount()); //窗口函数里的不记录，子查询项不记录
+        assertEquals("a", context.getOrderByExpr(0));
+        assertEquals(SQLContext.ORDER_DESC, context.getOrderByDirection(0));
+        assertEquals(1, context.getAggregateScope(0));
+    }
+
+    @Test
+    public void testInList() {
+        byte[] sql = "SELECT * FROM tbl_A WHERE id IN (1, 2, -3,4) AND name IN ('a', ?) AND x IN (1, y) LIMIT 1".getBytes();
+        parser.parse(sql, context);
+        assertEquals(2, context.getInListCount());
+        assertEquals("id", context.getColumnName(context.getInListColumn(0)));
+        assertEquals(4, context.getInListValueCount(0));
+        assertEquals(-3, context.getInValueLong(context.getInListFirstValue(0)+2));
+        assertEquals(SQLContext.IN_VALUE_STRING, context.getInValueType(4));
+        assertEquals("a", context.getInValueString(4));
+        assertEquals(SQLContext.IN_VALUE_PARAM, context.getInValueType(5));
+        assertEquals(4, context.getColumnCount()); //x IN (1, y) 不是常量列表，y 按字段记录
+        assertEquals(1, context.getLimitCount(0));
+
+        InListRewriter rewriter = new InListRewriter();
+        int[] valueNodes = {0, 1, 0, 0};
+        assertEquals(3, rewriter.rewrite(context, 0, valueNodes, 0, sql.length));
+        assertEquals("SELECT * FROM tbl_A WHERE id IN (1, -3,4) AND name IN ('a', ?) AND x IN (1, y) LIMIT 1", new String(rewriter.toBytes(sql)));
+        assertEquals(1, rewriter.rewrite(context, 0, valueNodes, 1, sql.length));
+        assertEquals("SELECT * FROM tbl_A WHERE id IN (2) AND name IN ('a', ?) AND x IN (1, y) LIMIT 1", new String(rewriter.toBytes(sql)));
+        assertEquals(0, rewriter.rewrite(context, 0, valueNodes, 2, sql.length));
+
+        //不是顶层 AND 条件的列表不拆分
+        String[] unsafe = {"SELECT * FROM t WHERE NOT id IN (1, 2)", "SELECT * FROM t WHERE id IN (1, 5) OR name = 'x'",
+                "SELECT * FROM t WHERE id IN (1, 2) = 0", "SELECT * FROM t WHERE a = 1 AND (id IN (1, 2) OR b = 2)",
+                "SELECT * FROM t WHERE x IN (SELECT y FROM u WHERE id IN (1, 2))"};
+        for (String s : unsafe) {
+            sql = s.getBytes();
+            parser.parse(sql, context);
+            assertEquals(s, 1, context.getInListCount());
+            assertFalse(s, context.isInListConjunct(0));
+            assertEquals(InListRewriter.SEND_UNCHANGED, rewriter.rewrite(context, 0, new int[]{0, 1}, 1, sql.length));
+            assertEquals(s, new String(rewriter.toBytes(sql)));
+        }
+        sql = "SELECT * FROM t WHERE a = 1 AND (b = 2 AND id IN (1, 2, ?))".getBytes();
+        parser.parse(sql, context);
+        assertTrue(context.isInListConjunct(0));
+        assertEquals(2, rewriter.rewrite(context, 0, new int[]{0, 1, ShardingFunction.UNKNOWN}, 1, sql.length));
+        assertEquals("SELECT * FROM t WHERE a = 1 AND (b = 2 AND id IN (2, ?))", new String(rewriter.toBytes(sql)));
+    }
+
+    @Test
+    public void testRangePredicate() {
+        String sql = "SELECT * FROM t WHERE id >= 100 AND name = 'x' AND id < 250 AND ts BETWEEN '2017-01-01' AND '2017-03-31' AND id > 120";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(2, context.getRangeCount());
+        assertEquals("id", context.getColumnName(context.getRangeColumn(0)));
+        assertEquals(120, context.getRangeLow(0));
+        assertEquals(250, context.getRangeHigh(0));
+        assertEquals(0, context.getRangeFlags(0)); //(120, 250)
+        assertEquals(SQLContext.RANGE_LOW_INCLUSIVE | SQLContext.RANGE_HIGH_INCLUSIVE | SQLContext.RANGE_STRING, context.getRangeFlags(1));
+        assertEquals("2017-01-01", context.getRangeLowString(1));
+        assertEquals("2017-03-31", context.getRangeHighString(1));
+
+        long[] starts = {0, 100, 200, 300};
+        long[] bitset = new long[1];
+        assertTrue(PartitionPruner.prune(context, 0, starts, bitset));
+        assertEquals(0b0110, bitset[0]);
+        assertFalse(PartitionPruner.prune(context, 1, starts, bitset));
+
+        parser.parse("SELECT * FROM t WHERE id > 350 OR id <= 99 OR id + 1 > 5".getBytes(), context);
+        assertEquals(2, context.getRangeCount()); //OR 连接的不合并
+        bitset[0] = 0;
+        PartitionPruner.prune(context, 0, starts, bitset);
+        PartitionPruner.prune(context, 1, starts, bitset);
+        assertEquals(0b1001, bitset[0]);
+
+        bitset = new long[3];
+        PartitionPruner.setBits(bitset, 60, 130);
+        assertEquals(0xFL << 60, bitset[0]);
+        assertEquals(-1L, bitset[1]);
+        assertEquals(0x7L, bitset[2]);
+    }
+
+    @Test
+    public void testPredicateTree() {
+        String sql = "SELECT * FROM t WHERE (id = 5 OR id IN (25, 1270)) AND NOT name = 'x' OR id BETWEEN 300 AND 319";
+        parser.parse(sql.getBytes(), context);
+        assertEquals(1, context.getPredicateCount());
+        byte[] ops = {SQLContext.PRED_EQ, SQLContext.PRED_IN, SQLContext.PRED_OR, SQLContext.PRED_EQ, SQLContext.PRED_NOT,
+                SQLContext.PRED_AND, SQLContext.PRED_RANGE, SQLContext.PRED_OR};
+        assertEquals(ops.length, context.getPredicateNodeCount());
+        for (int i = 0; i < ops.length; i++)
+            assertEquals(ops[i], context.getPredicateOp(i));
+        assertEquals("x", context.getPredicateValueString(3));
+
+        //128个节点，每个节点10个值
+        PredicateEvaluator evaluator = new PredicateEvaluator(128);
+        long[] starts = new long[128];
+        int[] datanodes = new int[128];
+        for (int i = 0; i < 128; i++) {
+            starts[i] = i*10L;
+            datanodes[i] = i;
+        }
+        PredicateEvaluator.AtomRouter router = new ShardingRouter("t", "id", new ShardingFunction.RangeMap(starts, datanodes, ShardingFunction.UNKNOWN));
+        long[] nodes = new long[evaluator.words()];
+        assertEquals(5, evaluator.evaluateScope(context, 0, router, nodes)); //0, 2, 127 和 30, 31
+        assertEquals(1L << 63, nodes[1]);
+        assertEquals((1L << 30) | (1L << 31) | 0b101, nodes[0]);
+
+        parser.parse("SELECT * FROM t WHERE (id = 5 OR id = 15) IS NULL AND id = 25 AND id + 1 = 7".getBytes(), context);
+        assertEquals(1, evaluator.evaluateScope(context, 0, router, nodes)); //括号之后还有其他内容，整组按全部节点处理
+
+        parser.parse("SELECT * FROM t a LEFT JOIN u b ON b.id = 5 WHERE a.id IN (5, 15) OR a.id IN (SELECT id FROM u WHERE id = 1)".getBytes(), context);
+        assertEquals(3, context.getPredicateCount());
+        PredicateEvaluator.AtomRouter uRouter = new ShardingRouter("u", "id", new ShardingFunction.RangeMap(starts, datanodes, ShardingFunction.UNKNOWN));
+        assertEquals(128, evaluator.evaluateScope(context, 0, router, nodes));
+        assertEquals(1, evaluator.evaluateScope(context, 1, uRouter, nodes));
+        assertEquals(128, evaluator.evaluateScope(context, 1, router, nodes));
+        parser.parse("SELECT * FROM t a LEFT JOIN u b ON b.id = 5 WHERE a.id IN (5, 15) AND a.id IN (SELECT id FROM u WHERE id = 1)".getBytes(), context);
+        assertEquals(2, evaluator.evaluateScope(context, 0, router, nodes)); //LEFT JOIN 的 ON 不参与
+
+        //字段必须属于本表
+        parser.parse("select * from t, u where u.id = 2".getBytes(), context);
+        assertEquals(128, evaluator.evaluateScope(context, 0, router, nodes));
+        assertEquals(1, evaluator.evaluateScope(context, 0, uRouter, nodes));
+        parser.parse("select * from t, u where id = 2".getBytes(), context);
+        assertEquals(128, evaluator.evaluateScope(context, 0, router, nodes));
+        parser.parse("select * from t a, t b where a.id = 2".getBytes(), context);
+        assertEquals(128, evaluator.evaluateScope(context, 0, router, nodes)); //自连接
+        parser.parse("select * from T where `t`.id = 2 and exists (select 1 from t x where t.id = 5)".getBytes(), context);
+        assertEquals(1, evaluator.evaluateScope(context, 0, router, nodes));
+        assertEquals(128, evaluator.evaluateScope(context, 1, router, nodes)); //关联子查询中外层的字段
+
+        //非 ascii 的表名字段名按 UTF-8 字节匹配
+        PredicateEvaluator.AtomRouter cnRouter = new ShardingRouter("订单", "编号", new ShardingFunction.RangeMap(starts, datanodes, ShardingFunction.UNKNOWN));
+        parser.parse("select * from 订单 where 编号 = 25".getBytes(StandardCharsets.UTF_8), context);
+        assertEquals(1, evaluator.evaluateScope(context, 0, cnRouter, nodes));
+        assertEquals(1L << 2, nodes[0]);
+    }
+
+    @Test
+    public void testShardingFunction() {
+        String sql = "SELECT * FROM t WHERE name IN ('abc', 'é中😀', 'it''s', ?) AND id = -7 AND d BETWEEN '2017-01-30' AND '2017-02-02'";
+        parser.parse(sql.getBytes(StandardCharsets.UTF_8), context);
+        ShardingFunction hashMod = new ShardingFunction.HashMod(16);
+        assertEquals(("abc".hashCode() & Integer.MAX_VALUE)%16, hashMod.calculateInValue(context, 0));
+        assertEquals(("é中😀".hashCode() & Integer.MAX_VALUE)%16, hashMod.calculateInValue(context, 1));
+        assertEquals(ShardingFunction.UNKNOWN, hashMod.calculateInValue(context, 2)); //有转义
+        assertEquals(ShardingFunction.UNKNOWN, hashMod.calculateInValue(context, 3));
+        assertEquals((Long.toString(Long.MIN_VALUE).hashCode() & Integer.MAX_VALUE)%16, hashMod.calculate(Long.MIN_VALUE));
+        assertEquals(("-7".hashCode() & Integer.MAX_VALUE)%16, hashMod.calculatePredicateValue(context, 1));
+
+        ShardingFunction modLong = new ShardingFunction.ModLong(8);
+        assertEquals(SQLContext.PRED_EQ, context.getPredicateOp(1));
+        assertEquals(1, modLong.calculatePredicateValue(context, 1));
+        long[] bitset = new long[1];
+        assertTrue(modLong.calculateRange(6, 9, bitset));
+        assertEquals(0b11000011, bitset[0]);
+
+        ShardingFunction.DatePartition byDay = new ShardingFunction.DatePartition(ShardingFunction.DatePartition.DAY, 2017, 1, 1, 1, 7);
+        bitset[0] = 0;
+        assertTrue(byDay.calculateRange(context, 0, bitset)); //第29到32天
+        assertEquals(0b11110, bitset[0]);
+        assertEquals(1, byDay.calculate(20170130));
+        assertEquals(ShardingFunction.UNKNOWN, byDay.calculate(20161231));
+        assertEquals(java.time.LocalDate.of(2000, 2, 29).toEpochDay(), ShardingFunction.DatePartition.epochDay(2000, 2, 29));
+        assertEquals(-1, ShardingFunction.DatePartition.epochDay(1969, 12, 31));
+        ShardingFunction byMonth = new ShardingFunction.DatePartition(ShardingFunction.DatePartition.MONTH, 2017, 1, 1, 1, 12);
+        byte[] date = "2018-03-15 10:00:00".getBytes();
+        assertEquals(2, byMonth.calculate(date, 0, date.length));
+
+        ShardingFunction consistent = new ShardingFunction.ConsistentHash(16, 160);
+        byte[] five = "5".getBytes();
+        assertEquals(consistent.calculate(5), consistent.calculate(five, 0, 1));
+        long hit = 0;
+        for (int i = 0; i < 10000; i++)
+            hit |= 1L << consistent.calculate(i);
+        assertEquals(0xFFFF, hit);
+
+        ShardingFunction rangeMap = new ShardingFunction.RangeMap(new long[]{0, 100, 200}, new int[]{1, 2, 1}, 0);
+        assertEquals(3, rangeMap.getNodeCount());
+        assertEquals(0, rangeMap.calculate(-5));
+        assertEquals(1, rangeMap.calculate(250));
+        bitset[0] = 0;
+        rangeMap.calculateRange(50, 150, bitset);
+        assertEquals(0b110, bitset[0]);
+    }
+
+    @Test
+    public void testMetadataRegistry() throws Exception {
+        MetadataRegistry registry = new MetadataRegistry(128);
+        long[] all = new long[2];
+        PartitionPruner.setBits(all, 0, 127);
+        ShardingRouter router = new ShardingRouter("tbl_order", "id", new ShardingFunction.ModLong(128));
+        registry.update(b -> b.addTable("tbl_order", router, all).addTable("tbl_config", null, new long[]{1L}));
+
+        parser.parse("SELECT * FROM TBL_ORDER o JOIN tbl_user u ON o.uid = u.id".getBytes(), context);
+        assertTrue(registry.isStale(context));
+        RoutingMetadata metadata = registry.acquire(context);
+        assertEquals(2, metadata.getEpoch());
+        assertFalse(registry.isStale(context));
+        assertEquals(0, metadata.getTable(context, 0));
+        assertEquals(RoutingTable.NOT_FOUND, metadata.getTable(context, 1));
+        assertSame(router, metadata.getRouter(0));
+
+        registry.update(b -> b.removeTable("tbl_order").addTable("tbl_user", null, new long[]{2L}));
+        assertTrue(registry.isStale(context)); //旧快照不受影响，缓存的结果需要重新路由
+        assertEquals(2, metadata.getTableCount());
+        RoutingMetadata latest = registry.acquire(context);
+        assertEquals(RoutingTable.NOT_FOUND, latest.getTable(context, 0));
+        assertEquals(1, latest.getTable(context, 1));
+        long[] nodes = new long[2];
+        latest.addDatanodes(1, nodes);
+        assertEquals(2L, nodes[0]);
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    String name = "tbl_" + id + "_" + i;
+                    registry.update(b -> b.addTable(name, null, all));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers)
+            writer.join();
+        assertEquals(202, registry.current().getTableCount());
+        assertEquals(203, registry.current().getEpoch());
+    }
+
+    @Test
+    public void testTableNameScanner() {
+        TableNameScanner scanner = new TableNameScanner(new String[]{"tbl_order", "order", "tbl_user", "用户"});
+        long[] hits = new long[scanner.words()];
+        byte[] sql = "SELECT * FROM db1.`TBL_ORDER` o JOIN tbl_user u ON o.uid = u.id".getBytes();
+        assertEquals(2, scanner.scan(sql, 0, sql.length, hits));
+        assertEquals(0b101L, hits[0]); //order 是 tbl_order 的后缀，但不在标识符边界上
+        sql = "SELECT 'tbl_order', \"tbl_user\" FROM t /* tbl_order */ -- tbl_user\n # order\n WHERE a.tbl_orders = 1 AND x-order=2".getBytes();
+        assertEquals(1, scanner.first(sql, 0, sql.length, hits)); //x-order 中 - 是边界，不是注释
+        sql = "SELECT * FROM xtbl_user, tbl_user2, 'it''s tbl_user', 用户表".getBytes();
+        assertEquals(TableNameScanner.NOT_FOUND, scanner.first(sql, 0, sql.length, hits));
+        sql = "SELECT * FROM 用户 WHERE id = 1".getBytes(StandardCharsets.UTF_8);
+        assertEquals(3, scanner.first(sql, 0, sql.length, hits));
+        sql = "/*!40000 ALTER TABLE `tbl_order` DISABLE KEYS */".getBytes(); //mysqldump 的可执行注释
+        assertEquals(0, scanner.first(sql, 0, sql.length, hits));
+        sql = "SELECT /*+ BKA(tbl_user) */ * FROM t /*!*/ /*!50001tbl_order*/".getBytes();
+        hits[0] = 0;
+        assertEquals(2, scanner.scan(sql, 0, sql.length, hits));
+        assertEquals(0b101L, hits[0]);
+    }
+
+    @Test
+    public void testRoutingTable() {
+        RoutingTable tables = new RoutingTable(16); //超过预估大小时扩容
+        for (int i = 0; i < 100000; i++)
+            tables.put("tbl_order_" + i, i);
+        tables.put("ab", 7);
+        assertEquals(100001, tables.size());
+        byte[] name = "TBL_ORDER_99999".getBytes();
+        assertEquals(99999, tables.get(name, 0, name.length));
+        name = "a-b".getBytes(); //哈希值与 ab 相同
+        assertEquals(RoutingTable.NOT_FOUND, tables.get(name, 0, name.length));
+
+        parser.parse("SELECT * FROM db1.`tbl_order_42` o JOIN tbl_user u ON o.uid = u.id".getBytes(), context);
+        assertEquals(42, tables.get(context, 0));
+        assertEquals(RoutingTable.NOT_FOUND, tables.get(context, 1));
+        RoutingTable schemas = new RoutingTable(4);
+        schemas.put("db1", 1);
+        assertEquals(1, schemas.getSchema(context, 0, 0));
+        assertEquals(0, schemas.getSchema(context, 1, 0));
+
+        int rejected = 0;
+        for (int i = 0; i < 10000; i++) {
+            name = ("tbl_user_" + i).getBytes();
+            if (!tables.mightContain(TokenHash.hash(name, 0, name.length)))
+                rejected++;
+        }
+        assertTrue(rejected > 9500);
+    }
+
+    @Test
+    public void testNewSQLParserTokenize() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        byte[] bytes = "SELECT 'it''s', \"\" /* hint */ FROM tbl_A WHERE a-1 > 0".getBytes();
+        newParser.tokenize(bytes);
+        NewSQLParser.HashArray tokens = newParser.hashArray;
+        assertEquals(3, tokens.getType(1));
+        assertEquals("it''s", new String(bytes, tokens.getPos(1), tokens.getSize(1)));
+        assertEquals(0, tokens.getSize(3));
+        assertEquals("/* hint */", new String(bytes, tokens.getPos(4), tokens.getSize(4)));
+        assertEquals("FROM", new String(bytes, tokens.getPos(5), tokens.getSize(5)));
+        assertEquals("-", new String(bytes, tokens.getPos(9), tokens.getSize(9)));
+        assertEquals("1", new String(bytes, tokens.getPos(10), tokens.getSize(10)));
+    }
+
+    @Test
+    public void testNewSQLParserLongSQL() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        StringBuilder sb = new StringBuilder("INSERT INTO tbl_A VALUES ");
+        for (int i = 0; i < 10000; i++)
+            sb.append("(").append(i).append(", 'v").append(i).append("'),");
+        char[] big = new char[70000];
+        Arrays.fill(big, 'x');
+        sb.append("('").append(big).append("') ;");
+        byte[] bytes = sb.toString().getBytes();
+        newParser.tokenize(bytes);
+        NewSQLParser.HashArray tokens = newParser.hashArray;
+        int count = tokens.getCount();
+        assertEquals(4+10000*6+4, count);
+        assertEquals("9999", new String(bytes, tokens.getPos(count-9), tokens.getSize(count-9)));
+        assertEquals(NewSQLParser.STRINGS, tokens.getType(count-3));
+        assertEquals(70000, tokens.getSize(count-3));
+        assertEquals(bytes.length-4-70000, tokens.getPos(count-3));
+        assertEquals(NewSQLParser.SEMICOLON, tokens.getType(count-1));
+        assertEquals(IntTokenHash.INTO, tokens.getIntHash(1));
+
+        bytes = "SELECT 'it''s' FROM tbl_A".getBytes(); //短sql继续使用紧凑格式，数组按高水位收缩
+        for (int i = 0; i < NewSQLParser.HashArray.SHRINK_INTERVAL*2; i++) //超长sql所在的检查周期不收缩
+            newParser.tokenize(bytes);
+        assertEquals("it''s", new String(bytes, tokens.getPos(1), tokens.getSize(1)));
+        assertEquals("tbl_A", new String(bytes, tokens.getPos(3), tokens.getSize(3)));
+        assertEquals(NewSQLParser.HashArray.INIT_SIZE, tokens.hashArray.length);
+    }
+
+    @Test
+    public void testNewSQLParserTokenCursor() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        StringBuilder sb = new StringBuilder("/* route */ INSERT INTO tbl_A VALUES ");
+        for (int i = 0; i < 100000; i++)
+            sb.append("(").append(i).append(", 'v").append(i).append("'),");
+        byte[] bytes = sb.append("(0, '')").toString().getBytes();
+        NewSQLParser.TokenCursor cursor = newParser.cursor(bytes);
+        assertTrue(cursor.next());
+        assertEquals(NewSQLParser.COMMENTS, cursor.type());
+        assertTrue(cursor.next());
+        assertEquals(IntTokenHash.INSERT, cursor.intHash());
+        assertEquals(TokenHash.INSERT, cursor.hash());
+        assertEquals("INSERT", new String(bytes, cursor.start(), cursor.size()));
+        assertEquals(2, newParser.hashArray.getCount()); //只读到需要的位置
+
+        bytes = "SELECT a, count(*) FROM tbl_A -- comment\n LIMIT 10".getBytes();
+        cursor = newParser.cursor(bytes);
+        assertTrue(cursor.next());
+        assertEquals(IntTokenHash.SELECT, cursor.intHash());
+        assertTrue(cursor.next());
+        assertEquals(NewSQLParser.COMMA, cursor.peekType());
+        assertEquals(1, cursor.index());
+        assertEquals(3, newParser.hashArray.getCount());
+        SQLContext ctx = new SQLContext();
+        newParser.firstParse(ctx); //已经读出的 token 直接交给 firstParse
+        assertEquals(SQLContext.SELECT_SQL, ctx.getSQLType());
+        assertFalse(ctx.hasFeature(SQLContext.FEATURE_LIMIT));
+        cursor.fill();
+        int count = newParser.hashArray.getCount();
+        while (cursor.next())
+            ;
+        assertEquals(count-1, cursor.index());
+        long[] filled = Arrays.copyOf(newParser.hashArray.hashArray, count*2);
+        newParser.tokenize(bytes);
+        assertEquals(count, newParser.hashArray.getCount());
+        assertTrue(Arrays.equals(filled, Arrays.copyOf(newParser.hashArray.hashArray, count*2)));
+    }
+
+    @Test
+    public void testNewSQLParserScan() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        byte[] bytes = "/* audit */ SELECT user_name FROM tbl_A WHERE id = 12 AND note = 'x' -- tail\n; # next\nUPDATE tbl_B SET a = 1;; ;\nSELECT `select`, name, status, user FROM t;".getBytes();
+        String sql = new String(bytes);
+        StringBuilder events = new StringBuilder();
+        newParser.scan(bytes, new NewSQLParser.TokenListener() {
+            @Override
+            public void onKeyword(long hash, int pos, int len) {
+                events.append(hash == TokenHash.SELECT ? "SELECT" : "K:" + new String(bytes, pos, len)).append(' ');
+            }
+
+            @Override
+            public void onIdentifier(long hash, int pos, int len) {
+                assertEquals(TokenHash.hash(bytes, pos, pos+len), hash);
+                events.append("I:").append(new String(bytes, pos, len)).append(' ');
+            }
+
+            @Override
+            public void onLiteral(int type, int pos, int len) {
+                events.append(type == LITERAL_STRING ? "S:" : "N:").append(new String(bytes, pos, len)).append(' ');
+            }
+
+            @Override
+            public void onComment(int pos, int len) {
+                events.append("C:").append(new String(bytes, pos, len)).append(' ');
+            }
+
+            @Override
+            public void onStatementEnd(int pos) {
+                events.append("END:").append(pos).append(' ');
+            }
+        });
+        assertEquals("C:/* audit */ SELECT I:user_name K:FROM I:tbl_A K:WHERE I:id N:12 K:AND I:note S:x C:-- tail END:77 C:# next " +
+                "K:UPDATE I:tbl_B K:SET I:a N:1 END:" + sql.indexOf(";;") + " " + //;; 和 ; 是空语句，不推送
+                "SELECT I:select I:name I:status I:user K:FROM I:t END:" + (bytes.length-1) + " ", events.toString());
+        int count = newParser.hashArray.getCount();
+        newParser.tokenize(bytes);
+        assertEquals(newParser.hashArray.getCount(), count); //和 tokenize 记录的 token 相同，之后可以直接 firstParse
+    }
+
+    @Test
+    public void testSentinelInput() {
+        String[] sqls = {
+                "SELECT a.id, 'it''s \\' x' FROM db1.tbl_A a LEFT JOIN tbl_B b ON a.id = b.id WHERE a.id IN (1, 2) AND b.c BETWEEN 1 AND 9 LIMIT 10, 20",
+                "select * from tbl_A /* hint */ where name like 'a%' -- comment\n and id = ? # tail",
+                "INSERT INTO tbl_A (id, name) VALUES (1, \"x\"), (2, 'y') ON DUPLICATE KEY UPDATE name = VALUES(name)",
+                "UPDATE tbl_A SET a = a - 1 WHERE id = (SELECT max(id) FROM tbl_B) AND NOT (b > 5 OR c < 2)",
+                "SELECT count(*), sum(x) FROM t1, (SELECT x FROM t2 GROUP BY x HAVING x > 0) AS d ORDER BY 1 DESC",
+        };
+        SQLParser sentinelParser = new SQLParser();
+        SQLContext sentinelContext = new SQLContext();
+        java.util.Random random = new java.util.Random(42);
+        byte[] noise = " \t\n'\"`\\-#/*()=,;.?0aZ@\0".getBytes();
+        for (String sql : sqls) {
+            byte[] bytes = sql.getBytes();
+            for (int i = 0; i < 200; i++) { //截断的sql，以及随机改掉几个字节再截断
+                byte[] src = Arrays.copyOf(bytes, i == 0 ? bytes.length : 1+random.nextInt(bytes.length));
+                if (i > 100)
+                    src[random.nextInt(src.length)] = noise[random.nextInt(noise.length)];
+                parser.parse(src, context);
+                sentinelParser.parse(Arrays.copyOf(src, src.length+SQLReader.SENTINEL_PADDING), src.length, sentinelContext);
+                assertEquals(context.getTableCount(), sentinelContext.getTableCount());
+                for (int j = 0; j < context.getTableCount(); j++)
+                    assertEquals(context.getTableName(j), sentinelContext.getTableName(j));
+            }
+        }
+        byte[] buf = Arrays.copyOf("SELECT * FROM tbl_A WHERE id = 1".getBytes(), 64); //从网络读包时预留的哨兵区
+        parser.parse(buf, 32, context);
+        assertEquals("tbl_A", context.getTableName(0));
+        assertEquals(SQLContext.PRED_EQ, context.getPredicateOp(0));
+        assertEquals(1, context.getPredicateValueLong(0));
+    }
+
+    @Test
+    public void testNewUnsafeSQLParser() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        NewUnsafeSQLParser unsafeParser = new NewUnsafeSQLParser();
+        unsafeParser.init();
+        String[] sqls = {
+                "SELECT 'it''s', \"a\\\"b\" /* hint */ FROM db1.tbl_A WHERE a-1 > 0 -- tail",
+                "INSERT INTO tbl_A VALUES (1, 'x'), (2, 'y'); # comment\nselect 1/2 from dual",
+                "SELECT '", //不完整的sql
+        };
+        for (String sql : sqls) {
+            byte[] bytes = sql.getBytes();
+            newParser.tokenize(bytes);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length+8);
+            direct.position(8);
+            direct.put(bytes);
+            direct.position(8);
+            ByteBuffer heap = ByteBuffer.allocate(bytes.length+3);
+            heap.position(3);
+            heap.put(bytes);
+            heap.position(3);
+            for (int round = 0; round < 3; round++) {
+                if (round == 0)
+                    unsafeParser.tokenize(bytes);
+                else
+                    unsafeParser.tokenize(round == 1 ? direct : heap.slice());
+                assertEquals(newParser.hashArray.getCount(), unsafeParser.hashArray.getCount());
+                for (int i = 0; i < newParser.hashArray.getCount(); i++) {
+                    assertEquals(newParser.hashArray.getIntHash(i), unsafeParser.hashArray.getIntHash(i));
+                    assertEquals(newParser.hashArray.getHash(i), unsafeParser.hashArray.getHash(i));
+                    assertEquals(newParser.hashArray.getPos(i), unsafeParser.hashArray.getPos(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNewSQLParserLexers() {
+        //tokenize、lex（游标、scan）和 NewUnsafeSQLParser 各有一份词法规则，随机输入下记录的 token 必须完全一致
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        NewUnsafeSQLParser unsafeParser = new NewUnsafeSQLParser();
+        unsafeParser.init();
+        NewSQLParser.TokenListener ignore = new NewSQLParser.TokenListener() {};
+        java.util.Random random = new java.util.Random(7);
+        byte[] alphabet = " \t\n'\"`\\-#/*()=<>+,;.@?$_09azAZ".getBytes();
+        StringBuilder big = new StringBuilder("INSERT INTO tbl_A VALUES ");
+        for (int i = 0; i < 8000; i++)
+            big.append("(").append(i).append(", 'v").append(i).append("'),");
+        String[] seeds = {"SELECT 'it''s', \"a\\\"b\" /* hint */ FROM db1.tbl_A WHERE a-1 > 0 -- tail",
+                "INSERT INTO tbl_A VALUES (1, 'x'), (2, 'y'); # comment\nselect 1/2 from dual // x\n",
+                "/* audit */ SELECT user_name, @v := 3 FROM `tbl_A` WHERE id <= 12 AND note = 'x' -- tail\n; # next\nUPDATE tbl_B SET a = a+1",
+                big.append("(0, '')").toString()};
+        for (int iter = 0; iter < 2000; iter++) {
+            byte[] bytes = seeds[iter % seeds.length].getBytes();
+            if (iter >= seeds.length) {
+                bytes = Arrays.copyOf(bytes, 1+random.nextInt(Math.min(bytes.length, 256)));
+                for (int k = random.nextInt(4); k >= 0; k--)
+                    bytes[random.nextInt(bytes.length)] = random.nextInt(8) == 0 ? (byte) (0x80+random.nextInt(128)) : alphabet[random.nextInt(alphabet.length)];
+            }
+            newParser.tokenize(bytes);
+            long[] expected = tokens(newParser);
+            NewSQLParser.TokenCursor cursor = newParser.cursor(bytes);
+            while (cursor.next())
+                ;
+            assertTrue(Arrays.equals(expected, tokens(newParser)));
+            newParser.cursor(bytes).fill();
+            assertTrue(Arrays.equals(expected, tokens(newParser)));
+            newParser.scan(bytes, ignore);
+            assertTrue(Arrays.equals(expected, tokens(newParser)));
+            unsafeParser.tokenize(bytes);
+            assertTrue(Arrays.equals(expected, tokens(unsafeParser)));
+        }
+    }
+
+    //[{type, pos, size, hash}]
+    private static long[] tokens(NewSQLParser parser) {
+        NewSQLParser.HashArray array = parser.hashArray;
+        long[] result = new long[array.getCount()*4];
+        for (int i = 0; i < array.getCount(); i++) {
+            result[i*4] = array.getType(i);
+            result[i*4+1] = array.getPos(i);
+            result[i*4+2] = array.getSize(i);
+            result[i*4+3] = array.getHash(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testKeywordCompare() {
+        String keyword = "ISTINCT";
+        long packed = SQLReader.keyword(keyword);
+        SQLReader scalar = new SQLReader();
+        SQLReader swar = new SQLReader();
+        for (String sql : new String[]{"SELECT DISTINCT a", "select distinct", "select distinguish", "select Distinc", "select dist", "d\u00ffstinct"}) {
+            byte[] bytes = sql.getBytes(StandardCharsets.ISO_8859_1);
+            scalar.init(bytes);
+            swar.init(bytes);
+            for (int pos = 0; pos < bytes.length; pos++) { //与逐字节比较的结果和停下的位置都一致
+                scalar.setPos(pos);
+                swar.setPos(pos);
+                boolean expected = true;
+                for (int i = 0; i < keyword.length() && expected; i++)
+                    expected = scalar.icNextCharIs(keyword.charAt(i));
+                assertEquals(expected, swar.icNextIs(packed, keyword.length()));
+                assertEquals(scalar.getPos(), swar.getPos());
+            }
+        }
+        parser.parse("select DiStInCt a FROM tbl_A WHERE id = 1".getBytes(), context);
+        assertTrue(context.hasFeature(SQLContext.FEATURE_DISTINCT));
+        assertEquals("tbl_A", context.getTableName(0));
+    }
+
+    @Test
+    public void testBasicTokenTable() {
+        String[] sqls = {"select a", "FROM(", "count(*)", "Count (*)", "COUNTS(*)", "count", "release_all_locks('a')", "RELEASE_LOCK('a')",
+                "release_lock", "group by", "group_concat(a)", "GROUP_CONCAT", "begin", "BEGIN;", "transaction;", "on ", "or ", "last_insert_id()", "last\u007finsert_id()"};
+        int[] tokens = {BasicTokenTable.SELECT, BasicTokenTable.NOT_FOUND, BasicTokenTable.COUNT, BasicTokenTable.COUNT, BasicTokenTable.NOT_FOUND,
+                BasicTokenTable.NOT_FOUND, BasicTokenTable.RELEASE_ALL_LOCKS, BasicTokenTable.RELEASE_LOCK, BasicTokenTable.NOT_FOUND, BasicTokenTable.GROUP,
+                BasicTokenTable.GROUP_CONCAT, BasicTokenTable.NOT_FOUND, BasicTokenTable.BEGIN, BasicTokenTable.BEGIN, BasicTokenTable.TRANSACTION,
+                BasicTokenTable.ON, BasicTokenTable.NOT_FOUND, BasicTokenTable.LAST_INSERT_ID, BasicTokenTable.NOT_FOUND};
+        SQLReader reader = new SQLReader();
+        for (int i = 0; i < sqls.length; i++) {
+            byte[] bytes = sqls[i].getBytes(StandardCharsets.ISO_8859_1);
+            reader.init(bytes);
+            assertTrue(sqls[i], BasicTokenTable.FIRST_BYTE[bytes[0]&0xFF] >= BasicTokenTable.FAMILY);
+            assertEquals(sqls[i], tokens[i], reader.basicToken());
+            int length = tokens[i] == BasicTokenTable.NOT_FOUND ? 0 : BasicTokenTable.INFO[tokens[i]<<1];
+            assertEquals(sqls[i], length, reader.getPos()); //成功时停在关键字之后的字符上，失败时不动
+        }
+        assertEquals(BasicTokenTable.OTHER, BasicTokenTable.FIRST_BYTE['x']);
+        assertEquals(BasicTokenTable.OTHER, BasicTokenTable.FIRST_BYTE[0xC3]);
+        assertEquals(BasicTokenTable.QUOTE, BasicTokenTable.FIRST_BYTE['"']);
+
+        parser.parse("select Count(*), group_concat(b) FROM tbl_A where id = 1 group by c".getBytes(), context);
+        assertEquals(SQLContext.SELECT_SQL, context.getSQLType());
+        assertEquals(2, context.getAggregateCount());
+        assertTrue(context.hasFeature(SQLContext.FEATURE_GROUP_BY));
+        assertEquals("tbl_A", context.getTableName(0));
+    }
+
+    @Test
+    public void testKeywordProfile() {
+        KeywordProfile profile = new KeywordProfile(2);
+        parser.setProfile(profile);
+        String[] sqls = {"SELECT a FROM tbl_A WHERE id = 1", "select b from tbl_B", "UPDATE tbl_A SET a = 1 WHERE id = 2", "update tbl_C set c = 2"};
+        for (String sql : sqls)
+            parser.parse(sql.getBytes(), context);
+        assertEquals(2, profile.getSamples()); //只统计第1、3条
+        assertEquals(1, profile.getCount(BasicTokenTable.SELECT));
+        assertEquals(1, profile.getFirstCount(BasicTokenTable.SELECT));
+        assertEquals(1, profile.getFirstCount(BasicTokenTable.UPDATE));
+        assertEquals(1, profile.getCount(BasicTokenTable.SET));
+        assertEquals(0, profile.getFirstCount(BasicTokenTable.SET));
+        assertEquals(2, profile.getCount(BasicTokenTable.WHERE));
+        assertTrue(profile.lines().contains("WHERE\t2\t0"));
+        parser.setProfile(null);
+        parser.parse(sqls[0].getBytes(), context);
+        assertEquals(2, profile.getSamples());
+
+        assertTrue(BasicTokenTable.SELECT < BasicTokenTable.SET); //同一组候选中出现次数多的在前，见 basic_tokens_profile.txt
+    }
+
+    @Test
+    public void testExtractLevel() {
+        byte[] bytes = ("SELECT a, count(*) FROM tbl_A a, tbl_B b WHERE a.id = b.id AND a.x IN ((SELECT x FROM tbl_C), 1) " +
+                "GROUP BY a ORDER BY (SELECT max(y) FROM tbl_D), a LIMIT 10").getBytes();
+        parser.parse(bytes, context, SQLParser.EXTRACT_TYPE_ONLY);
+        assertEquals(SQLContext.SELECT_SQL, context.getSQLType());
+        assertEquals(0, context.getTableCount());
+
+        parser.parse(bytes, context, SQLParser.EXTRACT_TABLES);
+        assertEquals(4, context.getTableCount()); //WHERE、ORDER BY 中的逗号不是表名分隔
+        assertEquals("tbl_C", context.getTableName(2));
+        assertEquals("tbl_D", context.getTableName(3));
+        assertEquals(0, context.getPredicateCount());
+        assertEquals(SQLContext.LIMIT_NONE, context.getLimitCount(0));
+        long features = SQLContext.FEATURE_LIMIT | SQLContext.FEATURE_AGGREGATE | SQLContext.FEATURE_ORDER_BY;
+        assertEquals(features, context.getFeatures() & features);
+
+        parser.parse(bytes, context, SQLParser.EXTRACT_LIMIT);
+        assertEquals(4, context.getTableCount());
+        assertEquals(10, context.getLimitCount(0));
+        assertEquals(0, context.getPredicateCount());
+
+        parser.parse(bytes, context, SQLParser.EXTRACT_CONDITIONS);
+        assertEquals(4, context.getTableCount());
+        assertTrue(context.getPredicateCount() > 0);
+        assertEquals(0, context.getAggregateCount());
+
+        parser.parse(bytes, context, SQLParser.EXTRACT_FULL);
+        assertEquals(4, context.getTableCount());
+        assertEquals(2, context.getAggregateCount()); //count(*)、max(y)
+
+        bytes = "INSERT INTO tbl_A (a, b) VALUES (1, 'x'), (2, (SELECT y FROM tbl_B))".getBytes();
+        parser.parse(bytes, context, SQLParser.EXTRACT_TABLES);
+        assertEquals(SQLContext.INSERT_SQL, context.getSQLType());
+        assertEquals(1, context.getTableCount()); //VALUES 之后不再扫描
+        parser.parse(bytes, context);
+        assertEquals(2, context.getTableCount());
+
+        //低于 EXTRACT_FULL 时可能漏掉发往主库的原因，isReadOnly() 按主库处理
+        String[] masterOnly = {"SELECT * FROM tbl_A WHERE id = 1 FOR UPDATE", "SELECT * FROM tbl_A WHERE id = 1 LOCK IN SHARE MODE",
+                "SELECT a INTO @x FROM tbl_A", "SELECT * FROM tbl_A WHERE a=get_lock('x', 1)", "SELECT found_rows()"};
+        for (String sql : masterOnly) {
+            for (byte level = SQLParser.EXTRACT_TYPE_ONLY; level <= SQLParser.EXTRACT_FULL; level++) {
+                parser.parse(sql.getBytes(), context, level);
+                assertEquals(level, context.getExtractLevel());
+                assertFalse(sql, context.isReadOnly());
+            }
+        }
+        parser.parse("SELECT * FROM tbl_A WHERE id = 1".getBytes(), context, SQLParser.EXTRACT_TYPE_ONLY);
+        assertFalse(context.isReadOnly());
+        parser.parse("SELECT * FROM tbl_A WHERE id = 1".getBytes(), context);
+        assertTrue(context.isReadOnly());
+    }
+
+    @Test
+    public void testCompactAST() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        CompactAST ast = new CompactAST();
+        String sql = "SELECT a, (SELECT max(b) FROM tbl_B) FROM db1.tbl_A a LEFT JOIN (SELECT id FROM tbl_C WHERE x = 'c') AS c ON a.id = c.id WHERE a.id IN (1, 2) LIMIT 10";
+        byte[] bytes = sql.getBytes();
+        newParser.tokenize(bytes);
+        ast.build(newParser);
+        CompactAST.Cursor cursor = ast.cursor();
+        assertEquals(CompactAST.NODE_STATEMENT, cursor.type());
+        assertEquals(sql, new String(bytes, cursor.start(), cursor.size()));
+        assertFalse(cursor.toNextSibling());
+
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_SELECT_LIST, cursor.type());
+        assertEquals("a, (SELECT max(b) FROM tbl_B)", new String(bytes, cursor.start(), cursor.size()).trim());
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_SUBQUERY, cursor.type());
+        assertEquals("(SELECT max(b) FROM tbl_B)", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toFirstChild());
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_FROM_ITEM, cursor.type());
+        assertEquals("tbl_B", new String(bytes, cursor.start(), cursor.size()));
+        cursor.toParent();
+        cursor.toParent();
+
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_FROM_ITEM, cursor.type());
+        assertEquals("db1.tbl_A a", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_JOIN, cursor.type());
+        assertEquals("LEFT JOIN", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_FROM_ITEM, cursor.type());
+        assertEquals("(SELECT id FROM tbl_C WHERE x = 'c') AS c", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_SUBQUERY, cursor.type());
+        cursor.toParent();
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_PREDICATE, cursor.type());
+        assertEquals("a.id = c.id", new String(bytes, cursor.start(), cursor.size()).trim());
+        cursor.toParent();
+
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_PREDICATE, cursor.type());
+        assertEquals("a.id IN (1, 2)", new String(bytes, cursor.start(), cursor.size()).trim());
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_LITERAL, cursor.type());
+        assertTrue(cursor.toNextSibling());
+        assertEquals("2", new String(bytes, cursor.start(), cursor.size()));
+        cursor.toParent();
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_LITERAL, cursor.type());
+        assertEquals("10", new String(bytes, cursor.start(), cursor.size()));
+        assertFalse(cursor.toNextSibling());
+    }
+
+    @Test
+    public void testCompactASTMultiStatement() {
+        NewSQLParser newParser = new NewSQLParser();
+        newParser.init();
+        CompactAST ast = new CompactAST();
+        byte[] bytes = "INSERT INTO tbl_A(a, b) VALUES (1, 'x');UPDATE tbl_B SET a = 1;".getBytes();
+        newParser.tokenize(bytes);
+        ast.build(newParser);
+        CompactAST.Cursor cursor = ast.cursor();
+        assertTrue(cursor.toFirstChild());
+        assertEquals(CompactAST.NODE_FROM_ITEM, cursor.type());
+        assertEquals("tbl_A", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_LITERAL, cursor.type());
+        assertTrue(cursor.toNextSibling());
+        assertEquals("x", new String(bytes, cursor.start(), cursor.size()));
+        assertFalse(cursor.toNextSibling());
+        cursor.toParent();
+        assertTrue(cursor.toNextSibling());
+        assertEquals(CompactAST.NODE_STATEMENT, cursor.type());
+        assertEquals("UPDATE tbl_B SET a = 1", new String(bytes, cursor.start(), cursor.size()));
+        assertTrue(cursor.toFirstChild());
+        assertEquals("tbl_B", new String(bytes, cursor.start(), cursor.size()));
+    }
+
 //    @Test
 //    public void testNormalTruncate() throws Exception {
 //        String sql = "Truncate TABLE IF EXISTS tbl_A;";